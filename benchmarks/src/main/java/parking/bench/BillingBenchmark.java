@@ -0,0 +1,80 @@
+package parking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Tarification;
+import parking.model.Vehicule;
+import parking.util.Money;
+
+import java.time.LocalDateTime;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calcul du montant d'un stationnement ({@link Stationnement#calculerMontant()}), sans base,
+ * avec la grille linéaire par défaut ou une grille à tranches (gratuité, nuit, week-end, plafond).
+ * {@code repricerEnCours} chiffre 1024 stationnements en cours à un même instant, comme la colonne
+ * « montant à ce jour » du tableau de bord à chaque seconde (à lancer avec -prof gc : aucune allocation).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BillingBenchmark {
+
+    private static final int N = 1024;
+
+    @Param({"lineaire", "grille"})
+    public String tarif;
+
+    private Stationnement[] stationnements;
+    private long[]          entrees;
+    private long            maintenant;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Properties p = new Properties();
+        if (tarif.equals("grille")) {
+            p.setProperty("gratuitMinutes", "15");
+            p.setProperty("jour.debut", "07:00");
+            p.setProperty("nuit.debut", "20:00");
+            p.setProperty("nuit", "0.5");
+            p.setProperty("weekend", "0.8");
+            p.setProperty("plafondJour", "10");
+        }
+        Tarification.setInstance(Tarification.compiler(p));
+
+        Random rnd = new Random(DataGenerator.SEED);
+        Place    place    = new Place(1, "A0001", Place.Type.Auto, Place.Statut.Libre, 250);
+        Vehicule vehicule = new Vehicule(1, "AA-000-AA", "Renault", Vehicule.Categorie.Auto);
+        stationnements = new Stationnement[N];
+        LocalDateTime debut = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int k = 0; k < N; k++) {
+            LocalDateTime entree = debut.plusMinutes(rnd.nextInt(366 * 24 * 60));
+            stationnements[k] = new Stationnement(k, place, vehicule, entree, entree.plusMinutes(15 + rnd.nextInt(600)), Money.AUCUN);
+        }
+        LocalDateTime now = debut.plusDays(366);
+        maintenant = Tarification.secondes(now);
+        entrees = new long[N];
+        for (int k = 0; k < N; k++) entrees[k] = Tarification.secondes(now.minusMinutes(rnd.nextInt(3 * 24 * 60)));
+    }
+
+    @Benchmark
+    public long calculerMontant() {
+        return stationnements[i++ & (N - 1)].calculerMontant();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long repricerEnCours() {
+        Tarification t = Tarification.getInstance();
+        long total = 0;
+        for (long entree : entrees) total += t.centimes(Place.Type.Auto, 250, entree, maintenant);
+        return total;
+    }
+}
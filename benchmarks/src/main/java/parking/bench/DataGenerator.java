@@ -0,0 +1,134 @@
+package parking.bench;
+
+import parking.dao.OccupancyIndex;
+import parking.dao.RevenueRollupDAO;
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Vehicule;
+import parking.util.DatabaseConnection;
+import parking.util.Money;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jeu de données déterministe : même graine, mêmes places, véhicules et historique,
+ * pour comparer les mesures d'une version à l'autre.
+ * L'historique ne contient que des stationnements terminés, répartis sur l'année 2024.
+ * Les places sont réparties en zones A à D sur plusieurs niveaux (0, -1, -2…), la distance à l'entrée
+ * croissant avec la profondeur, la zone et le rang dans la zone.
+ */
+public class DataGenerator {
+
+    public static final long SEED = 20240101L;
+
+    private static final LocalDateTime DEBUT   = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final int           JOURS   = 366;
+    private static final int           CHUNK   = 1000;
+    private static final String[]      ZONES   = {"A", "B", "C", "D"};
+    private static final int           PLACES_PAR_NIVEAU = 600;
+    private static final String[]      MARQUES = {"Renault", "Peugeot", "Citroën", "Toyota", "Yamaha", "Honda", "BMW", "Kia"};
+
+    private final long seed;
+
+    public DataGenerator() {
+        this(SEED);
+    }
+
+    public DataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Vide les tables puis les remplit ; les agrégats de revenus et l'index d'occupation
+     * sont reconstruits à la fin.
+     */
+    public void populate(int nbPlaces, int nbVehicules, int nbStationnements) throws SQLException {
+        Random rnd = new Random(seed);
+        List<Place> places = new ArrayList<>(nbPlaces);
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                st.execute("SET FOREIGN_KEY_CHECKS=0");
+                st.execute("TRUNCATE TABLE RevenueRollup");
+                st.execute("TRUNCATE TABLE Stationnement");
+                st.execute("TRUNCATE TABLE Vehicule");
+                st.execute("TRUNCATE TABLE Place");
+                st.execute("SET FOREIGN_KEY_CHECKS=1");
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO Place (id, numero, type, statut, tarifHoraire, zone, niveau, distance) VALUES (?,?,?,'Libre',?,?,?,?)")) {
+                for (int i = 1; i <= nbPlaces; i++) {
+                    int tirage = rnd.nextInt(10);
+                    Place.Type type = tirage < 7 ? Place.Type.Auto : tirage < 9 ? Place.Type.Moto : Place.Type.PMR;
+                    long tarif = type == Place.Type.Auto ? 250 : type == Place.Type.Moto ? 100 : 0;
+                    Place p = new Place(i, type.name().charAt(0) + String.format("%04d", i), type, Place.Statut.Libre, tarif);
+                    places.add(p);
+                    ps.setInt(1, p.getId());
+                    ps.setString(2, p.getNumero());
+                    ps.setString(3, type.name());
+                    Money.ecrire(ps, 4, tarif);
+                    int niveau = (i - 1) / PLACES_PAR_NIVEAU;
+                    int zone   = (i - 1) % ZONES.length;
+                    int rang   = (i - 1) % PLACES_PAR_NIVEAU / ZONES.length;
+                    ps.setString(5, ZONES[zone]);
+                    ps.setInt(6, -niveau);
+                    ps.setInt(7, 40 * niveau + 15 * zone + 3 * rang);
+                    ps.addBatch();
+                    if (i % CHUNK == 0) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO Vehicule (id, matricule, marque, categorie) VALUES (?,?,?,?)")) {
+                for (int i = 1; i <= nbVehicules; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, matricule(i, rnd));
+                    ps.setString(3, MARQUES[rnd.nextInt(MARQUES.length)]);
+                    ps.setString(4, Vehicule.Categorie.values()[rnd.nextInt(Vehicule.Categorie.values().length)].name());
+                    ps.addBatch();
+                    if (i % CHUNK == 0) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO Stationnement (place_id, vehicule_id, dateEntree, dateSortie, montant) VALUES (?,?,?,?,?)")) {
+                for (int i = 1; i <= nbStationnements; i++) {
+                    Place p = places.get(rnd.nextInt(places.size()));
+                    LocalDateTime entree = DEBUT.plusMinutes((long) rnd.nextInt(JOURS * 24 * 60));
+                    LocalDateTime sortie = entree.plusMinutes(15 + rnd.nextInt(10 * 60));
+                    Stationnement s = new Stationnement(0, p, null, entree, sortie, Money.AUCUN);
+                    ps.setInt(1, p.getId());
+                    ps.setInt(2, 1 + rnd.nextInt(nbVehicules));
+                    ps.setTimestamp(3, Timestamp.valueOf(entree));
+                    ps.setTimestamp(4, Timestamp.valueOf(sortie));
+                    Money.ecrire(ps, 5, s.calculerMontant());
+                    ps.addBatch();
+                    if (i % CHUNK == 0) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+        }
+        new RevenueRollupDAO().rebuild();
+        OccupancyIndex.getInstance().reload();
+    }
+
+    /** Matricule unique au format AB-123-CD (les deux premières lettres et le nombre viennent de l'indice). */
+    static String matricule(int i, Random rnd) {
+        int n = i - 1;
+        return "" + (char) ('A' + (n / 1000 / 26) % 26) + (char) ('A' + (n / 1000) % 26)
+                + String.format("-%03d-", n % 1000)
+                + (char) ('A' + rnd.nextInt(26)) + (char) ('A' + rnd.nextInt(26));
+    }
+}
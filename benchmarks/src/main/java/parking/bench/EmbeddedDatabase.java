@@ -0,0 +1,66 @@
+package parking.bench;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import parking.util.DatabaseConnection;
+import parking.util.SchemaMigrator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * MariaDB embarquée pour les benchmarks : démarrée une fois par JVM (fork JMH) sur un port libre,
+ * initialisée avec sql/init.sql puis les migrations de l'application.
+ * Le pool de l'application est redirigé vers elle par les propriétés parking.db.*.
+ */
+public final class EmbeddedDatabase {
+
+    private static DB db;
+
+    private EmbeddedDatabase() {}
+
+    /** Démarre la base si nécessaire ; à appeler avant tout accès DAO. */
+    public static synchronized void start() throws SQLException {
+        if (db != null) return;
+        try {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(0); // port libre
+            config.addArg("--innodb-flush-log-at-trx-commit=2");
+            if ("root".equals(System.getProperty("user.name"))) config.addArg("--user=root"); // mysqld refuse root sinon
+            db = DB.newEmbeddedDB(config.build());
+            db.start();
+
+            String base = "jdbc:mysql://localhost:" + db.getConfiguration().getPort();
+            String options = "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
+            try (Connection c = DriverManager.getConnection(base + "/" + options, "root", "");
+                 InputStream in = EmbeddedDatabase.class.getResourceAsStream("/sql/init.sql")) {
+                if (in == null) throw new SQLException("sql/init.sql introuvable dans le classpath");
+                SchemaMigrator.executeScript(c, new InputStreamReader(in, StandardCharsets.UTF_8));
+                SchemaMigrator.migrate(c);
+            }
+
+            System.setProperty("parking.db.url", base + "/parking_db" + options + "&rewriteBatchedStatements=true");
+            System.setProperty("parking.db.user", "root");
+            System.setProperty("parking.db.password", "");
+            Runtime.getRuntime().addShutdownHook(new Thread(EmbeddedDatabase::stop, "embedded-db-stop"));
+        } catch (ManagedProcessException | IOException e) {
+            throw new SQLException("Démarrage de la base embarquée impossible : " + e.getMessage(), e);
+        }
+    }
+
+    public static synchronized void stop() {
+        DatabaseConnection.close();
+        if (db != null) {
+            try {
+                db.stop();
+            } catch (ManagedProcessException ignored) {}
+            db = null;
+        }
+    }
+}
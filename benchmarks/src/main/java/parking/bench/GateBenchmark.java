@@ -0,0 +1,53 @@
+package parking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import parking.dao.PlaceDAO;
+import parking.dao.StationnementDAO;
+import parking.dao.VehiculeDAO;
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Vehicule;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aller-retour complet à la borne : {@code create()} puis {@code enregistrerSortie()},
+ * chacun dans sa transaction. Les places sont prises à tour de rôle et libérées par la sortie ;
+ * l'historique grossit donc d'une ligne par opération.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GateBenchmark {
+
+    private final StationnementDAO dao = new StationnementDAO();
+    private List<Place>    places;
+    private List<Vehicule> vehicules;
+    private int            i;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        EmbeddedDatabase.start();
+        new DataGenerator().populate(200, 2000, 10_000);
+        places    = new PlaceDAO().findAll();
+        vehicules = new VehiculeDAO().findAll();
+    }
+
+    @Benchmark
+    public double entreeSortie() throws SQLException {
+        int k = i++;
+        Stationnement s = new Stationnement();
+        s.setPlace(places.get(k % places.size()));
+        s.setVehicule(vehicules.get(k % vehicules.size()));
+        LocalDateTime sortie = LocalDateTime.now();
+        s.setDateEntree(sortie.minusMinutes(90));
+        dao.create(s);
+        return dao.enregistrerSortie(s.getId(), sortie);
+    }
+}
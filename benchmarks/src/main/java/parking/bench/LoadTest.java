@@ -0,0 +1,45 @@
+package parking.bench;
+
+import parking.LoadGenerator;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link LoadGenerator} sur la base embarquée, peuplée par {@link DataGenerator} : essai de capacité
+ * des bornes sans serveur MySQL. Les options --places, --vehicules et --historique dimensionnent
+ * le jeu de données ; les autres sont transmises au générateur.
+ *
+ * <pre>
+ *   java -cp target/benchmarks.jar parking.bench.LoadTest --places 3000 --bornes 8 --duree 60 --debit 50
+ * </pre>
+ */
+public final class LoadTest {
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws SQLException {
+        int places = 3000, vehicules = 20_000, historique = 100_000;
+        List<String> reste = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String val = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--places":     places     = Integer.parseInt(val); i++; break;
+                case "--vehicules":  vehicules  = Integer.parseInt(val); i++; break;
+                case "--historique": historique = Integer.parseInt(val); i++; break;
+                default:             reste.add(args[i]);
+            }
+        }
+
+        EmbeddedDatabase.start();
+        int code;
+        try {
+            new DataGenerator().populate(places, vehicules, historique);
+            code = LoadGenerator.run(reste.toArray(new String[0]));
+        } finally {
+            EmbeddedDatabase.stop();
+        }
+        System.exit(code);
+    }
+}
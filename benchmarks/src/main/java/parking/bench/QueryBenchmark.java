@@ -0,0 +1,48 @@
+package parking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import parking.dao.StationnementDAO;
+import parking.model.Stationnement;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requêtes de lecture en fonction de la taille de l'historique :
+ * {@code findFiltered()} (un mois, stationnements terminés) et {@code getRevenusParMois()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int historique;
+
+    private final StationnementDAO dao = new StationnementDAO();
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        EmbeddedDatabase.start();
+        new DataGenerator().populate(200, 2000, historique);
+    }
+
+    @Benchmark
+    public List<Stationnement> findFilteredMois() throws SQLException {
+        return dao.findFiltered(null, "Terminé", "2024-03-01", "2024-03-31");
+    }
+
+    @Benchmark
+    public List<Stationnement> findFilteredType() throws SQLException {
+        return dao.findFiltered("Moto", null, null, null);
+    }
+
+    @Benchmark
+    public List<Object[]> getRevenusParMois() throws SQLException {
+        return dao.getRevenusParMois();
+    }
+}
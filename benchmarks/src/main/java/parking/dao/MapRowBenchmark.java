@@ -0,0 +1,59 @@
+package parking.dao;
+
+import org.openjdk.jmh.annotations.*;
+import parking.bench.DataGenerator;
+import parking.bench.EmbeddedDatabase;
+import parking.model.Stationnement;
+import parking.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion d'une ligne JDBC en {@link Stationnement} ({@code StationnementDAO.mapRow}).
+ * Les lignes sont lues une fois dans un ResultSet défilable (entièrement en mémoire côté pilote) :
+ * seule la conversion est mesurée, pas l'aller-retour réseau.
+ * Dans le paquetage parking.dao pour accéder à mapRow.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapRowBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private final StationnementDAO dao = new StationnementDAO();
+    private Connection        conn;
+    private PreparedStatement ps;
+    private ResultSet         rs;
+    private int               row;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        EmbeddedDatabase.start();
+        new DataGenerator().populate(100, 1000, ROWS);
+        conn = DatabaseConnection.getConnection();
+        ps = conn.prepareStatement(StationnementDAO.buildSelectSql("ORDER BY s.id"),
+                ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = ps.executeQuery();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rs.close();
+        ps.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public Stationnement mapRow() throws SQLException {
+        rs.absolute(1 + row++ % ROWS);
+        return dao.mapRow(rs);
+    }
+}
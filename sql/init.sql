@@ -73,3 +73,8 @@ INSERT INTO Stationnement (place_id, vehicule_id, dateEntree, dateSortie, montan
   (4, 3, '2024-01-11 07:30:00', '2024-01-11 09:00:00',  1.50),
   (1, 4, '2024-02-15 14:00:00', '2024-02-15 17:00:00',  7.50),
   (3, 5, '2024-03-01 10:00:00', '2024-03-01 12:00:00',  5.00);
+
+-- -------------------------------------------------------
+-- Les évolutions du schéma (index, tables dérivées...) sont versionnées dans
+-- src/main/resources/db/migration et appliquées au démarrage par SchemaMigrator.
+-- -------------------------------------------------------
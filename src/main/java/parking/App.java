@@ -1,21 +1,180 @@
 package parking;
 
+import parking.dao.AuditLog;
+import parking.dao.OccupancyIndex;
+import parking.dao.RevenueRollupDAO;
+import parking.dao.StationnementFilter;
+import parking.service.ExportService;
+import parking.service.GateService;
 import parking.ui.MainFrame;
+import parking.util.DaoMetrics;
+import parking.util.DatabaseConnection;
+import parking.util.SchemaMigrator;
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Point d'entrée de l'application Gestion de Parking.
+ * Sans argument : interface graphique. Commandes en ligne :
+ *   --rebuild-rollups   recalcule les agrégats de revenus depuis l'historique
+ *   --export fichier    exporte l'historique (CSV, ou JSON si .json ; gzip si .gz), options :
+ *                       --format csv|json  --gzip  --type T  --statut S  --du yyyy-mm-dd  --au yyyy-mm-dd  --matricule M
+ *   --verifier-audit [dossier]  vérifie la chaîne du journal d'audit et compte les stationnements en cours
  */
 public class App {
+
+    private static final Logger LOG = Logger.getLogger(App.class.getName());
+
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runCommand(args));
+        }
+
         // Look & Feel système
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception ignored) {}
 
+        // Métriques DAO vidées périodiquement dans parking-metrics.log
+        DaoMetrics.startDump();
+
+        // Fermer proprement le pool de connexions (et les fichiers de métriques, du journal des bornes et d'audit) à l'arrêt
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            DaoMetrics.stopDump();
+            GateService.close();
+            AuditLog.closeInstance();
+            DatabaseConnection.close();
+        }, "parking-shutdown"));
+
+        // Mettre le schéma à jour, puis charger l'index d'occupation avant l'ouverture des onglets
+        if (migrer()) {
+            try {
+                OccupancyIndex.getInstance();
+            } catch (SQLException ignored) {
+                // Les onglets afficheront l'erreur
+            }
+        }
+
         SwingUtilities.invokeLater(() -> {
             MainFrame frame = new MainFrame();
             frame.setVisible(true);
         });
     }
+
+    /**
+     * Applique les migrations manquantes. Une base injoignable est tolérée (les onglets afficheront l'erreur) ;
+     * un échec de migration est journalisé et signalé, sans quoi les requêtes échoueraient plus tard
+     * sur des colonnes manquantes sans indication de la cause.
+     * @return false si la base est injoignable
+     */
+    private static boolean migrer() {
+        Connection c;
+        try {
+            c = DatabaseConnection.getConnection();
+        } catch (SQLException e) {
+            return false;
+        }
+        try (Connection cx = c) {
+            SchemaMigrator.migrate(cx);
+        } catch (SQLException e) {
+            LOG.log(Level.SEVERE, "Mise à jour du schéma impossible", e);
+            JOptionPane.showMessageDialog(null,
+                    "La mise à jour du schéma de la base a échoué :\n" + e.getMessage()
+                    + "\n\nVérifiez les droits de l'utilisateur MySQL (CREATE, ALTER, INDEX)."
+                    + "\nTant que le schéma n'est pas à jour, une partie des écrans sera en erreur.",
+                    "Erreur base de données", JOptionPane.ERROR_MESSAGE);
+        }
+        return true;
+    }
+
+    private static final String USAGE = "Usage : java -jar GestionParking.jar [--rebuild-rollups | --export fichier"
+            + " [--format csv|json] [--gzip] [--type T] [--statut S] [--du yyyy-mm-dd] [--au yyyy-mm-dd] [--matricule M]"
+            + " | --verifier-audit [dossier]]";
+
+    /** Exécute une commande sans interface graphique ; retourne le code de sortie. */
+    private static int runCommand(String[] args) {
+        try {
+            switch (args[0]) {
+                case "--rebuild-rollups":
+                    SchemaMigrator.migrate();
+                    int n = new RevenueRollupDAO().rebuild();
+                    System.out.println("Agrégats de revenus recalculés : " + n + " lignes.");
+                    return 0;
+                case "--export":
+                    return exporter(args);
+                case "--verifier-audit":
+                    Path dossier = Paths.get(args.length > 1 ? args[1] : System.getProperty("parking.audit.dir", "parking-audit"));
+                    long lus = AuditLog.verifier(dossier);
+                    System.out.println("Journal d'audit intègre : " + lus + " enregistrement(s), "
+                            + AuditLog.enCours(dossier).size() + " stationnement(s) en cours.");
+                    return 0;
+                default:
+                    System.err.println("Commande inconnue : " + args[0]);
+                    System.err.println(USAGE);
+                    return 2;
+            }
+        } catch (SQLException | IOException | IllegalArgumentException e) {
+            System.err.println("Erreur : " + e.getMessage());
+            return 1;
+        } finally {
+            DatabaseConnection.close();
+        }
+    }
+
+    /** --export : écrit l'historique filtré dans un fichier, avec l'avancement sur la sortie d'erreur. */
+    private static int exporter(String[] args) throws SQLException, IOException {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path fichier = Paths.get(args[1]);
+        ExportService.Format format = ExportService.formatPour(fichier);
+        boolean gzip = ExportService.gzipPour(fichier);
+        String type = null, statut = null, du = null, au = null, matricule = null;
+        for (int i = 2; i < args.length; i++) {
+            String opt = args[i];
+            if (opt.equals("--gzip")) {
+                gzip = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                System.err.println("Valeur manquante pour " + opt);
+                return 2;
+            }
+            String val = args[++i];
+            switch (opt) {
+                case "--format":
+                    try {
+                        format = ExportService.Format.valueOf(val.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Format inconnu : " + val + " (csv ou json)");
+                        return 2;
+                    }
+                    break;
+                case "--type":      type      = val; break;
+                case "--statut":    statut    = val; break;
+                case "--du":        du        = val; break;
+                case "--au":        au        = val; break;
+                case "--matricule": matricule = val; break;
+                default:
+                    System.err.println("Option inconnue : " + opt);
+                    System.err.println(USAGE);
+                    return 2;
+            }
+        }
+        SchemaMigrator.migrate();
+        StationnementFilter f = new StationnementFilter(type, statut, du, au, matricule);
+        long n = new ExportService().exporter(f, fichier, format, gzip, (lignes, debit) ->
+                System.err.printf("\r%,d lignes (%,.0f lignes/s)", lignes, debit));
+        System.err.println();
+        System.out.println(n + " ligne(s) exportée(s) dans " + fichier + ".");
+        return 0;
+    }
 }
@@ -0,0 +1,414 @@
+package parking;
+
+import parking.dao.AuditLog;
+import parking.dao.OccupancyIndex;
+import parking.dao.PlaceDAO;
+import parking.dao.StationnementDAO;
+import parking.dao.VehiculeDAO;
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Vehicule;
+import parking.util.DaoMetrics;
+import parking.util.DatabaseConnection;
+import parking.util.MethodStats;
+import parking.util.Money;
+import parking.util.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Générateur de charge des bornes, sans interface graphique : N bornes simultanées enregistrent
+ * entrées et sorties par {@link StationnementDAO#create} et {@link StationnementDAO#enregistrerSortie},
+ * sur les places et véhicules de la base configurée (parking.db.*). À lancer sur une base de test :
+ * les stationnements générés restent dans l'historique.
+ *
+ * Arrivées : processus de Poisson (débit total réparti entre les bornes), planifiées à l'avance :
+ * une borne en retard sur son planning révèle une capacité dépassée. Séjours : loi log-normale
+ * (médiane donnée, en minutes simulées), l'horloge simulée avançant {@code --acceleration} fois plus vite
+ * que le temps réel. La place est attribuée comme à la borne (la plus proche du type du véhicule) ;
+ * une part des entrées vise une place tirée au hasard, pour provoquer des conflits.
+ *
+ * Rapport : débit, latences (p50 à p99.9), refus, erreurs, et double réservations constatées
+ * en direct et en base. Code de sortie 1 en cas d'erreur ou de double réservation.
+ *
+ * <pre>
+ *   java -cp GestionParking.jar parking.LoadGenerator --bornes 8 --duree 60 --debit 50
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final String USAGE = "Usage : java -cp GestionParking.jar parking.LoadGenerator [--bornes N] [--duree s]"
+            + " [--debit entrées/s] [--sejour minutes] [--acceleration x] [--hasard part] [--rapport s]";
+
+    private static final double SIGMA_SEJOUR = 0.9;
+
+    private static final MethodStats STATS_ENTREE = DaoMetrics.stats("Charge.entree");
+    private static final MethodStats STATS_SORTIE = DaoMetrics.stats("Charge.sortie");
+
+    // Paramètres
+    private int    bornes       = 4;
+    private int    duree        = 60;
+    private double debit        = 20;
+    private double sejour       = 90;
+    private double acceleration = 600;
+    private double hasard       = 0.05;
+    private int    rapport      = 5;
+
+    private final StationnementDAO dao = new StationnementDAO();
+    private OccupancyIndex index;
+    private List<Vehicule> vehicules;
+    private final Map<Place.Type, List<Place>> placesParType = new EnumMap<>(Place.Type.class);
+
+    /** Sorties planifiées, servies par la première borne libre à leur échéance. */
+    private final DelayQueue<Sortie> sorties = new DelayQueue<>();
+    /** Place -> stationnement en cours d'après le générateur : une seconde entrée est une double réservation. */
+    private final Map<Integer, Integer> occupees = new ConcurrentHashMap<>();
+    private final Set<Integer> garees = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> erreurs = new ConcurrentHashMap<>();
+
+    private final LongAdder entrees     = new LongAdder();
+    private final LongAdder sortiesOk   = new LongAdder();
+    private final LongAdder refus       = new LongAdder();
+    private final LongAdder complet     = new LongAdder();
+    private final LongAdder sansVehicule = new LongAdder();
+    private final LongAdder doubles     = new LongAdder();
+    private final LongAccumulator retardMax = new LongAccumulator(Math::max, 0);
+
+    private long          debut;
+    private long          fin;
+    private LocalDateTime debutSimule;
+
+    /** Sortie planifiée : échéance en temps réel, date de sortie en temps simulé. */
+    private static final class Sortie implements Delayed {
+        final int           statId;
+        final int           placeId;
+        final int           vehiculeId;
+        final long          echeance;
+        final LocalDateTime date;
+
+        Sortie(int statId, int placeId, int vehiculeId, long echeance, LocalDateTime date) {
+            this.statId     = statId;
+            this.placeId    = placeId;
+            this.vehiculeId = vehiculeId;
+            this.echeance   = echeance;
+            this.date       = date;
+        }
+
+        @Override public long getDelay(TimeUnit unit) {
+            return unit.convert(echeance - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override public int compareTo(Delayed o) {
+            return Long.compare(echeance, ((Sortie) o).echeance);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /** Lance la charge et affiche le rapport ; retourne le code de sortie. */
+    public static int run(String[] args) {
+        LoadGenerator g = new LoadGenerator();
+        try {
+            if (!g.options(args)) {
+                System.err.println(USAGE);
+                return 2;
+            }
+            SchemaMigrator.migrate();
+            return g.executer();
+        } catch (SQLException | IllegalArgumentException e) {
+            System.err.println("Erreur : " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            AuditLog.closeInstance();
+            DatabaseConnection.close();
+        }
+    }
+
+    private boolean options(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                System.err.println("Valeur manquante pour " + args[i]);
+                return false;
+            }
+            String val = args[i + 1];
+            switch (args[i]) {
+                case "--bornes":       bornes       = Integer.parseInt(val);   break;
+                case "--duree":        duree        = Integer.parseInt(val);   break;
+                case "--debit":        debit        = Double.parseDouble(val); break;
+                case "--sejour":       sejour       = Double.parseDouble(val); break;
+                case "--acceleration": acceleration = Double.parseDouble(val); break;
+                case "--hasard":       hasard       = Double.parseDouble(val); break;
+                case "--rapport":      rapport      = Integer.parseInt(val);   break;
+                default:
+                    System.err.println("Option inconnue : " + args[i]);
+                    return false;
+            }
+        }
+        if (bornes < 1 || duree < 1 || debit <= 0 || sejour <= 0 || acceleration <= 0 || hasard < 0 || hasard > 1 || rapport < 1) {
+            throw new IllegalArgumentException("Paramètres hors limites");
+        }
+        return true;
+    }
+
+    private int executer() throws SQLException, InterruptedException {
+        index     = OccupancyIndex.getInstance();
+        vehicules = new VehiculeDAO().findAll();
+        for (Place.Type t : Place.Type.values()) placesParType.put(t, new ArrayList<>());
+        for (Place p : new PlaceDAO().findAll()) placesParType.get(p.getType()).add(p);
+        if (vehicules.isEmpty() || index.countTotal() == 0) throw new SQLException("Aucune place ou aucun véhicule en base");
+        int premierId = prochainId();
+
+        System.out.printf(Locale.ROOT, "%d bornes, %d s, %.1f entrées/s (Poisson), séjour médian %.0f min (log-normal),"
+                        + " accélération x%.0f, %.0f %% d'entrées sur une place au hasard%n",
+                bornes, duree, debit, sejour, acceleration, hasard * 100);
+        System.out.printf("%d places (%d libres), %d véhicules%n", index.countTotal(), index.countLibres(), vehicules.size());
+
+        debutSimule = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        debut = System.nanoTime();
+        fin   = debut + TimeUnit.SECONDS.toNanos(duree);
+        List<Thread> threads = new ArrayList<>();
+        for (int b = 0; b < bornes; b++) {
+            Thread t = new Thread(new Borne(b), "borne-" + (b + 1));
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+        long entreesAvant = 0, sortiesAvant = 0;
+        for (int s = rapport; s < duree; s += rapport) {
+            Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(debut - System.nanoTime()) + s * 1000L));
+            long e = entrees.sum(), o = sortiesOk.sum();
+            System.out.printf(Locale.ROOT, "[%4d s] entrées %6.1f/s  sorties %6.1f/s  en cours %6d  refus %d  erreurs %d%n",
+                    s, (e - entreesAvant) / (double) rapport, (o - sortiesAvant) / (double) rapport,
+                    occupees.size(), refus.sum(), nbErreurs());
+            entreesAvant = e;
+            sortiesAvant = o;
+        }
+        for (Thread t : threads) t.join();
+        double secondes = (System.nanoTime() - debut) / 1e9;
+
+        int restants = cloturer();
+        long[] controles = controler(premierId);
+        return afficher(secondes, restants, controles);
+    }
+
+    // ---- Bornes ----
+
+    private final class Borne implements Runnable {
+        private final SplittableRandom rnd;
+
+        Borne(int numero) {
+            rnd = new SplittableRandom(20240101L + numero);
+        }
+
+        @Override
+        public void run() {
+            long prochaine = debut + intervalle();
+            while (true) {
+                long maintenant = System.nanoTime();
+                if (maintenant >= fin) return;
+                Sortie s;
+                try {
+                    s = sorties.poll(Math.min(prochaine, fin) - maintenant, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (s != null) {
+                    sortir(s);
+                } else if (prochaine < fin && System.nanoTime() >= prochaine) {
+                    entrer(prochaine, rnd);
+                    prochaine += intervalle();
+                }
+            }
+        }
+
+        /** Écart jusqu'à la prochaine arrivée de cette borne (loi exponentielle), en ns. */
+        private long intervalle() {
+            return (long) (-Math.log(1 - rnd.nextDouble()) * bornes / debit * 1e9);
+        }
+    }
+
+    private void entrer(long prevue, SplittableRandom rnd) {
+        long t0 = System.nanoTime();
+        retardMax.accumulate(t0 - prevue);
+        Vehicule v = null;
+        for (int essai = 0; essai < 10 && v == null; essai++) {
+            Vehicule c = vehicules.get(rnd.nextInt(vehicules.size()));
+            if (garees.add(c.getId())) v = c;
+        }
+        if (v == null) {
+            sansVehicule.increment();
+            return;
+        }
+        Place.Type type = v.getCategorie() != null ? Place.Type.valueOf(v.getCategorie().name()) : Place.Type.Auto;
+        boolean auHasard = rnd.nextDouble() < hasard;
+        Place place;
+        if (auHasard) {
+            List<Place> places = placesParType.get(type);
+            place = places.isEmpty() ? null : places.get(rnd.nextInt(places.size()));
+        } else {
+            place = index.getAllocateur().attribuer(type, null);
+        }
+        if (place == null) {
+            garees.remove(v.getId());
+            complet.increment();
+            return;
+        }
+
+        LocalDateTime date = horloge(t0);
+        Stationnement s = new Stationnement(0, place, v, date, null, Money.AUCUN);
+        t0 = System.nanoTime();
+        try {
+            dao.create(s);
+            STATS_ENTREE.record(t0, 1);
+        } catch (SQLException e) {
+            STATS_ENTREE.record(t0, -1);
+            garees.remove(v.getId());
+            if (index.isOccupee(place.getId())) {
+                refus.increment();
+            } else {
+                if (!auHasard) index.rendre(place.getId());
+                erreur(e);
+            }
+            return;
+        }
+        entrees.increment();
+        Integer avant = occupees.putIfAbsent(place.getId(), s.getId());
+        if (avant != null) doubles.increment();
+
+        double minutes = sejour * Math.exp(SIGMA_SEJOUR * gauss(rnd));
+        long simules = Math.max(60, (long) (minutes * 60));
+        sorties.add(new Sortie(s.getId(), place.getId(), v.getId(),
+                System.nanoTime() + (long) (simules / acceleration * 1e9), date.plusSeconds(simules)));
+    }
+
+    private void sortir(Sortie s) {
+        long t0 = System.nanoTime();
+        retardMax.accumulate(t0 - s.echeance);
+        occupees.remove(s.placeId, s.statId);
+        try {
+            dao.enregistrerSortie(s.statId, s.date);
+            STATS_SORTIE.record(t0, 1);
+            sortiesOk.increment();
+            garees.remove(s.vehiculeId);
+        } catch (SQLException e) {
+            STATS_SORTIE.record(t0, -1);
+            occupees.putIfAbsent(s.placeId, s.statId); // toujours en cours : clôturé à la fin
+            erreur(e);
+        }
+    }
+
+    /** Date simulée d'un instant réel (System.nanoTime()). */
+    private LocalDateTime horloge(long nanos) {
+        return debutSimule.plusSeconds((long) ((nanos - debut) / 1e9 * acceleration));
+    }
+
+    private static double gauss(SplittableRandom rnd) {
+        // Box-Muller
+        return Math.sqrt(-2 * Math.log(1 - rnd.nextDouble())) * Math.cos(2 * Math.PI * rnd.nextDouble());
+    }
+
+    private void erreur(SQLException e) {
+        String msg = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        erreurs.computeIfAbsent(msg, k -> new LongAdder()).increment();
+    }
+
+    private long nbErreurs() {
+        return erreurs.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    // ---- Fin de charge ----
+
+    /** Clôture en un lot les stationnements générés encore en cours, à leur date de sortie prévue. */
+    private int cloturer() throws SQLException {
+        Map<Integer, LocalDateTime> lot = new HashMap<>();
+        for (Sortie s : sorties.toArray(new Sortie[0])) lot.put(s.statId, s.date);
+        sorties.clear();
+        if (!lot.isEmpty()) dao.enregistrerSorties(lot);
+        return lot.size();
+    }
+
+    /** {chevauchements entre stationnements générés, places à plusieurs stationnements en cours}. */
+    private static long[] controler(int premierId) throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection()) {
+            long chevauchements, places;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT COUNT(*) FROM Stationnement a JOIN Stationnement b ON b.place_id = a.place_id AND b.id > a.id " +
+                    "AND b.dateEntree < COALESCE(a.dateSortie, '9999-12-31') AND a.dateEntree < COALESCE(b.dateSortie, '9999-12-31') " +
+                    "WHERE a.id >= ? AND b.id >= ?")) {
+                ps.setInt(1, premierId);
+                ps.setInt(2, premierId);
+                ResultSet rs = ps.executeQuery();
+                rs.next();
+                chevauchements = rs.getLong(1);
+            }
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM (SELECT place_id FROM Stationnement " +
+                         "WHERE dateSortie IS NULL GROUP BY place_id HAVING COUNT(*) > 1) x")) {
+                rs.next();
+                places = rs.getLong(1);
+            }
+            return new long[]{chevauchements, places};
+        }
+    }
+
+    private static int prochainId() throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM Stationnement")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private int afficher(double secondes, int restants, long[] controles) {
+        long e = entrees.sum(), o = sortiesOk.sum();
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Durée réelle        : %.1f s%n", secondes);
+        System.out.printf(Locale.ROOT, "Entrées             : %d (%.1f/s)  refus place prise %d, parking complet %d, sans véhicule libre %d%n",
+                e, e / secondes, refus.sum(), complet.sum(), sansVehicule.sum());
+        System.out.printf(Locale.ROOT, "Sorties             : %d (%.1f/s)  + %d clôturées en fin de charge%n", o, o / secondes, restants);
+        System.out.printf(Locale.ROOT, "Débit total         : %.1f opérations/s%n", (e + o) / secondes);
+        System.out.println("Latence (ms)           p50      p90      p99    p99.9      max");
+        ligne("  entrée (create)", STATS_ENTREE);
+        ligne("  sortie", STATS_SORTIE);
+        long retard = TimeUnit.NANOSECONDS.toMillis(retardMax.get());
+        System.out.printf("Retard max planning : %d ms%s%n", retard, retard > 1000 ? "  (les bornes ne suivent plus : capacité dépassée)" : "");
+        System.out.printf("Double réservations : %d en direct, %d chevauchements en base, %d places à plusieurs stationnements en cours%n",
+                doubles.sum(), controles[0], controles[1]);
+        System.out.println("Erreurs             : " + nbErreurs());
+        erreurs.forEach((msg, n) -> System.out.printf("  %6d  %s%n", n.sum(), msg));
+        boolean ok = nbErreurs() == 0 && doubles.sum() == 0 && controles[0] == 0 && controles[1] == 0;
+        return ok ? 0 : 1;
+    }
+
+    private static void ligne(String libelle, MethodStats s) {
+        System.out.printf(Locale.ROOT, "%-20s %8.2f %8.2f %8.2f %8.2f %8.2f%n", libelle,
+                s.percentileNanos(0.50) / 1e6, s.percentileNanos(0.90) / 1e6, s.percentileNanos(0.99) / 1e6,
+                s.percentileNanos(0.999) / 1e6, s.getMaxMs());
+    }
+}
@@ -0,0 +1,505 @@
+package parking.dao;
+
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Vehicule;
+import parking.util.DaoMetrics;
+import parking.util.DatabaseConnection;
+import parking.util.MethodStats;
+import parking.util.Money;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Entrepôt analytique en mémoire : les stationnements terminés du site local, rangés en colonnes de types
+ * primitifs (entrée, durée, montant, place, type de place, catégorie du véhicule).
+ * Chargé une fois depuis la base, puis complété à chaque sortie par {@link StationnementDAO} ; les
+ * regroupements du graphique ({@link Axe}) et leurs filtres ({@link Filtre}) sont des parcours parallèles
+ * des colonnes, sans requête SQL.
+ *
+ * Les instants sont des secondes "locales" (LocalDateTime lu en UTC). Les regroupements et filtres par période
+ * portent sur la date de sortie, comme les agrégats de revenus. Une modification ou une suppression de
+ * stationnement masque sa ligne ; une modification ajoute la nouvelle version si le stationnement est terminé.
+ *
+ * Seules les écritures de ce poste mettent l'entrepôt à jour : les sorties, modifications et suppressions
+ * faites sur un autre poste n'apparaissent qu'au rechargement complet, relancé en arrière-plan quand l'entrepôt
+ * a plus de parking.analytics.rechargementMin minutes (10 par défaut, 0 = jamais). Pendant la lecture, l'ancien
+ * entrepôt reste servi et les deux reçoivent les mises à jour ; la mémoire occupée double le temps du rechargement.
+ */
+public final class AnalyticsStore {
+
+    static final String LOAD_SQL =
+            "SELECT s.id, s.place_id, s.vehicule_id, s.dateEntree, s.dateSortie, s.montant, p.type, v.categorie " +
+            "FROM Stationnement s JOIN Place p ON p.id = s.place_id JOIN Vehicule v ON v.id = s.vehicule_id " +
+            "WHERE s.dateSortie IS NOT NULL ORDER BY s.id";
+    static final String CATEGORIES_SQL = "SELECT id, categorie FROM Vehicule";
+
+    private static final MethodStats STATS_CHARGER = DaoMetrics.stats("AnalyticsStore.charger");
+    private static final MethodStats STATS_GROUPER = DaoMetrics.stats("AnalyticsStore.grouper");
+
+    private static final int  JOUR          = 86_400;
+    /** Lignes minimales par tranche de parcours parallèle. */
+    private static final int  TRANCHE       = 1 << 16;
+    private static final byte INCONNU       = -1;
+
+    private static final Logger LOG = Logger.getLogger(AnalyticsStore.class.getName());
+
+    private static final long RECHARGEMENT_NANOS =
+            TimeUnit.MINUTES.toNanos(Long.getLong("parking.analytics.rechargementMin", 10));
+
+    /** Entrepôt entièrement chargé, servi aux lectures. */
+    private static volatile AnalyticsStore instance;
+    /** Entrepôt en cours de lecture : reçoit aussi les mises à jour, rejouées à la fin du chargement. */
+    private static AnalyticsStore enChargement;
+    /** Protège instance / enChargement côté écriture, pour qu'une mise à jour n'échappe à aucun des deux. */
+    private static final Object CIBLES = new Object();
+    private static final AtomicBoolean RECHARGEMENT = new AtomicBoolean();
+
+    /** Axes de regroupement. */
+    public enum Axe { JOUR, SEMAINE, MOIS, TYPE, PLACE, CATEGORIE }
+
+    /** Critères de filtrage (null ou 0 = pas de filtre) ; période incluse, sur la date de sortie. */
+    public static final class Filtre {
+
+        public static final Filtre TOUT = new Filtre(null, null, null, 0, null);
+
+        private final LocalDate          du;
+        private final LocalDate          au;
+        private final Place.Type         type;
+        private final int                placeId;
+        private final Vehicule.Categorie categorie;
+
+        public Filtre(LocalDate du, LocalDate au, Place.Type type, int placeId, Vehicule.Categorie categorie) {
+            this.du        = du;
+            this.au        = au;
+            this.type      = type;
+            this.placeId   = placeId;
+            this.categorie = categorie;
+        }
+
+        public LocalDate          getDu()        { return du; }
+        public LocalDate          getAu()        { return au; }
+        public Place.Type         getType()      { return type; }
+        public int                getPlaceId()   { return placeId; }
+        public Vehicule.Categorie getCategorie() { return categorie; }
+
+        public Filtre avecPeriode(LocalDate du, LocalDate au) { return new Filtre(du, au, type, placeId, categorie); }
+        public Filtre avecType(Place.Type t)                  { return new Filtre(du, au, t, placeId, categorie); }
+        public Filtre avecPlace(int id)                       { return new Filtre(du, au, type, id, categorie); }
+        public Filtre avecCategorie(Vehicule.Categorie c)     { return new Filtre(du, au, type, placeId, c); }
+    }
+
+    /** Colonnes publiées pour un parcours : les lignes [0, taille) ne changent plus. */
+    private static final class Vue {
+        final long[] entrees;
+        final int[]  durees;
+        final long[] montants;
+        final int[]  places;
+        final byte[] types;
+        final byte[] categories;
+        final int    taille;
+        final long[] masquees;
+
+        Vue(AnalyticsStore s) {
+            entrees    = s.entrees;
+            durees     = s.durees;
+            montants   = s.montants;
+            places     = s.places;
+            types      = s.types;
+            categories = s.categories;
+            taille     = s.taille;
+            masquees   = s.masquees;
+        }
+    }
+
+    // Sous le verrou de l'instance ; les tableaux sont remplacés (et non modifiés) quand ils grandissent
+    private int[]   ids        = new int[TRANCHE];
+    private long[]  entrees    = new long[TRANCHE];
+    private int[]   durees     = new int[TRANCHE];
+    private long[]  montants   = new long[TRANCHE];
+    private int[]   places     = new int[TRANCHE];
+    private byte[]  types      = new byte[TRANCHE];
+    private byte[]  categories = new byte[TRANCHE];
+    private int     taille;
+    /** Les lignes [0, tries) viennent du chargement, triées par id. */
+    private int     tries;
+    /** Lignes masquées (bitset), copié à chaque modification. */
+    private long[]  masquees   = new long[0];
+    private byte[]  categorieParVehicule = new byte[0];
+    private int     placeMax;
+    private long    jourMin    = Long.MAX_VALUE;
+    private long    jourMax    = Long.MIN_VALUE;
+    /** Mises à jour reçues pendant le chargement, rejouées ensuite ; null une fois chargé. */
+    private List<Runnable> enAttente = new ArrayList<>();
+    /** Fin du chargement (System.nanoTime()). */
+    private long chargeLe;
+
+    private AnalyticsStore() {}
+
+    /**
+     * Retourne l'entrepôt, en le chargeant depuis la base au premier appel.
+     * Un entrepôt trop ancien est servi tel quel pendant que son remplaçant est chargé en arrière-plan.
+     */
+    public static AnalyticsStore getInstance() throws SQLException {
+        AnalyticsStore s = instance;
+        if (s == null) {
+            synchronized (AnalyticsStore.class) {
+                if (instance == null) construire();
+                return instance;
+            }
+        }
+        if (RECHARGEMENT_NANOS > 0 && System.nanoTime() - s.chargeLe > RECHARGEMENT_NANOS
+                && RECHARGEMENT.compareAndSet(false, true)) {
+            Thread t = new Thread(() -> {
+                try {
+                    construire();
+                } catch (SQLException | RuntimeException e) {
+                    LOG.log(Level.WARNING, "Rechargement de l'entrepôt analytique impossible", e);
+                } finally {
+                    RECHARGEMENT.set(false);
+                }
+            }, "parking-analytics-rechargement");
+            t.setDaemon(true);
+            t.start();
+        }
+        return s;
+    }
+
+    /** Retourne l'entrepôt s'il est entièrement chargé, sinon null (sans accès à la base). */
+    public static AnalyticsStore getInstanceSiChargee() {
+        return instance;
+    }
+
+    /** Lit un nouvel entrepôt puis le publie à la place de l'actuel. */
+    private static void construire() throws SQLException {
+        AnalyticsStore s = new AnalyticsStore();
+        // Désigné avant la lecture : les sorties validées entre-temps sont mises en attente
+        synchronized (CIBLES) {
+            enChargement = s;
+        }
+        try {
+            s.charger();
+            synchronized (CIBLES) {
+                instance = s;
+            }
+        } finally {
+            synchronized (CIBLES) {
+                enChargement = null;
+            }
+        }
+    }
+
+    /** Applique une mise à jour à l'entrepôt servi et à celui en cours de chargement. */
+    private static void diffuser(Consumer<AnalyticsStore> maj) {
+        synchronized (CIBLES) {
+            AnalyticsStore a = instance, b = enChargement;
+            if (a != null) a.appliquer(() -> maj.accept(a));
+            if (b != null && b != a) b.appliquer(() -> maj.accept(b));
+        }
+    }
+
+    /** Nombre de stationnements visibles (non masqués). */
+    public synchronized int taille() {
+        int masques = 0;
+        for (long w : masquees) masques += Long.bitCount(w);
+        return taille - masques;
+    }
+
+    // ---- Mises à jour (appelées par les DAO après écriture réussie, site local) ----
+
+    static void sortie(int statId, int placeId, int vehiculeId, LocalDateTime entree, LocalDateTime sortie,
+                       long montant, Place.Type type) {
+        diffuser(s -> {
+            if (s.indexOf(statId) < 0) s.ajouter(statId, placeId, entree, sortie, montant, code(type), s.categorieDe(vehiculeId));
+        });
+    }
+
+    static void modification(Stationnement st) {
+        diffuser(s -> {
+            s.masquer(st.getId());
+            if (st.getDateEntree() != null && st.getDateSortie() != null) {
+                Vehicule v = st.getVehicule();
+                byte categorie = v.getCategorie() != null ? code(v.getCategorie()) : s.categorieDe(v.getId());
+                s.ajouter(st.getId(), st.getPlace().getId(), st.getDateEntree(), st.getDateSortie(),
+                        st.getMontant(), code(st.getPlace().getType()), categorie);
+            }
+        });
+    }
+
+    static void suppression(int statId) {
+        diffuser(s -> s.masquer(statId));
+    }
+
+    static void vehicule(int vehiculeId, Vehicule.Categorie categorie) {
+        diffuser(s -> s.categoriser(vehiculeId, code(categorie)));
+    }
+
+    // ---- Lectures ----
+
+    /**
+     * Regroupe les stationnements du filtre selon l'axe, par un parcours parallèle des colonnes.
+     * @return une ligne par groupe non vide, dans l'ordre de l'axe : {libellé, clé, nombre (Long),
+     *         revenus en centimes (Long), durée totale en secondes (Long)} ; la clé est le premier jour
+     *         de la période (LocalDate), le {@link Place.Type}, l'id de place (Integer) ou la {@link Vehicule.Categorie}
+     */
+    public List<Object[]> grouper(Axe axe, Filtre f) {
+        return STATS_GROUPER.liste(() -> {
+            Vue v;
+            long jMin, jMax;
+            int nPlaces;
+            synchronized (this) {
+                v = new Vue(this);
+                jMin = jourMin;
+                jMax = jourMax;
+                nPlaces = placeMax + 1;
+            }
+            long du = f.du == null ? Long.MIN_VALUE : f.du.toEpochDay() * JOUR;
+            long au = f.au == null ? Long.MAX_VALUE : (f.au.toEpochDay() + 1) * JOUR;
+            if (f.du != null) jMin = Math.max(jMin, f.du.toEpochDay());
+            if (f.au != null) jMax = Math.min(jMax, f.au.toEpochDay());
+            List<Object[]> result = new ArrayList<>();
+            if (v.taille == 0 || jMin > jMax) return result;
+
+            // Groupe de chaque jour pour les axes de période, groupe = code de la colonne sinon
+            int[] groupeParJour = null;
+            LocalDate[] debuts;
+            int nGroupes;
+            switch (axe) {
+                case JOUR:
+                case SEMAINE:
+                case MOIS: {
+                    groupeParJour = new int[(int) (jMax - jMin + 1)];
+                    List<LocalDate> d = new ArrayList<>();
+                    LocalDate precedent = null;
+                    for (int j = 0; j < groupeParJour.length; j++) {
+                        LocalDate debut = debutDePeriode(axe, LocalDate.ofEpochDay(jMin + j));
+                        if (!debut.equals(precedent)) {
+                            d.add(debut);
+                            precedent = debut;
+                        }
+                        groupeParJour[j] = d.size() - 1;
+                    }
+                    debuts = d.toArray(new LocalDate[0]);
+                    nGroupes = debuts.length;
+                    break;
+                }
+                case TYPE:      debuts = null; nGroupes = Place.Type.values().length; break;
+                case CATEGORIE: debuts = null; nGroupes = Vehicule.Categorie.values().length; break;
+                default:        debuts = null; nGroupes = nPlaces; break;
+            }
+
+            int tranches = Math.max(1, Math.min(v.taille / TRANCHE, Runtime.getRuntime().availableProcessors() * 4));
+            final int[] periode = groupeParJour;
+            final long jourBase = jMin;
+            final int n = nGroupes;
+            long[] total = IntStream.range(0, tranches).parallel()
+                    .mapToObj(t -> parcourir(v, (int) ((long) v.taille * t / tranches),
+                            (int) ((long) v.taille * (t + 1) / tranches), axe, f, du, au, periode, jourBase, n))
+                    .reduce(new long[n * 3], AnalyticsStore::additionner);
+
+            OccupancyIndex index = OccupancyIndex.getInstanceSiChargee();
+            for (int g = 0; g < n; g++) {
+                if (total[g * 3] == 0) continue;
+                String libelle;
+                Object cle;
+                switch (axe) {
+                    case JOUR:      cle = debuts[g]; libelle = debuts[g].toString(); break;
+                    case SEMAINE:   cle = debuts[g]; libelle = String.format("%d-S%02d",
+                            debuts[g].get(IsoFields.WEEK_BASED_YEAR), debuts[g].get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)); break;
+                    case MOIS:      cle = debuts[g]; libelle = debuts[g].toString().substring(0, 7); break;
+                    case TYPE:      cle = Place.Type.values()[g]; libelle = cle.toString(); break;
+                    case CATEGORIE: cle = Vehicule.Categorie.values()[g]; libelle = cle.toString(); break;
+                    default: {
+                        cle = g;
+                        Place p = index != null ? index.get(g) : null;
+                        libelle = p != null ? p.getNumero() : "#" + g;
+                    }
+                }
+                result.add(new Object[]{libelle, cle, total[g * 3], total[g * 3 + 1], total[g * 3 + 2]});
+            }
+            return result;
+        });
+    }
+
+    // ---- Interne ----
+
+    /** Accumule {nombre, centimes, secondes} par groupe sur les lignes [debut, fin). */
+    private static long[] parcourir(Vue v, int debut, int fin, Axe axe, Filtre f, long du, long au,
+                                    int[] periode, long jourBase, int nGroupes) {
+        long[] acc = new long[nGroupes * 3];
+        long[] entrees = v.entrees, montants = v.montants, masquees = v.masquees;
+        int[] durees = v.durees, places = v.places;
+        byte[] types = v.types, categories = v.categories;
+        int type = f.type == null ? INCONNU : f.type.ordinal();
+        int categorie = f.categorie == null ? INCONNU : f.categorie.ordinal();
+        int place = f.placeId;
+        for (int i = debut; i < fin; i++) {
+            if ((i >>> 6) < masquees.length && (masquees[i >>> 6] & (1L << i)) != 0) continue;
+            long sortie = entrees[i] + durees[i];
+            if (sortie < du || sortie >= au) continue;
+            if (type != INCONNU && types[i] != type) continue;
+            if (categorie != INCONNU && categories[i] != categorie) continue;
+            if (place != 0 && places[i] != place) continue;
+            int g;
+            switch (axe) {
+                case TYPE:      g = types[i]; break;
+                case CATEGORIE: g = categories[i]; break;
+                case PLACE:     g = places[i]; break;
+                default:        g = periode[(int) (Math.floorDiv(sortie, JOUR) - jourBase)];
+            }
+            if (g < 0) continue;
+            int k = g * 3;
+            acc[k]++;
+            acc[k + 1] += montants[i];
+            acc[k + 2] += durees[i];
+        }
+        return acc;
+    }
+
+    private static long[] additionner(long[] a, long[] b) {
+        long[] r = new long[a.length];
+        for (int i = 0; i < r.length; i++) r[i] = a[i] + b[i];
+        return r;
+    }
+
+    private static LocalDate debutDePeriode(Axe axe, LocalDate jour) {
+        switch (axe) {
+            case SEMAINE: return jour.minusDays(jour.getDayOfWeek().getValue() - 1);
+            case MOIS:    return jour.withDayOfMonth(1);
+            default:      return jour;
+        }
+    }
+
+    /** Lit les stationnements terminés en flux, puis rejoue les mises à jour reçues entre-temps. */
+    private void charger() throws SQLException {
+        STATS_CHARGER.compter(() -> {
+            try (Connection c = DatabaseConnection.getConnection()) {
+                try (Statement st = c.createStatement();
+                     ResultSet rs = st.executeQuery(CATEGORIES_SQL)) {
+                    while (rs.next()) {
+                        byte code = code(EntityCache.categorie(rs.getString(2)));
+                        synchronized (this) {
+                            categoriser(rs.getInt(1), code);
+                        }
+                    }
+                }
+                try (PreparedStatement ps = c.prepareStatement(LOAD_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    int n = 0;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long montant = Money.lire(rs, "montant");
+                            byte type = code(EntityCache.placeType(rs.getString("type")));
+                            byte categorie = code(EntityCache.categorie(rs.getString("categorie")));
+                            LocalDateTime entree = rs.getTimestamp("dateEntree").toLocalDateTime();
+                            LocalDateTime sortie = rs.getTimestamp("dateSortie").toLocalDateTime();
+                            synchronized (this) {
+                                ajouter(rs.getInt("id"), rs.getInt("place_id"), entree, sortie, montant, type, categorie);
+                            }
+                            n++;
+                        }
+                    }
+                    return n;
+                }
+            }
+        });
+        synchronized (this) {
+            tries = taille;
+            for (Runnable r : enAttente) r.run();
+            enAttente = null;
+            chargeLe = System.nanoTime();
+        }
+    }
+
+    /** Applique une mise à jour, ou la met en attente pendant le chargement. */
+    private synchronized void appliquer(Runnable maj) {
+        if (enAttente != null) enAttente.add(maj);
+        else maj.run();
+    }
+
+    private void ajouter(int id, int placeId, LocalDateTime entree, LocalDateTime sortie, long montant,
+                         byte type, byte categorie) {
+        if (taille == ids.length) agrandir();
+        long e = entree.toEpochSecond(ZoneOffset.UTC);
+        long s = sortie.toEpochSecond(ZoneOffset.UTC);
+        ids[taille]        = id;
+        entrees[taille]    = e;
+        durees[taille]     = (int) (s - e);
+        montants[taille]   = montant == Money.AUCUN ? 0 : montant;
+        places[taille]     = placeId;
+        types[taille]      = type;
+        categories[taille] = categorie;
+        taille++;
+        placeMax = Math.max(placeMax, placeId);
+        long jour = Math.floorDiv(s, JOUR);
+        jourMin = Math.min(jourMin, jour);
+        jourMax = Math.max(jourMax, jour);
+    }
+
+    /** Remplace les colonnes par des copies plus grandes ; les parcours en cours gardent les anciennes. */
+    private void agrandir() {
+        int capacite = ids.length + (ids.length >> 1);
+        ids        = Arrays.copyOf(ids, capacite);
+        entrees    = Arrays.copyOf(entrees, capacite);
+        durees     = Arrays.copyOf(durees, capacite);
+        montants   = Arrays.copyOf(montants, capacite);
+        places     = Arrays.copyOf(places, capacite);
+        types      = Arrays.copyOf(types, capacite);
+        categories = Arrays.copyOf(categories, capacite);
+    }
+
+    /** Ligne visible du stationnement, -1 si absent : d'abord les ajouts récents, puis le chargement (trié). */
+    private int indexOf(int id) {
+        for (int i = taille - 1; i >= tries; i--) {
+            if (ids[i] == id && !masquee(i)) return i;
+        }
+        int i = Arrays.binarySearch(ids, 0, tries, id);
+        return i >= 0 && !masquee(i) ? i : -1;
+    }
+
+    private boolean masquee(int i) {
+        return (i >>> 6) < masquees.length && (masquees[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private void masquer(int id) {
+        int i = indexOf(id);
+        if (i < 0) return;
+        long[] m = Arrays.copyOf(masquees, Math.max(masquees.length, (i >>> 6) + 1));
+        m[i >>> 6] |= 1L << i;
+        masquees = m;
+    }
+
+    private void categoriser(int vehiculeId, byte categorie) {
+        if (vehiculeId >= categorieParVehicule.length) {
+            byte[] t = Arrays.copyOf(categorieParVehicule, Math.max(vehiculeId + 1, categorieParVehicule.length * 2));
+            Arrays.fill(t, categorieParVehicule.length, t.length, INCONNU);
+            categorieParVehicule = t;
+        }
+        categorieParVehicule[vehiculeId] = categorie;
+    }
+
+    private byte categorieDe(int vehiculeId) {
+        return vehiculeId >= 0 && vehiculeId < categorieParVehicule.length ? categorieParVehicule[vehiculeId] : INCONNU;
+    }
+
+    private static byte code(Enum<?> e) {
+        return e == null ? INCONNU : (byte) e.ordinal();
+    }
+}
@@ -0,0 +1,531 @@
+package parking.dao;
+
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Tarification;
+import parking.model.Vehicule;
+import parking.util.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal d'audit des stationnements, en ajout seul : chaque entrée, sortie, modification et suppression
+ * validée par {@link StationnementDAO} y est ajoutée après la transaction, sans jamais réécrire le passé.
+ *
+ * Segments de taille fixe écrits par un {@link MappedByteBuffer} ({@code audit-000001-20261018.log},
+ * dossier parking.audit.dir), changés chaque jour et quand parking.audit.segmentMo est atteint ;
+ * forcés sur disque toutes les parking.audit.forceSec secondes, à chaque changement et à la fermeture.
+ * Enregistrements de {@value #RECORD} octets (l'en-tête du segment occupe le premier) :
+ * <pre>
+ *   0  byte  type (ENTREE, SORTIE, MODIF, SUPPR, REPRISE), 3 octets à 0
+ *   4  int   id du stationnement
+ *   8  int   id de la place (0 pour SUPPR)
+ *  12  int   id du véhicule
+ *  16  long  date d'entrée, en secondes locales ({@link #SANS_DATE} si absente)
+ *  24  long  date de sortie
+ *  32  long  montant en centimes ({@link Money#AUCUN} si absent)
+ *  40  long  horodatage d'écriture (ms depuis l'époque)
+ *  48  long  numéro d'ordre
+ *  56  int   CRC de l'enregistrement précédent
+ *  60  int   CRC32 des octets 0..59
+ * </pre>
+ * Chaque CRC couvre le précédent : modifier, retirer ou déplacer un enregistrement rompt la chaîne
+ * ({@link #verifier}), d'un segment à l'autre aussi (l'en-tête reprend le dernier CRC du segment précédent).
+ * Un CRC n'est pas une signature : la chaîne révèle une altération, pas une réécriture complète de la suite.
+ *
+ * Chaque segment commence par les stationnements en cours (enregistrements REPRISE) : l'occupation
+ * se reconstruit en lisant le seul dernier segment ({@link #enCours(Path)}), sans requête.
+ */
+public final class AuditLog implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(AuditLog.class.getName());
+
+    public static final byte ENTREE  = 1;
+    public static final byte SORTIE  = 2;
+    public static final byte MODIF   = 3;
+    public static final byte SUPPR   = 4;
+    /** Stationnement en cours au début du segment. */
+    public static final byte REPRISE = 5;
+
+    /** Date absente (stationnement en cours, suppression). */
+    public static final long SANS_DATE = Long.MIN_VALUE;
+
+    static final int RECORD = 64;
+    private static final int  CORPS   = 60;
+    private static final int  ENTETE  = RECORD;
+    private static final long MAGIC   = 0x5041524B41554454L; // "PARKAUDT"
+    private static final int  VERSION = 1;
+
+    private static final String  DEFAULT_DIR = "parking-audit";
+    private static final Pattern NOM = Pattern.compile("audit-(\\d{6})-(\\d{8})\\.log");
+    private static final DateTimeFormatter JOUR = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /** Lecture d'un enregistrement. */
+    @FunctionalInterface
+    public interface Visiteur {
+        void evenement(byte type, int stationnementId, int placeId, int vehiculeId,
+                       long entree, long sortie, long montant, long horodatage);
+    }
+
+    private static volatile AuditLog instance;
+    private static boolean desactive;
+
+    private final Path       dossier;
+    private final long       tailleSegment;
+    private final ByteBuffer rec = ByteBuffer.allocate(RECORD);
+    private final CRC32      crc = new CRC32();
+    /** Occupation après le dernier enregistrement écrit. */
+    private final Etat       etat = new Etat();
+    private ScheduledExecutorService forcage;
+
+    // Sous le verrou de l'instance
+    private FileChannel      ch;
+    private MappedByteBuffer buf;
+    private long             numero;
+    private int              pos;
+    private int              chaine;
+    private long             seq;
+    /** Début du jour suivant celui du segment (ms) : le segment change à cette heure. */
+    private long             finJour;
+    private boolean          ferme;
+
+    /**
+     * Ouvre le journal du dossier : reprend la fin du dernier segment, ou crée le premier segment
+     * à partir des stationnements en cours {@code base} (dossier vide).
+     */
+    AuditLog(Path dossier, long tailleSegment, List<Stationnement> base) throws IOException {
+        this.dossier       = dossier;
+        this.tailleSegment = Math.max(tailleSegment, 1 << 20);
+        Files.createDirectories(dossier);
+        List<Path> segments = segments(dossier);
+        if (segments.isEmpty()) {
+            if (base != null) {
+                for (Stationnement s : base) {
+                    etat.ouvrir(s.getPlace().getId(), s.getId(), s.getVehicule().getId(), secondes(s.getDateEntree()));
+                }
+            }
+            nouveauSegment();
+            return;
+        }
+        Path dernier = segments.get(segments.size() - 1);
+        numero = numero(dernier);
+        ch = FileChannel.open(dernier, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+        Lecture l = lire(dernier, buf, etat);
+        seq    = l.dernierSeq;
+        chaine = l.dernierCrc;
+        pos    = l.fin;
+        finJour = debutJour(LocalDate.parse(nom(dernier).group(2), JOUR).plusDays(1));
+        if (l.anomalie != null && !l.finIncomplete) {
+            // Conserver le segment tel quel (preuve) et continuer dans un nouveau
+            LOG.severe("Journal d'audit " + dernier + " altéré (" + l.anomalie + ") : nouveau segment");
+            nouveauSegment();
+        } else {
+            if (l.finIncomplete) {
+                LOG.warning("Journal d'audit " + dernier + " : dernier enregistrement incomplet effacé");
+                for (int i = 0; i < RECORD; i += 8) buf.putLong(pos + i, 0);
+            }
+            if (System.currentTimeMillis() >= finJour || pos + RECORD > buf.capacity()) nouveauSegment();
+        }
+    }
+
+    /**
+     * Journal ouvert au premier appel, ou null s'il est désactivé (parking.audit.dir vide) ou inaccessible.
+     * Le premier segment d'un dossier vide part des stationnements en cours en base.
+     */
+    public static AuditLog getInstance() {
+        AuditLog a = instance;
+        if (a != null) return a;
+        synchronized (AuditLog.class) {
+            if (instance != null || desactive) return instance;
+            String dir = System.getProperty("parking.audit.dir", DEFAULT_DIR);
+            if (dir.trim().isEmpty()) {
+                desactive = true;
+                return null;
+            }
+            try {
+                Path dossier = Paths.get(dir);
+                List<Stationnement> base = segments(dossier).isEmpty() ? new StationnementDAO().findEnCours() : null;
+                a = new AuditLog(dossier, Long.getLong("parking.audit.segmentMo", 64) << 20, base);
+                a.demarrerForcage(Long.getLong("parking.audit.forceSec", 1));
+                instance = a;
+            } catch (IOException e) {
+                desactive = true;
+                LOG.log(Level.SEVERE, "Journal d'audit " + dir + " inaccessible : audit désactivé", e);
+            } catch (SQLException e) {
+                LOG.warning("Journal d'audit : stationnements en cours illisibles (" + e.getMessage() + "), création reportée");
+            }
+            return instance;
+        }
+    }
+
+    /** Force et ferme le journal courant (un appel DAO ultérieur le rouvre). */
+    public static synchronized void closeInstance() {
+        AuditLog a = instance;
+        instance = null;
+        if (a != null) a.close();
+    }
+
+    /**
+     * Ajoute un événement validé par le DAO. Une erreur d'écriture est journalisée sans être remontée :
+     * la transaction est déjà validée.
+     */
+    static void tracer(byte type, int stationnementId, int placeId, int vehiculeId,
+                       LocalDateTime entree, LocalDateTime sortie, long montant) {
+        AuditLog a = getInstance();
+        if (a == null) return;
+        try {
+            a.ajouter(type, stationnementId, placeId, vehiculeId, secondes(entree), secondes(sortie), montant);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Écriture du journal d'audit impossible", e);
+        }
+    }
+
+    public Path getDossier() { return dossier; }
+
+    /** Ajoute un enregistrement (dates en secondes locales, {@link #SANS_DATE} si absentes). */
+    public synchronized void ajouter(byte type, int stationnementId, int placeId, int vehiculeId,
+                                     long entree, long sortie, long montant) throws IOException {
+        if (ferme) throw new IOException("Journal d'audit " + dossier + " fermé");
+        long maintenant = System.currentTimeMillis();
+        if (maintenant >= finJour || pos + RECORD > buf.capacity()) nouveauSegment();
+        ecrire(type, stationnementId, placeId, vehiculeId, entree, sortie, montant, maintenant);
+    }
+
+    /** Stationnements en cours d'après le journal (place et véhicule réduits à leur id), par date d'entrée. */
+    public synchronized List<Stationnement> enCours() {
+        return etat.liste();
+    }
+
+    @Override
+    public void close() {
+        if (forcage != null) forcage.shutdownNow();
+        synchronized (this) {
+            if (ferme) return;
+            ferme = true;
+            try {
+                fermerSegment();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Fermeture du journal d'audit impossible", e);
+            }
+        }
+    }
+
+    // ---- Écriture ----
+
+    private void ecrire(byte type, int stationnementId, int placeId, int vehiculeId,
+                        long entree, long sortie, long montant, long horodatage) {
+        rec.clear();
+        rec.put(type).put((byte) 0).putShort((short) 0)
+           .putInt(stationnementId).putInt(placeId).putInt(vehiculeId)
+           .putLong(entree).putLong(sortie).putLong(montant).putLong(horodatage)
+           .putLong(++seq).putInt(chaine);
+        crc.reset();
+        crc.update(rec.array(), 0, CORPS);
+        chaine = (int) crc.getValue();
+        rec.putInt(chaine).flip();
+        buf.position(pos);
+        buf.put(rec);
+        pos += RECORD;
+        etat.evenement(type, stationnementId, placeId, vehiculeId, entree, sortie, montant, horodatage);
+    }
+
+    /** Ferme le segment courant et en commence un autre par les stationnements en cours. */
+    private void nouveauSegment() throws IOException {
+        fermerSegment();
+        long maintenant = System.currentTimeMillis();
+        LocalDate jour = Instant.ofEpochMilli(maintenant).atZone(ZoneId.systemDefault()).toLocalDate();
+        List<Stationnement> reprises = etat.liste();
+        long taille = Math.max(tailleSegment, ENTETE + (long) (reprises.size() + 1024) * RECORD);
+        numero++;
+        Path fichier = dossier.resolve(String.format("audit-%06d-%s.log", numero, jour.format(JOUR)));
+        ch = FileChannel.open(fichier, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, taille);
+        finJour = debutJour(jour.plusDays(1));
+
+        rec.clear();
+        rec.putLong(MAGIC).putInt(VERSION).putInt(RECORD).putLong(numero)
+           .putInt(chaine).putInt(reprises.size()).putLong(maintenant)
+           .putLong(0).putLong(0).putInt(0);
+        crc.reset();
+        crc.update(rec.array(), 0, CORPS);
+        rec.putInt((int) crc.getValue()).flip();
+        buf.position(0);
+        buf.put(rec);
+        pos = ENTETE;
+        for (Stationnement s : reprises) {
+            ecrire(REPRISE, s.getId(), s.getPlace().getId(), s.getVehicule().getId(),
+                    secondes(s.getDateEntree()), SANS_DATE, Money.AUCUN, maintenant);
+        }
+        buf.force();
+    }
+
+    private void fermerSegment() throws IOException {
+        if (buf == null) return;
+        buf.force();
+        ch.close();
+        buf = null;
+        ch  = null;
+    }
+
+    private void demarrerForcage(long periodeSec) {
+        if (periodeSec <= 0) return;
+        forcage = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parking-audit");
+            t.setDaemon(true);
+            return t;
+        });
+        forcage.scheduleWithFixedDelay(this::forcer, periodeSec, periodeSec, TimeUnit.SECONDS);
+    }
+
+    /** Force les pages modifiées du segment courant, hors verrou (les écritures continuent). */
+    private void forcer() {
+        MappedByteBuffer b;
+        synchronized (this) {
+            b = buf;
+        }
+        if (b != null) b.force();
+    }
+
+    // ---- Lecture ----
+
+    /**
+     * Parcourt tous les segments du dossier dans l'ordre en vérifiant la chaîne des CRC.
+     * Un dernier enregistrement incomplet en fin du dernier segment (arrêt brutal) est ignoré.
+     * @return nombre d'enregistrements lus
+     * @throws IOException si un segment est illisible ou si la chaîne est rompue (altération)
+     */
+    public static long verifier(Path dossier, Visiteur visiteur) throws IOException {
+        List<Path> segments = segments(dossier);
+        long n = 0;
+        Integer chaine = null;
+        for (int i = 0; i < segments.size(); i++) {
+            Path f = segments.get(i);
+            Lecture l = lire(f, visiteur);
+            if (l.anomalie == null && chaine != null && l.chaineDebut != chaine) {
+                l.anomalie = "en-tête non chaîné au segment précédent";
+            }
+            boolean dernier = i == segments.size() - 1;
+            if (l.anomalie != null && !(dernier && l.finIncomplete)) {
+                throw new IOException("Journal d'audit altéré : " + f.getFileName() + ", " + l.anomalie);
+            }
+            n += (l.fin - ENTETE) / RECORD;
+            chaine = l.dernierCrc;
+        }
+        return n;
+    }
+
+    /** {@link #verifier(Path, Visiteur)} sans visiteur. */
+    public static long verifier(Path dossier) throws IOException {
+        return verifier(dossier, (type, stationnementId, placeId, vehiculeId, entree, sortie, montant, horodatage) -> {});
+    }
+
+    /**
+     * Stationnements en cours d'après le journal : relecture du seul dernier segment
+     * (place et véhicule réduits à leur id), par date d'entrée.
+     */
+    public static List<Stationnement> enCours(Path dossier) throws IOException {
+        List<Path> segments = segments(dossier);
+        Etat etat = new Etat();
+        if (!segments.isEmpty()) {
+            Path f = segments.get(segments.size() - 1);
+            Lecture l = lire(f, etat);
+            if (l.anomalie != null && !l.finIncomplete) {
+                throw new IOException("Journal d'audit altéré : " + f.getFileName() + ", " + l.anomalie);
+            }
+        }
+        return etat.liste();
+    }
+
+    /** Résultat de la lecture d'un segment. */
+    private static final class Lecture {
+        int    chaineDebut;
+        /** Position qui suit le dernier enregistrement valide. */
+        int    fin = ENTETE;
+        int    dernierCrc;
+        long   dernierSeq;
+        /** null si le segment est intègre. */
+        String anomalie;
+        /** L'anomalie ne touche que le dernier enregistrement, suivi de zéros (écriture interrompue). */
+        boolean finIncomplete;
+    }
+
+    private static Lecture lire(Path f, Visiteur visiteur) throws IOException {
+        try (FileChannel c = FileChannel.open(f, StandardOpenOption.READ)) {
+            return lire(f, c.map(FileChannel.MapMode.READ_ONLY, 0, c.size()), visiteur);
+        }
+    }
+
+    /** Lit un segment jusqu'au premier emplacement vide ou à la première rupture de la chaîne. */
+    private static Lecture lire(Path f, ByteBuffer b, Visiteur visiteur) {
+        Lecture l = new Lecture();
+        CRC32 controle = new CRC32();
+        ByteBuffer corps = b.duplicate();
+        if (b.limit() < ENTETE || b.getLong(0) != MAGIC || b.getInt(8) != VERSION || b.getInt(12) != RECORD
+                || crc(controle, corps, 0) != b.getInt(CORPS) || b.getLong(16) != numero(f)) {
+            l.anomalie = "en-tête invalide";
+            return l;
+        }
+        l.chaineDebut = b.getInt(24);
+        int prec = l.chaineDebut;
+        int p = ENTETE;
+        while (p + RECORD <= b.limit()) {
+            byte type = b.get(p);
+            if (type == 0) break;
+            int c = crc(controle, corps, p);
+            if (c != b.getInt(p + CORPS) || b.getInt(p + 56) != prec) {
+                l.anomalie = "enregistrement " + ((p - ENTETE) / RECORD + 1) + " invalide";
+                l.finIncomplete = zeros(b, p + RECORD);
+                break;
+            }
+            visiteur.evenement(type, b.getInt(p + 4), b.getInt(p + 8), b.getInt(p + 12),
+                    b.getLong(p + 16), b.getLong(p + 24), b.getLong(p + 32), b.getLong(p + 40));
+            l.dernierSeq = b.getLong(p + 48);
+            prec = c;
+            p += RECORD;
+        }
+        l.fin = p;
+        l.dernierCrc = prec;
+        return l;
+    }
+
+    private static int crc(CRC32 controle, ByteBuffer corps, int p) {
+        corps.clear();
+        corps.position(p).limit(p + CORPS);
+        controle.reset();
+        controle.update(corps);
+        return (int) controle.getValue();
+    }
+
+    private static boolean zeros(ByteBuffer b, int depuis) {
+        for (int p = depuis; p + 8 <= b.limit(); p += 8) {
+            if (b.getLong(p) != 0) return false;
+        }
+        return true;
+    }
+
+    /** Segments du dossier, dans l'ordre. */
+    static List<Path> segments(Path dossier) throws IOException {
+        try (Stream<Path> s = Files.list(dossier)) {
+            return s.filter(p -> NOM.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .collect(Collectors.toList());
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static Matcher nom(Path f) {
+        Matcher m = NOM.matcher(f.getFileName().toString());
+        if (!m.matches()) throw new IllegalArgumentException("Segment d'audit mal nommé : " + f);
+        return m;
+    }
+
+    private static long numero(Path f) {
+        return Long.parseLong(nom(f).group(1));
+    }
+
+    private static long debutJour(LocalDate jour) {
+        return jour.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long secondes(LocalDateTime t) {
+        return t != null ? Tarification.secondes(t) : SANS_DATE;
+    }
+
+    /** Stationnements en cours par place (id de place dense), tenus enregistrement par enregistrement. */
+    private static final class Etat implements Visiteur {
+        /** Id du stationnement en cours sur la place, 0 si libre. */
+        int[]  stat     = new int[256];
+        int[]  vehicule = new int[256];
+        long[] entree   = new long[256];
+
+        @Override
+        public void evenement(byte type, int stationnementId, int placeId, int vehiculeId,
+                              long dEntree, long dSortie, long montant, long horodatage) {
+            switch (type) {
+                case ENTREE:
+                case REPRISE:
+                    ouvrir(placeId, stationnementId, vehiculeId, dEntree);
+                    break;
+                case SORTIE:
+                    // Une entrée suivante sur la place peut avoir été écrite avant cette sortie
+                    if (placeId < stat.length && stat[placeId] == stationnementId) stat[placeId] = 0;
+                    break;
+                case MODIF:
+                    retirer(stationnementId);
+                    if (dSortie == SANS_DATE) ouvrir(placeId, stationnementId, vehiculeId, dEntree);
+                    break;
+                case SUPPR:
+                    retirer(stationnementId);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void ouvrir(int placeId, int stationnementId, int vehiculeId, long dEntree) {
+            if (placeId <= 0) return;
+            if (placeId >= stat.length) {
+                int n = Math.max(placeId + 1, stat.length * 2);
+                stat     = Arrays.copyOf(stat, n);
+                vehicule = Arrays.copyOf(vehicule, n);
+                entree   = Arrays.copyOf(entree, n);
+            }
+            stat[placeId]     = stationnementId;
+            vehicule[placeId] = vehiculeId;
+            entree[placeId]   = dEntree;
+        }
+
+        private void retirer(int stationnementId) {
+            for (int p = 0; p < stat.length; p++) {
+                if (stat[p] == stationnementId) stat[p] = 0;
+            }
+        }
+
+        List<Stationnement> liste() {
+            List<Stationnement> list = new ArrayList<>();
+            for (int p = 1; p < stat.length; p++) {
+                if (stat[p] == 0) continue;
+                Place place = new Place();
+                place.setId(p);
+                Vehicule v = new Vehicule();
+                v.setId(vehicule[p]);
+                list.add(new Stationnement(stat[p], place, v,
+                        LocalDateTime.ofEpochSecond(entree[p], 0, ZoneOffset.UTC), null, Money.AUCUN));
+            }
+            list.sort(Comparator.comparing(Stationnement::getDateEntree).thenComparingInt(Stationnement::getId));
+            return list;
+        }
+    }
+}
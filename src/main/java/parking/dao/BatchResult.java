@@ -0,0 +1,46 @@
+package parking.dao;
+
+import parking.util.Money;
+
+/**
+ * Résultat d'un élément d'un lot d'entrées / sorties :
+ * succès (id du stationnement, montant pour une sortie) ou motif du rejet.
+ */
+public class BatchResult {
+
+    private final int     statId;
+    private final boolean succes;
+    private final long    montant;   // centimes
+    private final String  message;
+
+    private BatchResult(int statId, boolean succes, long montant, String message) {
+        this.statId  = statId;
+        this.succes  = succes;
+        this.montant = montant;
+        this.message = message;
+    }
+
+    public static BatchResult ok(int statId) {
+        return new BatchResult(statId, true, 0, null);
+    }
+
+    public static BatchResult ok(int statId, long montant) {
+        return new BatchResult(statId, true, montant, null);
+    }
+
+    public static BatchResult rejet(int statId, String message) {
+        return new BatchResult(statId, false, 0, message);
+    }
+
+    public int     getStatId()  { return statId; }
+    public boolean isSucces()   { return succes; }
+    public long    getMontant() { return montant; }
+    public String  getMessage() { return message; }
+
+    @Override
+    public String toString() {
+        return succes
+                ? String.format("BatchResult{id=%d, OK, montant=%s}", statId, Money.format(montant))
+                : String.format("BatchResult{id=%d, REJET: %s}", statId, message);
+    }
+}
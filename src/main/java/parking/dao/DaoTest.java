@@ -3,6 +3,7 @@ package parking.dao;
 import parking.model.Place;
 import parking.model.Stationnement;
 import parking.model.Vehicule;
+import parking.util.Money;
 
 import java.time.LocalDateTime;
 import java.sql.SQLException;
@@ -27,7 +28,7 @@ public class DaoTest {
 
         // Test 1
         try {
-            Place p = new Place(0, "TEST01", Place.Type.Auto, Place.Statut.Libre, 3.0);
+            Place p = new Place(0, "TEST01", Place.Type.Auto, Place.Statut.Libre, 300);
             placeDAO.create(p);
             testPlaceId = p.getId();
             System.out.println("✅ Test 1 - Create Place OK (id=" + testPlaceId + ")");
@@ -44,7 +45,7 @@ public class DaoTest {
         // Test 3
         try {
             Place p = placeDAO.findById(testPlaceId);
-            p.setTarifHoraire(5.0);
+            p.setTarifHoraire(500);
             placeDAO.update(p);
             System.out.println("✅ Test 3 - Update Place OK");
             ok++;
@@ -76,7 +77,7 @@ public class DaoTest {
         try {
             statDAO.enregistrerSortie(testStatId, LocalDateTime.now());
             Stationnement s = statDAO.findById(testStatId);
-            System.out.println("✅ Test 6 - Sortie OK (montant=" + s.getMontant() + " €)");
+            System.out.println("✅ Test 6 - Sortie OK (montant=" + Money.format(s.getMontant()) + " €)");
             ok++;
         } catch (Exception e) { System.out.println("❌ Test 6 - FAIL: " + e.getMessage()); fail++; }
 
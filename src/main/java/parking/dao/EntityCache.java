@@ -0,0 +1,111 @@
+package parking.dao;
+
+import parking.model.Place;
+import parking.model.Vehicule;
+import parking.util.IdentityMap;
+import parking.util.Money;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Instances partagées de Place et Vehicule pour tous les DAO : une seule instance par id,
+ * quel que soit le nombre de lignes de résultat qui la référencent (un historique de 100 000
+ * stationnements ne porte plus que quelques centaines de places).
+ *
+ * Une instance de référence n'est jamais modifiée : les lectures se font sur les threads de {@code AsyncDao}
+ * pendant que les écrans affichent ces mêmes objets sur l'EDT. Une lecture dont les valeurs diffèrent
+ * enregistre une nouvelle instance à la place de l'ancienne ; les résultats suivants la partagent.
+ * {@link PlaceDAO} et {@link VehiculeDAO} invalident l'entrée à la modification et à la suppression.
+ * Les colonnes ENUM sont décodées par tables pré-calculées plutôt que par valueOf.
+ */
+final class EntityCache {
+
+    static final IdentityMap<Place>    PLACES    = new IdentityMap<>();
+    static final IdentityMap<Vehicule> VEHICULES = new IdentityMap<>();
+
+    private static final Map<String, Place.Type>         PLACE_TYPES   = index(Place.Type.values());
+    private static final Map<String, Place.Statut>       PLACE_STATUTS = index(Place.Statut.values());
+    private static final Map<String, Vehicule.Categorie> CATEGORIES    = index(Vehicule.Categorie.values());
+
+    private EntityCache() {}
+
+    /** Place de la ligne courante ; {@code idCol} / {@code typeCol} selon l'alias de la requête. */
+    static Place place(ResultSet rs, String idCol, String typeCol) throws SQLException {
+        int          id     = rs.getInt(idCol);
+        String       numero = rs.getString("numero");
+        Place.Type   type   = placeType(rs.getString(typeCol));
+        Place.Statut statut = placeStatut(rs.getString("statut"));
+        long         tarif  = Money.lire(rs, "tarifHoraire");
+        String       zone     = rs.getString("zone");
+        int          niveau   = rs.getInt("niveau");
+        int          distance = rs.getInt("distance");
+
+        Place p = PLACES.get(id);
+        if (p != null && numero.equals(p.getNumero()) && type == p.getType() && statut == p.getStatut()
+                && tarif == p.getTarifHoraire() && zone.equals(p.getZone())
+                && niveau == p.getNiveau() && distance == p.getDistance()) {
+            return p;
+        }
+        Place lue = new Place(id, numero, type, statut, tarif);
+        lue.setZone(zone);
+        lue.setNiveau(niveau);
+        lue.setDistance(distance);
+        return p == null ? PLACES.putIfAbsent(id, lue) : PLACES.put(id, lue);
+    }
+
+    /** Véhicule de la ligne courante ; {@code idCol} selon l'alias de la requête. */
+    static Vehicule vehicule(ResultSet rs, String idCol) throws SQLException {
+        int                id        = rs.getInt(idCol);
+        String             matricule = rs.getString("matricule");
+        String             marque    = rs.getString("marque");
+        Vehicule.Categorie categorie = categorie(rs.getString("categorie"));
+
+        Vehicule v = VEHICULES.get(id);
+        if (v != null && matricule.equals(v.getMatricule()) && marque.equals(v.getMarque()) && categorie == v.getCategorie()) {
+            return v;
+        }
+        Vehicule lu = new Vehicule(id, matricule, marque, categorie);
+        return v == null ? VEHICULES.putIfAbsent(id, lu) : VEHICULES.put(id, lu);
+    }
+
+    /** Place de la ligne courante, hors cache (site distant : ses id ne désignent pas les places locales). */
+    static Place nouvellePlace(ResultSet rs, String idCol, String typeCol) throws SQLException {
+        return emplacement(new Place(rs.getInt(idCol), rs.getString("numero"), placeType(rs.getString(typeCol)),
+                placeStatut(rs.getString("statut")), Money.lire(rs, "tarifHoraire")), rs);
+    }
+
+    /** Zone, niveau et distance de la ligne courante, sur une place neuve. */
+    private static Place emplacement(Place p, ResultSet rs) throws SQLException {
+        p.setZone(rs.getString("zone"));
+        p.setNiveau(rs.getInt("niveau"));
+        p.setDistance(rs.getInt("distance"));
+        return p;
+    }
+
+    /** Véhicule de la ligne courante, hors cache (site distant). */
+    static Vehicule nouveauVehicule(ResultSet rs, String idCol) throws SQLException {
+        return new Vehicule(rs.getInt(idCol), rs.getString("matricule"), rs.getString("marque"),
+                categorie(rs.getString("categorie")));
+    }
+
+    // ---- Décodage des ENUM ----
+
+    static Place.Type placeType(String s)             { return decode(PLACE_TYPES, s); }
+    static Place.Statut placeStatut(String s)         { return decode(PLACE_STATUTS, s); }
+    static Vehicule.Categorie categorie(String s)     { return decode(CATEGORIES, s); }
+
+    private static <E extends Enum<E>> E decode(Map<String, E> values, String s) {
+        E e = values.get(s);
+        if (e == null) throw new IllegalArgumentException("Valeur inconnue : " + s);
+        return e;
+    }
+
+    private static <E extends Enum<E>> Map<String, E> index(E[] values) {
+        Map<String, E> map = new HashMap<>();
+        for (E e : values) map.put(e.name(), e);
+        return map;
+    }
+}
@@ -0,0 +1,131 @@
+package parking.dao;
+
+import parking.util.DatabaseConnection;
+import parking.util.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vérification manuelle des plans d'exécution (sans JUnit - exécutable directement).
+ * Applique les migrations puis lance EXPLAIN sur chaque requête des DAO et signale
+ * tout parcours complet (type=ALL) de la table Stationnement.
+ * Lance avec : java -cp target/GestionParking.jar parking.dao.ExplainCheck
+ */
+public class ExplainCheck {
+
+    public static void main(String[] args) {
+        System.out.println("=== EXPLAIN des requêtes DAO - Gestion Parking ===\n");
+        int ok = 0, fail = 0;
+        try (Connection c = DatabaseConnection.getConnection()) {
+            SchemaMigrator.migrate(c);
+            System.out.println("Schéma en version " + SchemaMigrator.currentVersion(c) + "\n");
+
+            for (Map.Entry<String, Object[]> q : queries().entrySet()) {
+                String sql = (String) q.getValue()[0];
+                @SuppressWarnings("unchecked")
+                List<Object> params = (List<Object>) q.getValue()[1];
+                try {
+                    List<String> scans = explain(c, sql, params);
+                    if (scans.isEmpty()) {
+                        System.out.println("✅ " + q.getKey());
+                        ok++;
+                    } else {
+                        System.out.println("❌ " + q.getKey() + " - parcours complet : " + scans);
+                        fail++;
+                    }
+                } catch (SQLException e) {
+                    System.out.println("❌ " + q.getKey() + " - FAIL: " + e.getMessage());
+                    fail++;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("❌ Connexion impossible : " + e.getMessage());
+            fail++;
+        }
+        System.out.println("\n=== Résultat : " + ok + " OK / " + fail + " FAIL ===");
+    }
+
+    /** Nom -> {sql, paramètres d'exemple}. */
+    private static Map<String, Object[]> queries() throws SQLException {
+        Map<String, Object[]> q = new LinkedHashMap<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        StationnementFilter periode = new StationnementFilter(null, null, "2024-01-01", "2024-12-31", null);
+        StationnementFilter enCours = new StationnementFilter("Auto", "En cours", null, null, null);
+        PageCursor cursor = new PageCursor(LocalDateTime.now(), Integer.MAX_VALUE);
+
+        q.put("StationnementDAO.findById",        entry(StationnementDAO.buildSelectSql("WHERE s.id=?"), 1));
+        q.put("StationnementDAO.findByVehicule",  entry(StationnementDAO.FIND_BY_VEHICULE_SQL, 1));
+        q.put("StationnementDAO.findEnCours",     entry(StationnementDAO.FIND_EN_COURS_SQL));
+        q.put("StationnementDAO.findEnCoursParPlace", entry(StationnementDAO.FIND_EN_COURS_PLACE_SQL, 1));
+        q.put("StationnementDAO.existeEntree",    entry(StationnementDAO.EXISTE_ENTREE_SQL, 1, now, 1));
+        q.put("RevenueRollupDAO.getRevenusParMois", entry(RevenueRollupDAO.REVENUS_PAR_MOIS_SQL));
+        q.put("RevenueRollupDAO.getRevenusParJour", entry(RevenueRollupDAO.REVENUS_PAR_JOUR_SQL,
+                Date.valueOf("2024-01-01"), Date.valueOf("2024-02-01")));
+        q.put("StationnementDAO.create (réservation)", entry(StationnementDAO.PRENDRE_PLACE_SQL, 1));
+        q.put("StationnementDAO.create (en cours)", entry(StationnementDAO.PLACE_EN_COURS_SQL, 1));
+        q.put("StationnementDAO.createAll (réservation)", entry(StationnementDAO.RESERVER_PLACE_SQL, 1));
+        q.put("StationnementDAO.enregistrerSortie (verrou)", entry(StationnementDAO.LOCK_SORTIE_SQL, 1));
+        q.put("StationnementDAO.enregistrerSortie (clôture)", entry(StationnementDAO.CLORE_SQL, now, 0, 1));
+
+        StationnementDAO dao = new StationnementDAO();
+        List<Object> p1 = new ArrayList<>();
+        q.put("StationnementDAO.findFiltered (période)", new Object[]{dao.filteredSql(periode, p1), p1});
+        List<Object> p2 = new ArrayList<>();
+        q.put("StationnementDAO.countFiltered (en cours)", new Object[]{dao.countSql(enCours, p2), p2});
+        List<Object> p3 = new ArrayList<>();
+        q.put("StationnementDAO.findPage", new Object[]{dao.pageSql(StationnementFilter.AUCUN, cursor, 200, p3), p3});
+        List<Object> p4 = new ArrayList<>();
+        q.put("StationnementDAO.seek", new Object[]{dao.seekSql(periode, cursor, 1000, p4), p4});
+        List<Object> p5 = new ArrayList<>();
+        StationnementFilter plaque = new StationnementFilter(null, null, null, null, "123");
+        q.put("StationnementDAO.findPage (matricule)", new Object[]{dao.pageSql(plaque, null, 200, p5), p5});
+
+        q.put("OccupancyIndex.reload", entry(OccupancyIndex.LOAD_SQL));
+        q.put("OccupancyIndex.recaler", entry(OccupancyIndex.RECALAGE_SQL));
+        q.put("AnalyticsStore.charger", entry(AnalyticsStore.LOAD_SQL));
+        q.put("OccupancyTimeline.ajouterJour", entry(OccupancyTimeline.INTERVALLES_SQL,
+                Timestamp.valueOf("2024-03-01 00:00:00"), Timestamp.valueOf("2024-03-02 00:00:00")));
+        q.put("PlaceDAO.compterOccupation (autre site)", entry(PlaceDAO.OCCUPATION_SQL));
+        q.put("PlateIndex.rattraper", entry(PlateIndex.DEPUIS_SQL, 1));
+        q.put("VehiculeDAO.findByMatricule", entry("SELECT * FROM Vehicule WHERE matricule=?", "AB-123-CD"));
+        return q;
+    }
+
+    private static Object[] entry(String sql, Object... params) {
+        List<Object> list = new ArrayList<>();
+        for (Object p : params) list.add(p);
+        return new Object[]{sql, list};
+    }
+
+    /** @return les tables Stationnement parcourues entièrement (type=ALL) */
+    private static List<String> explain(Connection c, String sql, List<Object> params) throws SQLException {
+        List<String> scans = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String table = rs.getString("table");
+                String type  = rs.getString("type");
+                System.out.println(String.format("      %-4s table=%-5s type=%-6s key=%-26s rows=%-8s %s",
+                        rs.getString("select_type").substring(0, Math.min(4, rs.getString("select_type").length())),
+                        table, type, rs.getString("key"), rs.getString("rows"), nullToEmpty(rs.getString("Extra"))));
+                if (("s".equals(table) || "Stationnement".equalsIgnoreCase(table)) && "ALL".equals(type)) scans.add(table);
+            }
+        }
+        return scans;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,316 @@
+package parking.dao;
+
+import parking.event.EventBus;
+import parking.event.PlaceChanged;
+import parking.model.Place;
+import parking.util.DatabaseConnection;
+import parking.util.Money;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index d'occupation des places, tenu en mémoire.
+ * Une table de places et un BitSet d'occupation par {@link Place.Type} : la recherche des places
+ * libres, le contrôle anti-chevauchement et les compteurs du tableau de bord ne font plus
+ * d'aller-retour vers la base.
+ *
+ * Tient aussi les places libres de l'attribution automatique ({@link #getAllocateur()}).
+ *
+ * Chargé une fois (au démarrage), puis tenu à jour par {@link PlaceDAO} et {@link StationnementDAO}.
+ * Une place est considérée occupée si son statut est "Occupée" ou si un stationnement est en cours.
+ *
+ * Les DAO ne voient que les écritures de ce poste : toutes les parking.occupation.recalageSec secondes
+ * (30 par défaut, 0 = jamais), {@link #recaler()} relit l'occupation de chaque place et corrige l'écart
+ * (entrées et sorties des autres postes), ou recharge tout si des places ont été créées ou supprimées ailleurs.
+ * Les modifications des caractéristiques d'une place faites sur un autre poste attendent un rechargement.
+ */
+public final class OccupancyIndex {
+
+    static final String LOAD_SQL =
+            "SELECT p.id, p.numero, p.type, p.statut, p.tarifHoraire, p.zone, p.niveau, p.distance, " +
+            "EXISTS(SELECT 1 FROM Stationnement s WHERE s.place_id = p.id AND s.dateSortie IS NULL) AS enCours " +
+            "FROM Place p ORDER BY p.numero";
+    /** Occupation de chaque place, même définition que LOAD_SQL. */
+    static final String RECALAGE_SQL =
+            "SELECT p.id, p.statut='Occupée' OR EXISTS(SELECT 1 FROM Stationnement s " +
+            "WHERE s.place_id = p.id AND s.dateSortie IS NULL) AS occupee FROM Place p";
+
+    private static final Logger LOG = Logger.getLogger(OccupancyIndex.class.getName());
+    private static final long RECALAGE_SEC = Long.getLong("parking.occupation.recalageSec", 30);
+
+    private static OccupancyIndex instance;
+
+    /** Places d'un même type : slot -> place, et bit d'occupation par slot. */
+    private static final class TypeSlots {
+        final List<Place> places = new ArrayList<>();
+        final BitSet      occupied = new BitSet();
+        final BitSet      used     = new BitSet();
+    }
+
+    private final Map<Place.Type, TypeSlots> byType = new EnumMap<>(Place.Type.class);
+    private final Map<Integer, Integer>      slotById = new HashMap<>();
+    private final Map<Integer, Place.Type>   typeById = new HashMap<>();
+    private final PlaceAllocator             allocateur = new PlaceAllocator();
+    /** Écritures locales : compteur, et sa valeur à la dernière écriture de chaque place. */
+    private long                             modifs;
+    private final Map<Integer, Long>         modifiee = new HashMap<>();
+
+    private OccupancyIndex() {}
+
+    /** Retourne l'index, en le chargeant depuis la base au premier appel. */
+    public static synchronized OccupancyIndex getInstance() throws SQLException {
+        if (instance == null) {
+            OccupancyIndex idx = new OccupancyIndex();
+            idx.reload();
+            instance = idx;
+            if (RECALAGE_SEC > 0) idx.planifierRecalage();
+        }
+        return instance;
+    }
+
+    private void planifierRecalage() {
+        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parking-occupation-recalage");
+            t.setDaemon(true);
+            return t;
+        });
+        ses.scheduleWithFixedDelay(() -> {
+            try {
+                int n = recaler();
+                if (n != 0) LOG.fine("Occupation recalée sur la base : " + (n < 0 ? "rechargement complet" : n + " place(s)"));
+            } catch (SQLException e) {
+                LOG.fine("Recalage de l'occupation impossible : " + e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Erreur pendant le recalage de l'occupation", e);
+            }
+        }, RECALAGE_SEC, RECALAGE_SEC, TimeUnit.SECONDS);
+    }
+
+    /** Retourne l'index s'il est déjà chargé, sinon null (sans accès à la base). */
+    public static synchronized OccupancyIndex getInstanceSiChargee() {
+        return instance;
+    }
+
+    /** Recharge entièrement l'index depuis la base. */
+    public void reload() throws SQLException {
+        List<Place> places   = new ArrayList<>();
+        List<Boolean> occupe = new ArrayList<>();
+        try (Connection c = DatabaseConnection.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(LOAD_SQL)) {
+            while (rs.next()) {
+                Place p = new Place(
+                        rs.getInt("id"), rs.getString("numero"),
+                        EntityCache.placeType(rs.getString("type")),
+                        EntityCache.placeStatut(rs.getString("statut")),
+                        Money.lire(rs, "tarifHoraire"));
+                p.setZone(rs.getString("zone"));
+                p.setNiveau(rs.getInt("niveau"));
+                p.setDistance(rs.getInt("distance"));
+                places.add(p);
+                occupe.add(rs.getBoolean("enCours") || p.getStatut() == Place.Statut.Occupée);
+            }
+        }
+        synchronized (this) {
+            byType.clear();
+            slotById.clear();
+            typeById.clear();
+            allocateur.vider();
+            for (Place.Type t : Place.Type.values()) byType.put(t, new TypeSlots());
+            for (int i = 0; i < places.size(); i++) {
+                insert(places.get(i), occupe.get(i));
+            }
+        }
+    }
+
+    /**
+     * Recale l'occupation sur la base et publie les places corrigées. Une place écrite par ce poste
+     * pendant la lecture garde la valeur locale, plus récente.
+     * @return nombre de places corrigées, -1 si l'index a été rechargé (places créées ou supprimées ailleurs)
+     */
+    public int recaler() throws SQLException {
+        long avant;
+        synchronized (this) {
+            avant = modifs;
+        }
+        Map<Integer, Boolean> base = new HashMap<>();
+        try (Connection c = DatabaseConnection.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(RECALAGE_SQL)) {
+            while (rs.next()) base.put(rs.getInt(1), rs.getBoolean(2));
+        }
+        List<Place> corrigees = new ArrayList<>();
+        boolean recharger = false;
+        synchronized (this) {
+            for (Map.Entry<Integer, Integer> e : slotById.entrySet()) {
+                int id = e.getKey();
+                Long m = modifiee.get(id);
+                if (m != null && m > avant) continue;
+                Boolean occupee = base.get(id);
+                if (occupee == null) {
+                    recharger = true; // supprimée ailleurs
+                    break;
+                }
+                TypeSlots ts = byType.get(typeById.get(id));
+                if (ts.occupied.get(e.getValue()) != occupee) {
+                    setOccupied(id, occupee);
+                    corrigees.add(copy(ts.places.get(e.getValue()), null));
+                }
+            }
+            if (!recharger) {
+                for (Integer id : base.keySet()) {
+                    if (!slotById.containsKey(id) && !modifiee.containsKey(id)) {
+                        recharger = true; // créée ailleurs
+                        break;
+                    }
+                }
+            }
+        }
+        if (recharger) {
+            reload();
+            return -1;
+        }
+        EventBus bus = EventBus.getInstance();
+        for (Place p : corrigees) bus.publish(new PlaceChanged(p.getId(), p));
+        return corrigees.size();
+    }
+
+    /** Attribution automatique des places libres (sans verrou : utilisable par plusieurs bornes à la fois). */
+    public PlaceAllocator getAllocateur() {
+        return allocateur;
+    }
+
+    // ---- Lectures ----
+
+    public synchronized boolean isOccupee(int placeId) {
+        Integer slot = slotById.get(placeId);
+        return slot != null && byType.get(typeById.get(placeId)).occupied.get(slot);
+    }
+
+    public synchronized boolean contains(int placeId) {
+        return slotById.containsKey(placeId);
+    }
+
+    /** Copie de la place avec son statut d'occupation, null si inconnue. */
+    public synchronized Place get(int placeId) {
+        Integer slot = slotById.get(placeId);
+        return slot == null ? null : copy(byType.get(typeById.get(placeId)).places.get(slot), null);
+    }
+
+    /** Places libres d'un type (null = tous types), triées par numéro. */
+    public synchronized List<Place> findLibres(Place.Type type) {
+        List<Place> list = new ArrayList<>();
+        for (Place.Type t : Place.Type.values()) {
+            if (type != null && t != type) continue;
+            TypeSlots ts = byType.get(t);
+            for (int i = ts.used.nextSetBit(0); i >= 0; i = ts.used.nextSetBit(i + 1)) {
+                if (!ts.occupied.get(i)) list.add(copy(ts.places.get(i), Place.Statut.Libre));
+            }
+        }
+        list.sort((a, b) -> a.getNumero().compareTo(b.getNumero()));
+        return list;
+    }
+
+    public synchronized int countTotal() {
+        return slotById.size();
+    }
+
+    public synchronized int countOccupees() {
+        int n = 0;
+        for (TypeSlots ts : byType.values()) n += ts.occupied.cardinality();
+        return n;
+    }
+
+    public synchronized int countLibres() {
+        return countTotal() - countOccupees();
+    }
+
+    public synchronized int countLibres(Place.Type type) {
+        TypeSlots ts = byType.get(type);
+        return ts.used.cardinality() - ts.occupied.cardinality();
+    }
+
+    // ---- Mises à jour (appelées par les DAO après écriture réussie) ----
+
+    public synchronized void markOccupee(int placeId) {
+        setOccupied(placeId, true);
+    }
+
+    public synchronized void markLibre(int placeId) {
+        setOccupied(placeId, false);
+    }
+
+    /** Remet dans l'attribution automatique une place attribuée dont l'entrée a échoué, si elle est toujours libre. */
+    public synchronized void rendre(int placeId) {
+        Integer slot = slotById.get(placeId);
+        if (slot == null) return;
+        TypeSlots ts = byType.get(typeById.get(placeId));
+        if (!ts.occupied.get(slot)) allocateur.ajouter(ts.places.get(slot));
+    }
+
+    /** Ajoute ou remplace une place (création / modification). */
+    public synchronized void put(Place p) {
+        remove(p.getId());
+        insert(copy(p, p.getStatut()), p.getStatut() == Place.Statut.Occupée);
+    }
+
+    public synchronized void remove(int placeId) {
+        Integer slot = slotById.remove(placeId);
+        if (slot == null) return;
+        modifiee.put(placeId, ++modifs);
+        TypeSlots ts = byType.get(typeById.remove(placeId));
+        ts.places.set(slot, null);
+        ts.used.clear(slot);
+        ts.occupied.clear(slot);
+        allocateur.retirer(placeId);
+    }
+
+    // ---- Interne ----
+
+    private void setOccupied(int placeId, boolean value) {
+        Integer slot = slotById.get(placeId);
+        if (slot == null) return;
+        modifiee.put(placeId, ++modifs);
+        TypeSlots ts = byType.get(typeById.get(placeId));
+        ts.occupied.set(slot, value);
+        ts.places.get(slot).setStatut(value ? Place.Statut.Occupée : Place.Statut.Libre);
+        if (value) allocateur.retirer(placeId);
+        else       allocateur.ajouter(ts.places.get(slot));
+    }
+
+    private void insert(Place p, boolean occupied) {
+        TypeSlots ts = byType.get(p.getType());
+        int slot = ts.used.nextClearBit(0);
+        if (slot == ts.places.size()) ts.places.add(p);
+        else ts.places.set(slot, p);
+        ts.used.set(slot);
+        ts.occupied.set(slot, occupied);
+        slotById.put(p.getId(), slot);
+        typeById.put(p.getId(), p.getType());
+        modifiee.put(p.getId(), ++modifs);
+        if (!occupied) allocateur.ajouter(p);
+    }
+
+    /** @param statut statut de la copie, null = celui de la place */
+    static Place copy(Place p, Place.Statut statut) {
+        Place c = new Place(p.getId(), p.getNumero(), p.getType(), statut != null ? statut : p.getStatut(), p.getTarifHoraire());
+        c.setZone(p.getZone());
+        c.setNiveau(p.getNiveau());
+        c.setDistance(p.getDistance());
+        return c;
+    }
+}
@@ -0,0 +1,416 @@
+package parking.dao;
+
+import parking.model.Place;
+import parking.util.DaoMetrics;
+import parking.util.DatabaseConnection;
+import parking.util.MethodStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Occupation au fil du temps, par tranches de 5 minutes : pour chaque type de place (et le total),
+ * nombre moyen de places occupées pendant la tranche et pic de simultanéité.
+ *
+ * Calculée par balayage : les intervalles (dateEntree, dateSortie) sont lus une seule fois, triés par entrée,
+ * et les sorties à venir sont tenues dans un tas ; chaque entrée, sortie ou fin de tranche fait avancer le
+ * balayage (O(n log n)). Les jours complets sont calculés une fois puis conservés ; chaque nouveau jour est
+ * ajouté en ne lisant que ses entrées (et les sorties des stationnements qui étaient en cours). Le jour courant
+ * est recalculé à la demande jusqu'à l'instant présent.
+ *
+ * Les modifications de stationnements déjà comptés ne sont prises en compte qu'après {@link #reconstruire()}.
+ * Site local uniquement ; instants en secondes locales (LocalDateTime lu en UTC).
+ */
+public final class OccupancyTimeline {
+
+    static final String INTERVALLES_SQL =
+            "SELECT s.id, s.dateEntree, s.dateSortie, p.type FROM Stationnement s JOIN Place p ON p.id = s.place_id " +
+            "WHERE s.dateEntree >= ? AND s.dateEntree < ? ORDER BY s.dateEntree";
+    static final String PREMIERE_ENTREE_SQL = "SELECT MIN(dateEntree) FROM Stationnement";
+
+    private static final MethodStats STATS_CONSTRUIRE = DaoMetrics.stats("OccupancyTimeline.construire");
+    private static final MethodStats STATS_JOUR       = DaoMetrics.stats("OccupancyTimeline.ajouterJour");
+
+    /** Durée d'une tranche, en secondes. */
+    public static final int PAS   = 300;
+    /** Indice de la série totale (les précédentes suivent l'ordre de {@link Place.Type}). */
+    public static final int TOTAL = Place.Type.values().length;
+
+    private static final int  NB_SERIES = TOTAL + 1;
+    private static final int  JOUR      = 86_400;
+    private static final long INCONNUE  = Long.MIN_VALUE;
+    private static final int  LOT_IDS   = 500;
+
+    private static OccupancyTimeline instance;
+
+    /** Série restituée : une valeur par pas depuis {@link #getDebut()}. */
+    public static final class Serie {
+        private final LocalDateTime debut;
+        private final int           pas;
+        private final float[][]     moyennes;
+        private final int[][]       pics;
+
+        Serie(LocalDateTime debut, int pas, float[][] moyennes, int[][] pics) {
+            this.debut    = debut;
+            this.pas      = pas;
+            this.moyennes = moyennes;
+            this.pics     = pics;
+        }
+
+        public LocalDateTime getDebut()  { return debut; }
+        /** Pas en secondes. */
+        public int           getPas()    { return pas; }
+        public int           getTaille() { return moyennes[0].length; }
+        /** Places occupées en moyenne, par série ({@link Place.Type#ordinal()} ou {@link #TOTAL}) et par pas. */
+        public float[]       getMoyennes(int serie) { return moyennes[serie]; }
+        /** Pic de simultanéité par série et par pas. */
+        public int[]         getPics(int serie)     { return pics[serie]; }
+
+        /** Indice du pas où la série atteint son pic (le premier), -1 si la série est vide. */
+        public int indicePic(int serie) {
+            int best = -1;
+            for (int i = 0; i < pics[serie].length; i++) {
+                if (best < 0 || pics[serie][i] > pics[serie][best]) best = i;
+            }
+            return best;
+        }
+
+        public LocalDateTime instant(int i) {
+            return debut.plusSeconds((long) i * pas);
+        }
+    }
+
+    /** Tranches calculées, à la suite. */
+    private static final class Tranches {
+        float[][] moyennes = new float[NB_SERIES][TRANCHE_INITIALE];
+        int[][]   pics     = new int[NB_SERIES][TRANCHE_INITIALE];
+        int       taille;
+
+        void ajouter(double[] integrale, int[] pic, long duree) {
+            if (taille == moyennes[0].length) {
+                for (int s = 0; s < NB_SERIES; s++) {
+                    moyennes[s] = Arrays.copyOf(moyennes[s], taille * 2);
+                    pics[s]     = Arrays.copyOf(pics[s], taille * 2);
+                }
+            }
+            for (int s = 0; s < NB_SERIES; s++) {
+                moyennes[s][taille] = duree > 0 ? (float) (integrale[s] / duree) : 0f;
+                pics[s][taille]     = pic[s];
+            }
+            taille++;
+        }
+    }
+
+    private static final int TRANCHE_INITIALE = JOUR / PAS * 32;
+
+    /** Tas binaire de longs (instant de sortie << 2 | type). */
+    private static final class TasSorties {
+        long[] a = new long[1024];
+        int    n;
+
+        boolean vide()  { return n == 0; }
+        long    min()   { return a[0]; }
+
+        void ajouter(long v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            int i = n++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (a[p] <= v) break;
+                a[i] = a[p];
+                i = p;
+            }
+            a[i] = v;
+        }
+
+        long retirer() {
+            long top = a[0];
+            long v = a[--n];
+            int i = 0;
+            while (true) {
+                int f = 2 * i + 1;
+                if (f >= n) break;
+                if (f + 1 < n && a[f + 1] < a[f]) f++;
+                if (v <= a[f]) break;
+                a[i] = a[f];
+                i = f;
+            }
+            a[i] = v;
+            return top;
+        }
+
+        TasSorties copie() {
+            TasSorties t = new TasSorties();
+            t.a = Arrays.copyOf(a, a.length);
+            t.n = n;
+            return t;
+        }
+    }
+
+    /** État du balayage : occupation courante, sorties à venir, tranche en cours. */
+    private static final class Balayage {
+        int[]    occupees  = new int[NB_SERIES];
+        int[]    pic       = new int[NB_SERIES];
+        double[] integrale = new double[NB_SERIES];
+        TasSorties sorties = new TasSorties();
+        /** Stationnements en cours lors de la lecture (sortie inconnue) : id -> type. */
+        Map<Integer, Integer> ouvertes = new HashMap<>();
+        long instant;
+        long finTranche;
+
+        Balayage(long debut) {
+            instant    = debut;
+            finTranche = debut + PAS;
+        }
+
+        Balayage copie() {
+            Balayage b = new Balayage(instant);
+            b.finTranche = finTranche;
+            b.occupees   = occupees.clone();
+            b.pic        = pic.clone();
+            b.integrale  = integrale.clone();
+            b.sorties    = sorties.copie();
+            b.ouvertes   = new HashMap<>(ouvertes);
+            return b;
+        }
+
+        void entree(int id, long entree, long sortie, int type, Tranches dest) {
+            if (sortie != INCONNUE && sortie <= entree) return; // intervalle vide ou incohérent
+            avancer(entree, dest);
+            occupees[type]++;
+            occupees[TOTAL]++;
+            pic[type]  = Math.max(pic[type], occupees[type]);
+            pic[TOTAL] = Math.max(pic[TOTAL], occupees[TOTAL]);
+            if (sortie == INCONNUE) ouvertes.put(id, type);
+            else sorties.ajouter(sortie << 2 | type);
+        }
+
+        /** Sortie d'un stationnement qui était en cours : connue désormais, ou disparu (sortie = maintenant). */
+        void sortieConnue(int id, long sortie, Tranches dest) {
+            Integer type = ouvertes.remove(id);
+            if (type == null) return;
+            if (sortie > instant) {
+                sorties.ajouter(sortie << 2 | type);
+            } else {
+                integrer(instant);
+                occupees[type]--;
+                occupees[TOTAL]--;
+            }
+        }
+
+        /** Traite les sorties et les fins de tranche jusqu'à {@code t}, dans l'ordre. */
+        void avancer(long t, Tranches dest) {
+            while (true) {
+                long sortie = sorties.vide() ? Long.MAX_VALUE : sorties.min() >> 2;
+                if (sortie <= finTranche && sortie <= t) {
+                    integrer(sortie);
+                    int type = (int) (sorties.retirer() & 3);
+                    occupees[type]--;
+                    occupees[TOTAL]--;
+                } else if (finTranche <= t) {
+                    integrer(finTranche);
+                    dest.ajouter(integrale, pic, PAS);
+                    Arrays.fill(integrale, 0);
+                    System.arraycopy(occupees, 0, pic, 0, NB_SERIES);
+                    finTranche += PAS;
+                } else {
+                    break;
+                }
+            }
+            integrer(t);
+        }
+
+        private void integrer(long t) {
+            long dt = t - instant;
+            if (dt <= 0) return;
+            for (int s = 0; s < NB_SERIES; s++) integrale[s] += (double) occupees[s] * dt;
+            instant = t;
+        }
+    }
+
+    // Sous le verrou de l'instance
+    private Balayage balayage;
+    private Tranches historique;
+    /** Début de la première tranche. */
+    private long     origine;
+    /** Les jours avant cet instant (minuit) sont calculés. */
+    private long     frontiere;
+
+    private OccupancyTimeline() {}
+
+    public static synchronized OccupancyTimeline getInstance() {
+        if (instance == null) instance = new OccupancyTimeline();
+        return instance;
+    }
+
+    /**
+     * Série sur les jours [du, au] (au plus jusqu'à maintenant), regroupée par pas de {@code pas} secondes
+     * (multiple de {@link #PAS}) : moyenne des moyennes et maximum des pics des tranches regroupées.
+     * Calcule au besoin les jours complets manquants.
+     */
+    public synchronized Serie serie(LocalDate du, LocalDate au, int pas) throws SQLException {
+        if (pas < PAS || pas % PAS != 0) throw new IllegalArgumentException("Pas invalide : " + pas);
+        long maintenant = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        long debut = du.toEpochDay() * JOUR;
+        long fin   = Math.min((au.toEpochDay() + 1) * JOUR, maintenant);
+        try (Connection c = connexion()) {
+            rattraper(c, maintenant);
+            Tranches aujourdhui = fin > frontiere ? jourEnCours(c, maintenant) : null;
+
+            int parPas = pas / PAS;
+            int n = (int) Math.max(0, (fin - debut + pas - 1) / pas);
+            float[][] moyennes = new float[NB_SERIES][n];
+            int[][]   pics     = new int[NB_SERIES][n];
+            long premiere = Math.floorDiv(debut - origine, PAS);
+            for (int k = 0; k < n; k++) {
+                for (int s = 0; s < NB_SERIES; s++) {
+                    double somme = 0;
+                    int max = 0, nb = 0;
+                    for (int j = 0; j < parPas; j++) {
+                        long idx = premiere + (long) k * parPas + j;
+                        Tranches t = historique;
+                        if (idx >= historique.taille) {
+                            t = aujourdhui;
+                            idx -= historique.taille;
+                        }
+                        if (idx < 0 || t == null || idx >= t.taille) continue;
+                        somme += t.moyennes[s][(int) idx];
+                        max = Math.max(max, t.pics[s][(int) idx]);
+                        nb++;
+                    }
+                    moyennes[s][k] = nb == 0 ? 0f : (float) (somme / parPas);
+                    pics[s][k]     = max;
+                }
+            }
+            return new Serie(LocalDateTime.ofEpochSecond(debut, 0, ZoneOffset.UTC), pas, moyennes, pics);
+        }
+    }
+
+    /** Oublie les tranches calculées : le prochain appel relit tout l'historique. */
+    public synchronized void reconstruire() {
+        balayage = null;
+        historique = null;
+    }
+
+    // ---- Interne ----
+
+    private static Connection connexion() throws SQLException {
+        return DatabaseConnection.getConnectionLecture(DatabaseConnection.getSiteLocal());
+    }
+
+    /** Calcule l'historique au premier appel, puis les jours complets écoulés depuis, un par un. */
+    private void rattraper(Connection c, long maintenant) throws SQLException {
+        long minuit = Math.floorDiv(maintenant, JOUR) * JOUR;
+        if (historique == null) construire(c, minuit);
+        while (frontiere < minuit) ajouterJour(c);
+    }
+
+    /** Lit tous les intervalles entrés avant {@code minuit}, en un seul flux trié. */
+    private void construire(Connection c, long minuit) throws SQLException {
+        STATS_CONSTRUIRE.compter(() -> {
+            long premier = minuit;
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(PREMIERE_ENTREE_SQL)) {
+                Timestamp ts = rs.next() ? rs.getTimestamp(1) : null;
+                if (ts != null) premier = Math.min(premier, Math.floorDiv(secondes(ts), JOUR) * JOUR);
+            }
+            Balayage b = new Balayage(premier);
+            Tranches h = new Tranches();
+            int n = lire(c, premier, minuit, b, h);
+            b.avancer(minuit, h);
+            origine    = premier;
+            frontiere  = minuit;
+            balayage   = b;
+            historique = h;
+            return n;
+        });
+    }
+
+    /** Ajoute le jour qui suit la frontière : sorties des stationnements en cours, puis entrées du jour. */
+    private void ajouterJour(Connection c) throws SQLException {
+        STATS_JOUR.compter(() -> {
+            long fin = frontiere + JOUR;
+            lireSorties(c, balayage, historique);
+            int n = lire(c, frontiere, fin, balayage, historique);
+            balayage.avancer(fin, historique);
+            frontiere = fin;
+            return n;
+        });
+    }
+
+    /** Tranches du jour en cours jusqu'à maintenant, sur une copie de l'état (la dernière est partielle). */
+    private Tranches jourEnCours(Connection c, long maintenant) throws SQLException {
+        Balayage b = balayage.copie();
+        Tranches t = new Tranches();
+        lireSorties(c, b, t);
+        lire(c, frontiere, maintenant + 1, b, t);
+        b.avancer(maintenant, t);
+        if (b.instant > b.finTranche - PAS) t.ajouter(b.integrale, b.pic, b.instant - (b.finTranche - PAS));
+        return t;
+    }
+
+    /** Flux des intervalles dont l'entrée est dans [debut, fin), par entrée croissante. */
+    private static int lire(Connection c, long debut, long fin, Balayage b, Tranches dest) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(INTERVALLES_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, horodatage(debut));
+            ps.setTimestamp(2, horodatage(fin));
+            int n = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp sortie = rs.getTimestamp(3);
+                    Place.Type type = EntityCache.placeType(rs.getString(4));
+                    if (type == null) continue;
+                    b.entree(rs.getInt(1), secondes(rs.getTimestamp(2)), sortie == null ? INCONNUE : secondes(sortie),
+                            type.ordinal(), dest);
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    /** Relit la sortie des stationnements qui étaient en cours ; un stationnement supprimé libère sa place. */
+    private static void lireSorties(Connection c, Balayage b, Tranches dest) throws SQLException {
+        List<Integer> ids = new ArrayList<>(b.ouvertes.keySet());
+        for (int i = 0; i < ids.size(); i += LOT_IDS) {
+            List<Integer> lot = ids.subList(i, Math.min(ids.size(), i + LOT_IDS));
+            StringBuilder sql = new StringBuilder("SELECT id, dateSortie FROM Stationnement WHERE id IN (");
+            for (int j = 0; j < lot.size(); j++) sql.append(j == 0 ? "?" : ",?");
+            Map<Integer, Long> lues = new HashMap<>();
+            try (PreparedStatement ps = c.prepareStatement(sql.append(')').toString())) {
+                for (int j = 0; j < lot.size(); j++) ps.setInt(j + 1, lot.get(j));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    Timestamp sortie = rs.getTimestamp(2);
+                    lues.put(rs.getInt(1), sortie == null ? INCONNUE : secondes(sortie));
+                }
+            }
+            for (Integer id : lot) {
+                Long sortie = lues.get(id);
+                if (sortie == null) b.sortieConnue(id, b.instant, dest);
+                else if (sortie != INCONNUE) b.sortieConnue(id, sortie, dest);
+            }
+        }
+    }
+
+    private static long secondes(Timestamp ts) {
+        return ts.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static Timestamp horodatage(long secondes) {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(secondes, 0, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,26 @@
+package parking.dao;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position dans l'historique des stationnements pour la pagination par clé
+ * (ordre dateEntree DESC, id DESC) : la page suivante commence strictement après ce couple.
+ */
+public final class PageCursor {
+
+    private final LocalDateTime dateEntree;
+    private final int           id;
+
+    public PageCursor(LocalDateTime dateEntree, int id) {
+        this.dateEntree = dateEntree;
+        this.id         = id;
+    }
+
+    public LocalDateTime getDateEntree() { return dateEntree; }
+    public int           getId()         { return id; }
+
+    @Override
+    public String toString() {
+        return "PageCursor{" + dateEntree + ", id=" + id + "}";
+    }
+}
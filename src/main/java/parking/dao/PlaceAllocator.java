@@ -0,0 +1,127 @@
+package parking.dao;
+
+import parking.model.Place;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Attribution automatique des places : la place libre la plus proche de la borne d'entrée,
+ * pour un type de place et, au choix, une zone.
+ *
+ * Les places libres sont rangées par type puis par zone dans des ConcurrentSkipListSet triés par
+ * distance (puis numéro) : prendre la meilleure place est un retrait en tête en O(log n), sans verrou
+ * commun, si bien que plusieurs bornes attribuent en parallèle sans jamais recevoir la même place.
+ * Sans zone imposée, les têtes des zones du type sont comparées (une poignée de zones).
+ *
+ * Tenu à jour par {@link OccupancyIndex} (entrées, sorties, création / modification / suppression de places).
+ * Une place attribuée reste hors des ensembles jusqu'à son entrée ; si l'entrée échoue autrement que
+ * parce que la place est prise, {@link OccupancyIndex#rendre(int)} la remet.
+ */
+public final class PlaceAllocator {
+
+    /** Place libre, figée au moment de son ajout (les ensembles ne doivent pas voir changer l'ordre). */
+    private static final class Libre {
+        final Place place;
+
+        Libre(Place p) {
+            place = new Place(p.getId(), p.getNumero(), p.getType(), Place.Statut.Libre, p.getTarifHoraire());
+            place.setZone(p.getZone());
+            place.setNiveau(p.getNiveau());
+            place.setDistance(p.getDistance());
+        }
+    }
+
+    private static final Comparator<Libre> ORDRE = Comparator
+            .comparingInt((Libre l) -> l.place.getDistance())
+            .thenComparing(l -> l.place.getNumero())
+            .thenComparingInt(l -> l.place.getId());
+
+    /** Places libres : type -> zone -> places triées. */
+    private final Map<Place.Type, ConcurrentMap<String, ConcurrentSkipListSet<Libre>>> libres =
+            new EnumMap<>(Place.Type.class);
+    /** Entrée courante de chaque place libre, pour la retirer par id. */
+    private final ConcurrentMap<Integer, Libre> parId = new ConcurrentHashMap<>();
+
+    PlaceAllocator() {
+        for (Place.Type t : Place.Type.values()) libres.put(t, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Attribue la place libre la plus proche et la retire des places libres.
+     * @param zone zone imposée, null = toutes zones
+     * @return une copie de la place, null s'il n'y a plus de place libre
+     */
+    public Place attribuer(Place.Type type, String zone) {
+        ConcurrentMap<String, ConcurrentSkipListSet<Libre>> zones = libres.get(type);
+        if (zone != null) {
+            ConcurrentSkipListSet<Libre> set = zones.get(zone);
+            Libre l = set == null ? null : set.pollFirst();
+            return l == null ? null : prise(l);
+        }
+        while (true) {
+            Libre meilleure = null;
+            ConcurrentSkipListSet<Libre> source = null;
+            for (ConcurrentSkipListSet<Libre> set : zones.values()) {
+                Libre tete = tete(set);
+                if (tete != null && (meilleure == null || ORDRE.compare(tete, meilleure) < 0)) {
+                    meilleure = tete;
+                    source = set;
+                }
+            }
+            if (meilleure == null) return null;
+            if (source.remove(meilleure)) return prise(meilleure); // sinon prise par une autre borne : on recommence
+        }
+    }
+
+    /** Zones connues, triées. */
+    public SortedSet<String> zones() {
+        SortedSet<String> noms = new TreeSet<>();
+        for (ConcurrentMap<String, ConcurrentSkipListSet<Libre>> zones : libres.values()) noms.addAll(zones.keySet());
+        return noms;
+    }
+
+    // ---- Mises à jour (par OccupancyIndex, sous son verrou) ----
+
+    /** Ajoute ou remplace une place libre. */
+    void ajouter(Place p) {
+        Libre l = new Libre(p);
+        Libre ancienne = parId.put(p.getId(), l);
+        if (ancienne != null) ensemble(ancienne).remove(ancienne);
+        ensemble(l).add(l);
+    }
+
+    /** Retire une place (occupée ou supprimée). */
+    void retirer(int placeId) {
+        Libre ancienne = parId.remove(placeId);
+        if (ancienne != null) ensemble(ancienne).remove(ancienne);
+    }
+
+    void vider() {
+        parId.clear();
+        for (ConcurrentMap<String, ConcurrentSkipListSet<Libre>> zones : libres.values()) zones.clear();
+    }
+
+    // ---- Interne ----
+
+    private Place prise(Libre l) {
+        parId.remove(l.place.getId(), l);
+        return new Libre(l.place).place;
+    }
+
+    private ConcurrentSkipListSet<Libre> ensemble(Libre l) {
+        return libres.get(l.place.getType()).computeIfAbsent(l.place.getZone(), z -> new ConcurrentSkipListSet<>(ORDRE));
+    }
+
+    private static Libre tete(ConcurrentSkipListSet<Libre> set) {
+        Iterator<Libre> it = set.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
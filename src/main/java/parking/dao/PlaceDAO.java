@@ -1,7 +1,12 @@
 package parking.dao;
 
+import parking.event.EventBus;
+import parking.event.PlaceChanged;
 import parking.model.Place;
+import parking.util.DaoMetrics;
 import parking.util.DatabaseConnection;
+import parking.util.MethodStats;
+import parking.util.Money;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -9,104 +14,224 @@ import java.util.List;
 
 /**
  * DAO pour l'entité Place.
+ * Chaque instance travaille sur un site ({@link DatabaseConnection#getSites()}) ; l'index d'occupation,
+ * le cache d'entités et les événements ne concernent que le site local.
  */
 public class PlaceDAO implements IDao<Place> {
 
+    private static final MethodStats STATS_CREATE        = DaoMetrics.stats("PlaceDAO.create");
+    private static final MethodStats STATS_UPDATE        = DaoMetrics.stats("PlaceDAO.update");
+    private static final MethodStats STATS_DELETE        = DaoMetrics.stats("PlaceDAO.delete");
+    private static final MethodStats STATS_FIND_BY_ID    = DaoMetrics.stats("PlaceDAO.findById");
+    private static final MethodStats STATS_FIND_ALL      = DaoMetrics.stats("PlaceDAO.findAll");
+    private static final MethodStats STATS_FIND_FILTERED = DaoMetrics.stats("PlaceDAO.findFiltered");
+    private static final MethodStats STATS_OCCUPATION    = DaoMetrics.stats("PlaceDAO.compterOccupation");
+
+    /** Places et places occupées (statut "Occupée" ou stationnement en cours), comme l'index d'occupation. */
+    static final String OCCUPATION_SQL =
+            "SELECT COUNT(*), COALESCE(SUM(p.statut='Occupée' OR EXISTS(SELECT 1 FROM Stationnement s " +
+            "WHERE s.place_id = p.id AND s.dateSortie IS NULL)), 0) FROM Place p";
+
+    private final String  site;
+    private final boolean local;
+
+    /** DAO du site local. */
+    public PlaceDAO() {
+        this(DatabaseConnection.getSiteLocal());
+    }
+
+    public PlaceDAO(String site) {
+        this.site  = site;
+        this.local = DatabaseConnection.isLocal(site);
+    }
+
+    public String getSite() { return site; }
+
+    /** Emprunte une connexion au pool du site ; à fermer après usage. */
     private Connection conn() throws SQLException {
-        return DatabaseConnection.getInstance();
+        return DatabaseConnection.getConnection(site);
     }
 
     @Override
     public void create(Place p) throws SQLException {
-        String sql = "INSERT INTO Place (numero, type, statut, tarifHoraire) VALUES (?,?,?,?)";
-        try (PreparedStatement ps = conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, p.getNumero());
-            ps.setString(2, p.getType().name());
-            ps.setString(3, p.getStatut().name());
-            ps.setDouble(4, p.getTarifHoraire());
-            ps.executeUpdate();
-            ResultSet rs = ps.getGeneratedKeys();
-            if (rs.next()) p.setId(rs.getInt(1));
-        }
+        String sql = "INSERT INTO Place (numero, type, statut, tarifHoraire, zone, niveau, distance) VALUES (?,?,?,?,?,?,?)";
+        STATS_CREATE.compter(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, p.getNumero());
+                ps.setString(2, p.getType().name());
+                ps.setString(3, p.getStatut().name());
+                Money.ecrire(ps, 4, p.getTarifHoraire());
+                ps.setString(5, p.getZone());
+                ps.setInt(6, p.getNiveau());
+                ps.setInt(7, p.getDistance());
+                int rows = ps.executeUpdate();
+                ResultSet rs = ps.getGeneratedKeys();
+                if (rs.next()) p.setId(rs.getInt(1));
+                return rows;
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (local) publier(p);
     }
 
+    /**
+     * Un changement de type est reporté dans la même transaction sur les agrégats de revenus de la place,
+     * qui en gardent une copie pour les revenus par type.
+     */
     @Override
     public void update(Place p) throws SQLException {
-        String sql = "UPDATE Place SET numero=?, type=?, statut=?, tarifHoraire=? WHERE id=?";
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setString(1, p.getNumero());
-            ps.setString(2, p.getType().name());
-            ps.setString(3, p.getStatut().name());
-            ps.setDouble(4, p.getTarifHoraire());
-            ps.setInt(5, p.getId());
-            ps.executeUpdate();
-        }
+        String sql = "UPDATE Place SET numero=?, type=?, statut=?, tarifHoraire=?, zone=?, niveau=?, distance=? WHERE id=?";
+        STATS_UPDATE.compter(() -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                try {
+                    String ancienType = null;
+                    try (PreparedStatement ps = c.prepareStatement("SELECT type FROM Place WHERE id=? FOR UPDATE")) {
+                        ps.setInt(1, p.getId());
+                        ResultSet rs = ps.executeQuery();
+                        if (rs.next()) ancienType = rs.getString(1);
+                    }
+                    int rows;
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        ps.setString(1, p.getNumero());
+                        ps.setString(2, p.getType().name());
+                        ps.setString(3, p.getStatut().name());
+                        Money.ecrire(ps, 4, p.getTarifHoraire());
+                        ps.setString(5, p.getZone());
+                        ps.setInt(6, p.getNiveau());
+                        ps.setInt(7, p.getDistance());
+                        ps.setInt(8, p.getId());
+                        rows = ps.executeUpdate();
+                    }
+                    if (ancienType != null && !ancienType.equals(p.getType().name())) {
+                        RevenueRollupDAO.changerType(c, p.getId(), p.getType());
+                    }
+                    c.commit();
+                    return rows;
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (!local) return;
+        EntityCache.PLACES.invalidate(p.getId());
+        publier(p);
     }
 
     @Override
     public void delete(int id) throws SQLException {
-        try (PreparedStatement ps = conn().prepareStatement("DELETE FROM Place WHERE id=?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
-        }
+        STATS_DELETE.compter(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement("DELETE FROM Place WHERE id=?")) {
+                ps.setInt(1, id);
+                return ps.executeUpdate();
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (!local) return;
+        EntityCache.PLACES.invalidate(id);
+        OccupancyIndex.getInstance().remove(id);
+        EventBus.getInstance().publish(new PlaceChanged(id, null));
+    }
+
+    /** Reporte la place dans l'index d'occupation et publie son nouvel état. */
+    private static void publier(Place p) throws SQLException {
+        OccupancyIndex index = OccupancyIndex.getInstance();
+        index.put(p);
+        EventBus.getInstance().publish(new PlaceChanged(p.getId(), index.get(p.getId())));
     }
 
     @Override
     public Place findById(int id) throws SQLException {
-        try (PreparedStatement ps = conn().prepareStatement("SELECT * FROM Place WHERE id=?")) {
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return mapRow(rs);
-        }
-        return null;
+        return STATS_FIND_BY_ID.ligne(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement("SELECT * FROM Place WHERE id=?")) {
+                ps.setInt(1, id);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? mapRow(rs) : null;
+            }
+        });
     }
 
     @Override
     public List<Place> findAll() throws SQLException {
-        List<Place> list = new ArrayList<>();
-        try (Statement st = conn().createStatement();
-             ResultSet rs = st.executeQuery("SELECT * FROM Place ORDER BY numero")) {
-            while (rs.next()) list.add(mapRow(rs));
-        }
-        return list;
+        return STATS_FIND_ALL.liste(() -> {
+            List<Place> list = new ArrayList<>();
+            try (Connection c = conn();
+                 Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT * FROM Place ORDER BY numero")) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
     }
 
-    /** Retourne uniquement les places libres d'un type donné. */
+    /** Retourne uniquement les places libres d'un type donné (servi par l'index en mémoire sur le site local). */
     public List<Place> findLibresByType(Place.Type type) throws SQLException {
-        List<Place> list = new ArrayList<>();
-        String sql = "SELECT * FROM Place WHERE statut='Libre' AND type=? ORDER BY numero";
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setString(1, type.name());
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) list.add(mapRow(rs));
+        if (!local) return findFiltered(type.name(), Place.Statut.Libre.name());
+        return OccupancyIndex.getInstance().findLibres(type);
+    }
+
+    /** Toutes les places libres, triées par numéro (servi par l'index en mémoire sur le site local). */
+    public List<Place> findLibres() throws SQLException {
+        if (!local) return findFiltered(null, Place.Statut.Libre.name());
+        return OccupancyIndex.getInstance().findLibres(null);
+    }
+
+    /** Zones du site, triées (attribution automatique). */
+    public List<String> findZones() throws SQLException {
+        if (local) return new ArrayList<>(OccupancyIndex.getInstance().getAllocateur().zones());
+        List<String> list = new ArrayList<>();
+        try (Connection c = conn();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISTINCT zone FROM Place ORDER BY zone")) {
+            while (rs.next()) list.add(rs.getString(1));
         }
         return list;
     }
 
+    /**
+     * Occupation du site : {total, occupées}. Site local : index en mémoire ; autre site : une requête.
+     */
+    public int[] compterOccupation() throws SQLException {
+        if (local) {
+            OccupancyIndex index = OccupancyIndex.getInstance();
+            return new int[]{index.countTotal(), index.countOccupees()};
+        }
+        return STATS_OCCUPATION.mesurer(r -> 1, () -> {
+            try (Connection c = conn();
+                 Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(OCCUPATION_SQL)) {
+                rs.next();
+                return new int[]{rs.getInt(1), rs.getInt(2)};
+            }
+        });
+    }
+
     /** Filtre par type et/ou statut (null = pas de filtre). */
     public List<Place> findFiltered(String type, String statut) throws SQLException {
-        List<Place> list = new ArrayList<>();
         StringBuilder sb = new StringBuilder("SELECT * FROM Place WHERE 1=1");
         if (type   != null && !type.isEmpty())   sb.append(" AND type=?");
         if (statut != null && !statut.isEmpty()) sb.append(" AND statut=?");
         sb.append(" ORDER BY numero");
-        try (PreparedStatement ps = conn().prepareStatement(sb.toString())) {
-            int idx = 1;
-            if (type   != null && !type.isEmpty())   ps.setString(idx++, type);
-            if (statut != null && !statut.isEmpty()) ps.setString(idx,   statut);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) list.add(mapRow(rs));
-        }
-        return list;
+        return STATS_FIND_FILTERED.liste(() -> {
+            List<Place> list = new ArrayList<>();
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(sb.toString())) {
+                int idx = 1;
+                if (type   != null && !type.isEmpty())   ps.setString(idx++, type);
+                if (statut != null && !statut.isEmpty()) ps.setString(idx,   statut);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
     }
 
     private Place mapRow(ResultSet rs) throws SQLException {
-        return new Place(
-                rs.getInt("id"),
-                rs.getString("numero"),
-                Place.Type.valueOf(rs.getString("type")),
-                Place.Statut.valueOf(rs.getString("statut")),
-                rs.getDouble("tarifHoraire")
-        );
+        return local ? EntityCache.place(rs, "id", "type") : EntityCache.nouvellePlace(rs, "id", "type");
     }
 }
@@ -0,0 +1,187 @@
+package parking.dao;
+
+import parking.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index trigramme des matricules, tenu en mémoire : recherche d'un fragment de matricule
+ * sans parcourir l'historique ni la table Vehicule.
+ * Chaque trigramme d'un matricule pointe vers la liste triée des id de véhicule qui le contiennent ;
+ * une recherche intersecte les listes des trigrammes du motif, puis vérifie chaque candidat.
+ * La comparaison ignore la casse, comme la collation de la base.
+ *
+ * Chargé au premier usage, puis tenu à jour par {@link VehiculeDAO}. Les véhicules créés sur un autre poste
+ * sont ajoutés avant chaque recherche par {@link #rattraper()} (id au-delà du plus grand id connu) ;
+ * un matricule modifié ou un véhicule supprimé sur un autre poste attend un rechargement.
+ */
+public final class PlateIndex {
+
+    static final String LOAD_SQL = "SELECT id, matricule FROM Vehicule";
+    static final String DEPUIS_SQL = "SELECT id, matricule FROM Vehicule WHERE id > ?";
+
+    private static final int N = 3;
+
+    private static PlateIndex instance;
+
+    /** Liste triée d'id, sans doublon. */
+    private static final class IdList {
+        int[] ids = new int[4];
+        int   size;
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) return;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+    private final Map<Integer, String> plates   = new HashMap<>();
+    private final Map<String, IdList>  trigrams = new HashMap<>();
+    /** Plus grand id de véhicule vu (chargement, rattrapage ou écriture locale). */
+    private int maxId;
+
+    private PlateIndex() {}
+
+    /** Retourne l'index, en le chargeant depuis la base au premier appel. */
+    public static synchronized PlateIndex getInstance() throws SQLException {
+        if (instance == null) {
+            PlateIndex idx = new PlateIndex();
+            idx.reload();
+            instance = idx;
+        }
+        return instance;
+    }
+
+    /** Recharge entièrement l'index depuis la base. */
+    public void reload() throws SQLException {
+        Map<Integer, String> lus = new HashMap<>();
+        try (Connection c = DatabaseConnection.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(LOAD_SQL)) {
+            while (rs.next()) lus.put(rs.getInt("id"), rs.getString("matricule"));
+        }
+        synchronized (this) {
+            plates.clear();
+            trigrams.clear();
+            for (Map.Entry<Integer, String> e : lus.entrySet()) put(e.getKey(), e.getValue());
+        }
+    }
+
+    /** Ajoute les véhicules créés depuis par d'autres postes : une lecture par clé primaire, vide le plus souvent. */
+    public void rattraper() throws SQLException {
+        int depuis;
+        synchronized (this) {
+            depuis = maxId;
+        }
+        Map<Integer, String> lus = new HashMap<>();
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(DEPUIS_SQL)) {
+            ps.setInt(1, depuis);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) lus.put(rs.getInt("id"), rs.getString("matricule"));
+        }
+        if (lus.isEmpty()) return;
+        synchronized (this) {
+            for (Map.Entry<Integer, String> e : lus.entrySet()) {
+                if (!plates.containsKey(e.getKey())) put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Véhicules dont le matricule contient {@code motif} (casse ignorée).
+     * @return id triés par ordre croissant
+     */
+    public synchronized int[] find(String motif) {
+        String m = VehiculeDAO.normaliser(motif);
+        if (m.isEmpty()) return new int[0];
+
+        int[] candidats;
+        if (m.length() < N) {
+            // Motif trop court pour un trigramme : parcours des matricules en mémoire
+            candidats = new int[plates.size()];
+            int n = 0;
+            for (Integer id : plates.keySet()) candidats[n++] = id;
+            Arrays.sort(candidats);
+        } else {
+            List<IdList> listes = new ArrayList<>();
+            for (int i = 0; i + N <= m.length(); i++) {
+                IdList l = trigrams.get(m.substring(i, i + N));
+                if (l == null) return new int[0];
+                listes.add(l);
+            }
+            listes.sort((a, b) -> Integer.compare(a.size, b.size));
+            IdList plusCourte = listes.get(0);
+            candidats = new int[plusCourte.size];
+            int n = 0;
+            for (int k = 0; k < plusCourte.size; k++) {
+                int id = plusCourte.ids[k];
+                boolean partout = true;
+                for (int j = 1; j < listes.size() && partout; j++) partout = listes.get(j).contains(id);
+                if (partout) candidats[n++] = id;
+            }
+            candidats = Arrays.copyOf(candidats, n);
+        }
+
+        // Les trigrammes sont nécessaires mais pas suffisants : vérifier la sous-chaîne
+        int n = 0;
+        for (int id : candidats) {
+            if (plates.get(id).contains(m)) candidats[n++] = id;
+        }
+        return Arrays.copyOf(candidats, n);
+    }
+
+    public synchronized int size() {
+        return plates.size();
+    }
+
+    // ---- Mises à jour (appelées par VehiculeDAO après écriture réussie) ----
+
+    /** Ajoute ou remplace le matricule d'un véhicule. */
+    public synchronized void put(int id, String matricule) {
+        remove(id);
+        String m = VehiculeDAO.normaliser(matricule);
+        plates.put(id, m);
+        maxId = Math.max(maxId, id);
+        for (int i = 0; i + N <= m.length(); i++) {
+            trigrams.computeIfAbsent(m.substring(i, i + N), k -> new IdList()).add(id);
+        }
+    }
+
+    public synchronized void remove(int id) {
+        String m = plates.remove(id);
+        if (m == null) return;
+        for (int i = 0; i + N <= m.length(); i++) {
+            String t = m.substring(i, i + N);
+            IdList l = trigrams.get(t);
+            if (l == null) continue;
+            l.remove(id);
+            if (l.size == 0) trigrams.remove(t);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package parking.dao;
+
+import parking.model.Place;
+import parking.util.DatabaseConnection;
+import parking.util.Money;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Agrégats de revenus (table RevenueRollup : un total par jour de sortie et par place).
+ * Les écritures se font dans la transaction de l'appelant (sortie, suppression, modification) ;
+ * les lectures portent sur quelques centaines de lignes pré-agrégées au lieu de tout l'historique.
+ * Montants en centimes ; les totaux DECIMAL sont sommés par la base, sans arrondi intermédiaire.
+ * Chaque instance lit les agrégats d'un site.
+ */
+public class RevenueRollupDAO {
+
+    /** Ajoute (ou retire, si nb < 0) un montant à l'agrégat du jour pour une place. */
+    static final String AJOUTER_SQL =
+            "INSERT INTO RevenueRollup (jour, place_id, type, total, nb) " +
+            "SELECT ?, p.id, p.type, ?, ? FROM Place p WHERE p.id=? " +
+            "ON DUPLICATE KEY UPDATE total = total + VALUES(total), nb = nb + VALUES(nb)";
+    static final String REVENUS_PAR_MOIS_SQL =
+            "SELECT DATE_FORMAT(jour,'%Y-%m') AS mois, SUM(total) AS total " +
+            "FROM RevenueRollup GROUP BY mois ORDER BY mois";
+    static final String REVENUS_PAR_JOUR_SQL =
+            "SELECT jour, SUM(total) AS total FROM RevenueRollup " +
+            "WHERE jour >= ? AND jour < ? GROUP BY jour ORDER BY jour";
+    static final String REVENUS_PAR_TYPE_SQL =
+            "SELECT type, SUM(total) AS total FROM RevenueRollup GROUP BY type ORDER BY type";
+    private static final String CHANGER_TYPE_SQL =
+            "UPDATE RevenueRollup SET type=? WHERE place_id=?";
+    private static final String REBUILD_SQL =
+            "INSERT INTO RevenueRollup (jour, place_id, type, total, nb) " +
+            "SELECT DATE(s.dateSortie), s.place_id, p.type, SUM(s.montant), COUNT(*) " +
+            "FROM Stationnement s JOIN Place p ON p.id = s.place_id " +
+            "WHERE s.dateSortie IS NOT NULL AND s.montant IS NOT NULL " +
+            "GROUP BY DATE(s.dateSortie), s.place_id, p.type";
+
+    private final String site;
+
+    /** DAO du site local. */
+    public RevenueRollupDAO() {
+        this(DatabaseConnection.getSiteLocal());
+    }
+
+    public RevenueRollupDAO(String site) {
+        this.site = site;
+    }
+
+    public String getSite() { return site; }
+
+    private Connection conn() throws SQLException {
+        return DatabaseConnection.getConnection(site);
+    }
+
+    /** Les rapports tolèrent un léger retard : réplique si possible. */
+    private Connection lecture() throws SQLException {
+        return DatabaseConnection.getConnectionLecture(site);
+    }
+
+    // ---- Écritures (dans la transaction de l'appelant) ----
+
+    static void ajouter(Connection c, int placeId, LocalDate jour, long montant) throws SQLException {
+        upsert(c, placeId, jour, montant, 1);
+    }
+
+    static void retirer(Connection c, int placeId, LocalDate jour, long montant) throws SQLException {
+        upsert(c, placeId, jour, -montant, -1);
+    }
+
+    private static void upsert(Connection c, int placeId, LocalDate jour, long montant, int nb) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(AJOUTER_SQL)) {
+            bindUpsert(ps, placeId, jour, montant, nb);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Reporte le nouveau type d'une place sur ses agrégats (copie de Place.type). */
+    static void changerType(Connection c, int placeId, Place.Type type) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(CHANGER_TYPE_SQL)) {
+            ps.setString(1, type.name());
+            ps.setInt(2, placeId);
+            ps.executeUpdate();
+        }
+    }
+
+    static void bindUpsert(PreparedStatement ps, int placeId, LocalDate jour, long montant, int nb) throws SQLException {
+        ps.setDate(1, Date.valueOf(jour));
+        Money.ecrire(ps, 2, montant);
+        ps.setInt(3, nb);
+        ps.setInt(4, placeId);
+    }
+
+    /**
+     * Recalcule tous les agrégats depuis la table Stationnement (en cas de dérive).
+     * @return le nombre de lignes d'agrégat produites
+     */
+    public int rebuild() throws SQLException {
+        try (Connection c = conn()) {
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("DELETE FROM RevenueRollup");
+                int n = st.executeUpdate(REBUILD_SQL);
+                c.commit();
+                DatabaseConnection.ecritureValidee(site);
+                return n;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // ---- Lectures ----
+
+    /** Revenus par mois : {yyyy-mm, total en centimes (Long)}. */
+    public List<Object[]> getRevenusParMois() throws SQLException {
+        List<Object[]> result = new ArrayList<>();
+        try (Connection c = lecture();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(REVENUS_PAR_MOIS_SQL)) {
+            while (rs.next()) {
+                result.add(new Object[]{rs.getString("mois"), Money.lire(rs, "total")});
+            }
+        }
+        return result;
+    }
+
+    /** Revenus par jour sur [debut, fin] : {yyyy-mm-dd, total en centimes (Long)}. */
+    public List<Object[]> getRevenusParJour(LocalDate debut, LocalDate fin) throws SQLException {
+        List<Object[]> result = new ArrayList<>();
+        try (Connection c = lecture();
+             PreparedStatement ps = c.prepareStatement(REVENUS_PAR_JOUR_SQL)) {
+            ps.setDate(1, Date.valueOf(debut));
+            ps.setDate(2, Date.valueOf(fin.plusDays(1)));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                result.add(new Object[]{rs.getDate("jour").toLocalDate().toString(), Money.lire(rs, "total")});
+            }
+        }
+        return result;
+    }
+
+    /** Revenus par type de place : {type, total en centimes (Long)}. */
+    public List<Object[]> getRevenusParType() throws SQLException {
+        List<Object[]> result = new ArrayList<>();
+        try (Connection c = lecture();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(REVENUS_PAR_TYPE_SQL)) {
+            while (rs.next()) {
+                result.add(new Object[]{rs.getString("type"), Money.lire(rs, "total")});
+            }
+        }
+        return result;
+    }
+}
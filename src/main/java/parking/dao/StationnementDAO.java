@@ -1,233 +1,984 @@
 package parking.dao;
 
+import parking.event.EventBus;
+import parking.event.PlaceChanged;
+import parking.event.SessionClosed;
+import parking.event.SessionOpened;
 import parking.model.Place;
 import parking.model.Stationnement;
 import parking.model.Vehicule;
+import parking.util.DaoMetrics;
 import parking.util.DatabaseConnection;
+import parking.util.MethodStats;
+import parking.util.Money;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO pour l'entité Stationnement.
  * Applique les règles métiers :
  *  - Empêche l'occupation simultanée d'une même place (2 véhicules en même temps)
  *  - Calcule automatiquement le montant à la sortie
+ * Chaque instance travaille sur un site ({@link DatabaseConnection#getSites()}) : l'index d'occupation,
+ * le journal d'audit, les caches et les événements ne concernent que le site local ; sur un autre site,
+ * le filtre de matricule reste un LIKE en base.
  */
 public class StationnementDAO implements IDao<Stationnement> {
 
-    private final PlaceDAO    placeDAO    = new PlaceDAO();
-    private final VehiculeDAO vehiculeDAO = new VehiculeDAO();
+    /** Réserve la place : verrouille la ligne Place et échoue (0 ligne) si elle est déjà prise. */
+    static final String RESERVER_PLACE_SQL =
+            "UPDATE Place p SET p.statut='Occupée' WHERE p.id=? AND p.statut='Libre' " +
+            "AND NOT EXISTS (SELECT 1 FROM Stationnement s WHERE s.place_id=p.id AND s.dateSortie IS NULL)";
+    /** Réserve la place d'une entrée seule : verrou de ligne sur Place, sans verrou d'intervalle sur Stationnement. */
+    static final String PRENDRE_PLACE_SQL =
+            "UPDATE Place SET statut='Occupée' WHERE id=? AND statut='Libre'";
+    /** Stationnement en cours sur la place, en lecture non verrouillante (la ligne Place est déjà verrouillée). */
+    static final String PLACE_EN_COURS_SQL =
+            "SELECT 1 FROM Stationnement WHERE place_id=? AND dateSortie IS NULL LIMIT 1";
+    static final String INSERT_SQL =
+            "INSERT INTO Stationnement (place_id, vehicule_id, dateEntree) VALUES (?,?,?)";
+    /** Verrouille un stationnement et lit ce qu'il faut pour calculer le montant. */
+    static final String LOCK_SORTIE_SQL =
+            "SELECT s.place_id, s.vehicule_id, s.dateEntree, s.dateSortie, p.type, p.tarifHoraire " +
+            "FROM Stationnement s JOIN Place p ON p.id = s.place_id WHERE s.id=? FOR UPDATE";
+    /** Clôt le stationnement et libère la place (seule la colonne statut est écrite). */
+    static final String CLORE_SQL =
+            "UPDATE Stationnement s JOIN Place p ON p.id = s.place_id " +
+            "SET s.dateSortie=?, s.montant=?, p.statut='Libre' WHERE s.id=? AND s.dateSortie IS NULL";
 
+    static final String FIND_BY_VEHICULE_SQL = buildSelectSql("WHERE s.vehicule_id=? ORDER BY s.dateEntree DESC");
+    static final String FIND_EN_COURS_SQL    = buildSelectSql("WHERE s.dateSortie IS NULL ORDER BY s.dateEntree");
+    static final String FIND_EN_COURS_PLACE_SQL = buildSelectSql("WHERE s.place_id=? AND s.dateSortie IS NULL");
+    static final String EXISTE_ENTREE_SQL =
+            "SELECT 1 FROM Stationnement WHERE vehicule_id=? AND dateEntree=? AND place_id=? LIMIT 1";
+    /** État comptable d'un stationnement avant modification / suppression (pour les agrégats de revenus). */
+    private static final String LOCK_MONTANT_SQL =
+            "SELECT place_id, dateSortie, montant FROM Stationnement WHERE id=? FOR UPDATE";
+
+    /** Nombre maximal de lignes par instruction multi-lignes dans les traitements par lot. */
+    private static final int BATCH_CHUNK = 500;
+    /**
+     * Au-delà de ce nombre de véhicules correspondant au motif de matricule, le filtre reste
+     * un LIKE en base : le motif est alors peu sélectif et une liste IN n'apporte plus rien.
+     */
+    private static final int MAX_VEHICULES_IN = 5000;
+    /**
+     * Part des véhicules (en %) à partir de laquelle un motif de matricule est jugé peu sélectif :
+     * les pages parcourent alors l'index (dateEntree, id) dans l'ordre et s'arrêtent à la limite,
+     * au lieu de lire et trier tout l'historique des véhicules trouvés.
+     */
+    private static final int PEU_SELECTIF_PCT = 1;
+    /**
+     * Tentatives d'une entrée choisie comme victime d'un interblocage : deux entrées sur des places voisines
+     * (attribution automatique) se croisent sur les verrous d'intervalle de l'index (place_id, dateSortie).
+     */
+    private static final int ESSAIS_INTERBLOCAGE = 5;
+    private static final String PARCOURS_PAR_DATE = "FORCE INDEX FOR ORDER BY (idx_stat_entree) ";
+
+    private static final MethodStats STATS_CREATE             = DaoMetrics.stats("StationnementDAO.create");
+    private static final MethodStats STATS_CREATE_RESERVATION = DaoMetrics.stats("StationnementDAO.create.reservation");
+    private static final MethodStats STATS_CREATE_INSERT      = DaoMetrics.stats("StationnementDAO.create.insert");
+    private static final MethodStats STATS_CREATE_COMMIT      = DaoMetrics.stats("StationnementDAO.create.commit");
+    private static final MethodStats STATS_CREATE_INTERBLOCAGE = DaoMetrics.stats("StationnementDAO.create.interblocage");
+    private static final MethodStats STATS_SORTIE             = DaoMetrics.stats("StationnementDAO.enregistrerSortie");
+    private static final MethodStats STATS_SORTIE_VERROU      = DaoMetrics.stats("StationnementDAO.enregistrerSortie.verrou");
+    private static final MethodStats STATS_SORTIE_CLOTURE     = DaoMetrics.stats("StationnementDAO.enregistrerSortie.cloture");
+    private static final MethodStats STATS_SORTIE_AGREGAT     = DaoMetrics.stats("StationnementDAO.enregistrerSortie.agregat");
+    private static final MethodStats STATS_SORTIE_COMMIT      = DaoMetrics.stats("StationnementDAO.enregistrerSortie.commit");
+    private static final MethodStats STATS_CREATE_ALL         = DaoMetrics.stats("StationnementDAO.createAll");
+    private static final MethodStats STATS_SORTIES            = DaoMetrics.stats("StationnementDAO.enregistrerSorties");
+    private static final MethodStats STATS_UPDATE             = DaoMetrics.stats("StationnementDAO.update");
+    private static final MethodStats STATS_DELETE             = DaoMetrics.stats("StationnementDAO.delete");
+    private static final MethodStats STATS_FIND_BY_ID         = DaoMetrics.stats("StationnementDAO.findById");
+    private static final MethodStats STATS_FIND_ALL           = DaoMetrics.stats("StationnementDAO.findAll");
+    private static final MethodStats STATS_FIND_BY_VEHICULE   = DaoMetrics.stats("StationnementDAO.findByVehicule");
+    private static final MethodStats STATS_FIND_EN_COURS      = DaoMetrics.stats("StationnementDAO.findEnCours");
+    private static final MethodStats STATS_FIND_EN_COURS_PLACE = DaoMetrics.stats("StationnementDAO.findEnCoursParPlace");
+    private static final MethodStats STATS_EXISTE_ENTREE      = DaoMetrics.stats("StationnementDAO.existeEntree");
+    private static final MethodStats STATS_FIND_FILTERED      = DaoMetrics.stats("StationnementDAO.findFiltered");
+    private static final MethodStats STATS_PARCOURIR          = DaoMetrics.stats("StationnementDAO.parcourir");
+    private static final MethodStats STATS_COUNT_FILTERED     = DaoMetrics.stats("StationnementDAO.countFiltered");
+    private static final MethodStats STATS_FIND_PAGE          = DaoMetrics.stats("StationnementDAO.findPage");
+    private static final MethodStats STATS_SEEK               = DaoMetrics.stats("StationnementDAO.seek");
+    private static final MethodStats STATS_REVENUS_PAR_MOIS   = DaoMetrics.stats("StationnementDAO.getRevenusParMois");
+    private static final MethodStats STATS_PLACE_OCCUPEE      = DaoMetrics.stats("StationnementDAO.isPlaceOccupee");
+
+    private final String           site;
+    private final boolean          local;
+    private final RevenueRollupDAO rollupDAO;
+
+    /** DAO du site local. */
+    public StationnementDAO() {
+        this(DatabaseConnection.getSiteLocal());
+    }
+
+    public StationnementDAO(String site) {
+        this.site      = site;
+        this.local     = DatabaseConnection.isLocal(site);
+        this.rollupDAO = new RevenueRollupDAO(site);
+    }
+
+    public String getSite() { return site; }
+
+    /** Emprunte une connexion au pool du site ; à fermer après usage. */
     private Connection conn() throws SQLException {
-        return DatabaseConnection.getInstance();
+        return DatabaseConnection.getConnection(site);
     }
 
-    /** Enregistre une entrée (attribue une place à un véhicule). */
+    /** Connexion pour les lectures qui tolèrent un léger retard (historique, rapports) : réplique si possible. */
+    private Connection lecture() throws SQLException {
+        return DatabaseConnection.getConnectionLecture(site);
+    }
+
+    /**
+     * Enregistre une entrée (attribue une place à un véhicule).
+     * Une seule transaction : réservation conditionnelle de la place, contrôle du stationnement en cours, puis INSERT.
+     * Deux caisses qui visent la même place sont sérialisées par le verrou de ligne ;
+     * la seconde obtient 0 ligne modifiée et reçoit une SQLException.
+     * Le contrôle ne verrouille pas l'index (place_id, dateSortie) : des entrées simultanées sur des places
+     * voisines ne s'attendent pas. Une transaction annulée par un interblocage est rejouée.
+     */
     @Override
     public void create(Stationnement s) throws SQLException {
-        // Règle : la place ne doit pas être déjà occupée
-        if (isPlaceOccupee(s.getPlace().getId())) {
-            throw new SQLException("La place " + s.getPlace().getNumero() + " est déjà occupée.");
-        }
-        String sql = "INSERT INTO Stationnement (place_id, vehicule_id, dateEntree) VALUES (?,?,?)";
-        try (PreparedStatement ps = conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, s.getPlace().getId());
-            ps.setInt(2, s.getVehicule().getId());
-            ps.setTimestamp(3, Timestamp.valueOf(s.getDateEntree()));
-            ps.executeUpdate();
-            ResultSet rs = ps.getGeneratedKeys();
-            if (rs.next()) s.setId(rs.getInt(1));
-        }
-        // Mettre à jour le statut de la place
-        s.getPlace().setStatut(Place.Statut.Occupée);
-        placeDAO.update(s.getPlace());
-    }
-
-    /** Enregistre la sortie : calcule et sauvegarde le montant. */
-    public void enregistrerSortie(int statId, LocalDateTime dateSortie) throws SQLException {
-        Stationnement s = findById(statId);
-        if (s == null) throw new SQLException("Stationnement introuvable (id=" + statId + ")");
-        if (!s.isEnCours()) throw new SQLException("Ce stationnement est déjà terminé.");
-
-        s.setDateSortie(dateSortie);
-        double montant = s.calculerMontant();
-        s.setMontant(montant);
-
-        String sql = "UPDATE Stationnement SET dateSortie=?, montant=? WHERE id=?";
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setTimestamp(1, Timestamp.valueOf(dateSortie));
-            ps.setDouble(2, montant);
-            ps.setInt(3, statId);
-            ps.executeUpdate();
-        }
-        // Libérer la place
-        Place place = s.getPlace();
-        place.setStatut(Place.Statut.Libre);
-        placeDAO.update(place);
+        int placeId = s.getPlace().getId();
+        STATS_CREATE.compter(() -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                for (int essai = 1; ; essai++) {
+                    long t = System.nanoTime();
+                    try {
+                        // Règle : la place ne doit pas être déjà occupée
+                        boolean prise;
+                        try (PreparedStatement ps = c.prepareStatement(PRENDRE_PLACE_SQL)) {
+                            ps.setInt(1, placeId);
+                            prise = ps.executeUpdate() > 0;
+                        }
+                        if (prise) {
+                            try (PreparedStatement ps = c.prepareStatement(PLACE_EN_COURS_SQL)) {
+                                ps.setInt(1, placeId);
+                                prise = !ps.executeQuery().next();
+                            }
+                        }
+                        if (!prise) {
+                            if (local) OccupancyIndex.getInstance().markOccupee(placeId);
+                            throw new SQLException("La place " + s.getPlace().getNumero() + " est déjà occupée.");
+                        }
+                        STATS_CREATE_RESERVATION.record(t, 1);
+                        t = System.nanoTime();
+                        int rows;
+                        try (PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                            ps.setInt(1, placeId);
+                            ps.setInt(2, s.getVehicule().getId());
+                            ps.setTimestamp(3, Timestamp.valueOf(s.getDateEntree()));
+                            rows = ps.executeUpdate();
+                            ResultSet rs = ps.getGeneratedKeys();
+                            if (rs.next()) s.setId(rs.getInt(1));
+                        }
+                        STATS_CREATE_INSERT.record(t, rows);
+                        t = System.nanoTime();
+                        c.commit();
+                        STATS_CREATE_COMMIT.record(t, 0);
+                        return rows;
+                    } catch (SQLException e) {
+                        rollbackQuietly(c);
+                        if (essai < ESSAIS_INTERBLOCAGE && interblocage(e)) {
+                            STATS_CREATE_INTERBLOCAGE.record(t, 0);
+                            continue;
+                        }
+                        throw e;
+                    }
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        // Copie : la place de l'appelant peut être l'instance partagée affichée par les écrans
+        s.setPlace(OccupancyIndex.copy(s.getPlace(), Place.Statut.Occupée));
+        if (!local) return;
+        OccupancyIndex index = OccupancyIndex.getInstance();
+        index.markOccupee(placeId);
+        publierEntree(s, index);
+    }
+
+    /**
+     * Enregistre la sortie : calcule et sauvegarde le montant, libère la place.
+     * Une seule transaction : SELECT ... FOR UPDATE, un UPDATE multi-table, puis l'agrégat de revenus du jour.
+     * @return le montant calculé, en centimes
+     */
+    public long enregistrerSortie(int statId, LocalDateTime dateSortie) throws SQLException {
+        Stationnement s = STATS_SORTIE.ligne(() -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                try {
+                    Stationnement lu = new Stationnement();
+                    lu.setId(statId);
+                    long t = System.nanoTime();
+                    try (PreparedStatement ps = c.prepareStatement(LOCK_SORTIE_SQL)) {
+                        ps.setInt(1, statId);
+                        ResultSet rs = ps.executeQuery();
+                        if (!rs.next()) throw new SQLException("Stationnement introuvable (id=" + statId + ")");
+                        if (rs.getTimestamp("dateSortie") != null) throw new SQLException("Ce stationnement est déjà terminé.");
+                        Place place = new Place();
+                        place.setId(rs.getInt("place_id"));
+                        place.setType(EntityCache.placeType(rs.getString("type")));
+                        place.setTarifHoraire(Money.lire(rs, "tarifHoraire"));
+                        Vehicule vehicule = new Vehicule();
+                        vehicule.setId(rs.getInt("vehicule_id"));
+                        lu.setPlace(place);
+                        lu.setVehicule(vehicule);
+                        lu.setDateEntree(rs.getTimestamp("dateEntree").toLocalDateTime());
+                    }
+                    STATS_SORTIE_VERROU.record(t, 1);
+                    lu.setDateSortie(dateSortie);
+                    lu.setMontant(lu.calculerMontant());
+
+                    t = System.nanoTime();
+                    int rows;
+                    try (PreparedStatement ps = c.prepareStatement(CLORE_SQL)) {
+                        ps.setTimestamp(1, Timestamp.valueOf(dateSortie));
+                        Money.ecrire(ps, 2, lu.getMontant());
+                        ps.setInt(3, statId);
+                        rows = ps.executeUpdate();
+                    }
+                    STATS_SORTIE_CLOTURE.record(t, rows);
+                    t = System.nanoTime();
+                    RevenueRollupDAO.ajouter(c, lu.getPlace().getId(), dateSortie.toLocalDate(), lu.getMontant());
+                    STATS_SORTIE_AGREGAT.record(t, 1);
+                    t = System.nanoTime();
+                    c.commit();
+                    STATS_SORTIE_COMMIT.record(t, 0);
+                    return lu;
+                } catch (SQLException e) {
+                    rollbackQuietly(c);
+                    throw e;
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (local) {
+            OccupancyIndex index = OccupancyIndex.getInstance();
+            index.markLibre(s.getPlace().getId());
+            publierSortie(statId, s.getPlace().getId(), s.getVehicule().getId(), s.getDateEntree(), dateSortie,
+                    s.getMontant(), index);
+        }
+        return s.getMontant();
+    }
+
+    /**
+     * Enregistre un lot d'entrées dans une seule transaction :
+     * réservations des places en batch JDBC, puis INSERT multi-lignes.
+     * Une place déjà occupée (ou demandée deux fois dans le lot) rejette l'élément sans bloquer les autres.
+     * @return un résultat par élément, dans l'ordre de la liste
+     */
+    public List<BatchResult> createAll(List<Stationnement> entrees) throws SQLException {
+        BatchResult[] results = new BatchResult[entrees.size()];
+
+        // Réserver dans l'ordre des id de place : deux lots concurrents verrouillent dans le même ordre
+        List<Integer> ordre = new ArrayList<>();
+        for (int i = 0; i < entrees.size(); i++) {
+            Stationnement s = entrees.get(i);
+            if (s.getPlace() == null || s.getVehicule() == null || s.getDateEntree() == null) {
+                results[i] = BatchResult.rejet(0, "Place, véhicule et date d'entrée sont obligatoires.");
+            } else {
+                ordre.add(i);
+            }
+        }
+        ordre.sort(Comparator.comparingInt(i -> entrees.get(i).getPlace().getId()));
+
+        List<Integer> acceptes = new ArrayList<>();
+        STATS_CREATE_ALL.liste(() -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                try {
+                    if (!ordre.isEmpty()) {
+                        try (PreparedStatement ps = c.prepareStatement(RESERVER_PLACE_SQL)) {
+                            for (int i : ordre) {
+                                ps.setInt(1, entrees.get(i).getPlace().getId());
+                                ps.addBatch();
+                            }
+                            int[] counts = ps.executeBatch();
+                            for (int k = 0; k < counts.length; k++) {
+                                int i = ordre.get(k);
+                                if (counts[k] > 0 || counts[k] == Statement.SUCCESS_NO_INFO) {
+                                    acceptes.add(i);
+                                } else {
+                                    results[i] = BatchResult.rejet(0, "La place "
+                                            + entrees.get(i).getPlace().getNumero() + " est déjà occupée.");
+                                }
+                            }
+                        }
+                    }
+                    acceptes.sort(null);
+                    for (int from = 0; from < acceptes.size(); from += BATCH_CHUNK) {
+                        List<Integer> chunk = acceptes.subList(from, Math.min(from + BATCH_CHUNK, acceptes.size()));
+                        StringBuilder sb = new StringBuilder("INSERT INTO Stationnement (place_id, vehicule_id, dateEntree) VALUES ");
+                        for (int k = 0; k < chunk.size(); k++) sb.append(k == 0 ? "(?,?,?)" : ",(?,?,?)");
+                        try (PreparedStatement ps = c.prepareStatement(sb.toString(), Statement.RETURN_GENERATED_KEYS)) {
+                            int idx = 1;
+                            for (int i : chunk) {
+                                Stationnement s = entrees.get(i);
+                                ps.setInt(idx++, s.getPlace().getId());
+                                ps.setInt(idx++, s.getVehicule().getId());
+                                ps.setTimestamp(idx++, Timestamp.valueOf(s.getDateEntree()));
+                            }
+                            ps.executeUpdate();
+                            ResultSet rs = ps.getGeneratedKeys();
+                            for (int i : chunk) {
+                                if (rs.next()) entrees.get(i).setId(rs.getInt(1));
+                            }
+                        }
+                    }
+                    c.commit();
+                    return acceptes;
+                } catch (SQLException e) {
+                    rollbackQuietly(c);
+                    throw e;
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+
+        OccupancyIndex index = local ? OccupancyIndex.getInstance() : null;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) continue; // rejeté : l'index n'a pas à changer
+            Stationnement s = entrees.get(i);
+            s.setPlace(OccupancyIndex.copy(s.getPlace(), Place.Statut.Occupée));
+            results[i] = BatchResult.ok(s.getId());
+            if (index != null) {
+                index.markOccupee(s.getPlace().getId());
+                publierEntree(s, index);
+            }
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Enregistre un lot de sorties dans une seule transaction :
+     * SELECT ... FOR UPDATE par blocs (IN), UPDATE des stationnements en batch JDBC,
+     * puis libération des places en un UPDATE multi-lignes.
+     * Un élément sans date de sortie est rejeté sans bloquer les autres.
+     * @param sorties id du stationnement -> date de sortie
+     * @return un résultat par stationnement, dans l'ordre d'itération de la map
+     */
+    public Map<Integer, BatchResult> enregistrerSorties(Map<Integer, LocalDateTime> sorties) throws SQLException {
+        Map<Integer, BatchResult> results = new LinkedHashMap<>();
+        Map<Integer, Stationnement> lus = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (Map.Entry<Integer, LocalDateTime> e : sorties.entrySet()) {
+            if (e.getValue() == null) {
+                results.put(e.getKey(), BatchResult.rejet(e.getKey(), "La date de sortie est obligatoire."));
+            } else {
+                ids.add(e.getKey());
+            }
+        }
+        ids.sort(null);
+
+        STATS_SORTIES.mesurer(Map::size, () -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                try {
+                    Map<Integer, Long> montants = new HashMap<>();
+                    for (int from = 0; from < ids.size(); from += BATCH_CHUNK) {
+                        List<Integer> chunk = ids.subList(from, Math.min(from + BATCH_CHUNK, ids.size()));
+                        String sql = "SELECT s.id, s.place_id, s.vehicule_id, s.dateEntree, s.dateSortie, p.type, p.tarifHoraire " +
+                                     "FROM Stationnement s JOIN Place p ON p.id = s.place_id " +
+                                     "WHERE s.id IN (" + placeholders(chunk.size()) + ") FOR UPDATE";
+                        try (PreparedStatement ps = c.prepareStatement(sql)) {
+                            for (int k = 0; k < chunk.size(); k++) ps.setInt(k + 1, chunk.get(k));
+                            ResultSet rs = ps.executeQuery();
+                            while (rs.next()) {
+                                int statId = rs.getInt("id");
+                                if (rs.getTimestamp("dateSortie") != null) {
+                                    results.put(statId, BatchResult.rejet(statId, "Ce stationnement est déjà terminé."));
+                                    continue;
+                                }
+                                Place place = new Place();
+                                place.setId(rs.getInt("place_id"));
+                                place.setType(EntityCache.placeType(rs.getString("type")));
+                                place.setTarifHoraire(Money.lire(rs, "tarifHoraire"));
+                                Vehicule vehicule = new Vehicule();
+                                vehicule.setId(rs.getInt("vehicule_id"));
+                                Stationnement s = new Stationnement();
+                                s.setId(statId);
+                                s.setPlace(place);
+                                s.setVehicule(vehicule);
+                                s.setDateEntree(rs.getTimestamp("dateEntree").toLocalDateTime());
+                                s.setDateSortie(sorties.get(statId));
+                                montants.put(statId, s.calculerMontant());
+                                lus.put(statId, s);
+                            }
+                        }
+                    }
+
+                    if (!montants.isEmpty()) {
+                        try (PreparedStatement ps = c.prepareStatement(
+                                "UPDATE Stationnement SET dateSortie=?, montant=? WHERE id=? AND dateSortie IS NULL")) {
+                            for (Map.Entry<Integer, Long> e : montants.entrySet()) {
+                                ps.setTimestamp(1, Timestamp.valueOf(sorties.get(e.getKey())));
+                                Money.ecrire(ps, 2, e.getValue());
+                                ps.setInt(3, e.getKey());
+                                ps.addBatch();
+                            }
+                            ps.executeBatch();
+                        }
+                        List<Integer> places = new ArrayList<>();
+                        for (Stationnement s : lus.values()) places.add(s.getPlace().getId());
+                        for (int from = 0; from < places.size(); from += BATCH_CHUNK) {
+                            List<Integer> chunk = places.subList(from, Math.min(from + BATCH_CHUNK, places.size()));
+                            try (PreparedStatement ps = c.prepareStatement(
+                                    "UPDATE Place SET statut='Libre' WHERE id IN (" + placeholders(chunk.size()) + ")")) {
+                                for (int k = 0; k < chunk.size(); k++) ps.setInt(k + 1, chunk.get(k));
+                                ps.executeUpdate();
+                            }
+                        }
+                        try (PreparedStatement ps = c.prepareStatement(RevenueRollupDAO.AJOUTER_SQL)) {
+                            for (Map.Entry<Integer, Long> e : montants.entrySet()) {
+                                RevenueRollupDAO.bindUpsert(ps, lus.get(e.getKey()).getPlace().getId(),
+                                        sorties.get(e.getKey()).toLocalDate(), e.getValue(), 1);
+                                ps.addBatch();
+                            }
+                            ps.executeBatch();
+                        }
+                        for (Map.Entry<Integer, Long> e : montants.entrySet()) {
+                            results.put(e.getKey(), BatchResult.ok(e.getKey(), e.getValue()));
+                        }
+                    }
+                    c.commit();
+                    return montants;
+                } catch (SQLException e) {
+                    rollbackQuietly(c);
+                    throw e;
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+
+        if (local) {
+            OccupancyIndex index = OccupancyIndex.getInstance();
+            for (Stationnement s : lus.values()) index.markLibre(s.getPlace().getId());
+            for (BatchResult r : results.values()) {
+                if (r.isSucces()) {
+                    Stationnement s = lus.get(r.getStatId());
+                    publierSortie(s.getId(), s.getPlace().getId(), s.getVehicule().getId(), s.getDateEntree(),
+                            s.getDateSortie(), r.getMontant(), index);
+                }
+            }
+        }
+
+        Map<Integer, BatchResult> ordered = new LinkedHashMap<>();
+        for (Integer statId : sorties.keySet()) {
+            BatchResult r = results.get(statId);
+            ordered.put(statId, r != null ? r : BatchResult.rejet(statId, "Stationnement introuvable (id=" + statId + ")"));
+        }
+        return ordered;
     }
 
     @Override
     public void update(Stationnement s) throws SQLException {
         String sql = "UPDATE Stationnement SET place_id=?, vehicule_id=?, dateEntree=?, dateSortie=?, montant=? WHERE id=?";
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setInt(1, s.getPlace().getId());
-            ps.setInt(2, s.getVehicule().getId());
-            ps.setTimestamp(3, Timestamp.valueOf(s.getDateEntree()));
-            ps.setTimestamp(4, s.getDateSortie() != null ? Timestamp.valueOf(s.getDateSortie()) : null);
-            if (s.getMontant() != null) ps.setDouble(5, s.getMontant());
-            else ps.setNull(5, Types.DECIMAL);
-            ps.setInt(6, s.getId());
-            ps.executeUpdate();
+        int rows = STATS_UPDATE.compter(() -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                try {
+                    retirerDesAgregats(c, s.getId());
+                    int n;
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        ps.setInt(1, s.getPlace().getId());
+                        ps.setInt(2, s.getVehicule().getId());
+                        ps.setTimestamp(3, Timestamp.valueOf(s.getDateEntree()));
+                        ps.setTimestamp(4, s.getDateSortie() != null ? Timestamp.valueOf(s.getDateSortie()) : null);
+                        Money.ecrire(ps, 5, s.getMontant());
+                        ps.setInt(6, s.getId());
+                        n = ps.executeUpdate();
+                    }
+                    if (s.getDateSortie() != null && s.hasMontant()) {
+                        RevenueRollupDAO.ajouter(c, s.getPlace().getId(), s.getDateSortie().toLocalDate(), s.getMontant());
+                    }
+                    c.commit();
+                    return n;
+                } catch (SQLException e) {
+                    rollbackQuietly(c);
+                    throw e;
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (rows > 0 && local) {
+            AuditLog.tracer(AuditLog.MODIF, s.getId(), s.getPlace().getId(), s.getVehicule().getId(),
+                    s.getDateEntree(), s.getDateSortie(), s.getMontant());
+            AnalyticsStore.modification(s);
         }
     }
 
     @Override
     public void delete(int id) throws SQLException {
-        try (PreparedStatement ps = conn().prepareStatement("DELETE FROM Stationnement WHERE id=?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
+        int rows = STATS_DELETE.compter(() -> {
+            try (Connection c = conn()) {
+                c.setAutoCommit(false);
+                try {
+                    retirerDesAgregats(c, id);
+                    int n;
+                    try (PreparedStatement ps = c.prepareStatement("DELETE FROM Stationnement WHERE id=?")) {
+                        ps.setInt(1, id);
+                        n = ps.executeUpdate();
+                    }
+                    c.commit();
+                    return n;
+                } catch (SQLException e) {
+                    rollbackQuietly(c);
+                    throw e;
+                }
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (rows > 0 && local) {
+            AuditLog.tracer(AuditLog.SUPPR, id, 0, 0, null, null, Money.AUCUN);
+            AnalyticsStore.suppression(id);
+        }
+    }
+
+    // ---- Événements, journal d'audit et entrepôt analytique (après validation de la transaction) ----
+
+    /** Publie l'entrée et le passage de la place à "Occupée". */
+    private static void publierEntree(Stationnement s, OccupancyIndex index) {
+        AuditLog.tracer(AuditLog.ENTREE, s.getId(), s.getPlace().getId(), s.getVehicule().getId(),
+                s.getDateEntree(), null, Money.AUCUN);
+        Place place = index.get(s.getPlace().getId());
+        if (place == null) place = s.getPlace();
+        EventBus bus = EventBus.getInstance();
+        bus.publish(new PlaceChanged(place.getId(), place));
+        bus.publish(new SessionOpened(new Stationnement(s.getId(), place, s.getVehicule(), s.getDateEntree(), null, Money.AUCUN)));
+    }
+
+    /** Publie la sortie et la libération de la place. */
+    private static void publierSortie(int statId, int placeId, int vehiculeId, LocalDateTime dateEntree,
+                                      LocalDateTime dateSortie, long montant, OccupancyIndex index) {
+        AuditLog.tracer(AuditLog.SORTIE, statId, placeId, vehiculeId, dateEntree, dateSortie, montant);
+        Place place = index.get(placeId);
+        AnalyticsStore.sortie(statId, placeId, vehiculeId, dateEntree, dateSortie, montant,
+                place != null ? place.getType() : null);
+        EventBus bus = EventBus.getInstance();
+        bus.publish(new SessionClosed(statId, placeId, dateSortie, montant));
+        if (place != null) bus.publish(new PlaceChanged(placeId, place));
+    }
+
+    /** Verrouille le stationnement et retire son montant actuel des agrégats s'il est terminé. */
+    private static void retirerDesAgregats(Connection c, int statId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(LOCK_MONTANT_SQL)) {
+            ps.setInt(1, statId);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                Timestamp sortie = rs.getTimestamp("dateSortie");
+                long montant = Money.lire(rs, "montant");
+                if (sortie != null && montant != Money.AUCUN) {
+                    RevenueRollupDAO.retirer(c, rs.getInt("place_id"), sortie.toLocalDateTime().toLocalDate(), montant);
+                }
+            }
         }
     }
 
     @Override
     public Stationnement findById(int id) throws SQLException {
         String sql = buildSelectSql("WHERE s.id=?");
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return mapRow(rs);
-        }
-        return null;
+        return STATS_FIND_BY_ID.ligne(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? mapRow(rs) : null;
+            }
+        });
     }
 
     @Override
     public List<Stationnement> findAll() throws SQLException {
-        List<Stationnement> list = new ArrayList<>();
-        try (Statement st = conn().createStatement();
-             ResultSet rs = st.executeQuery(buildSelectSql("ORDER BY s.dateEntree DESC"))) {
-            while (rs.next()) list.add(mapRow(rs));
-        }
-        return list;
+        return STATS_FIND_ALL.liste(() -> {
+            List<Stationnement> list = new ArrayList<>();
+            try (Connection c = lecture();
+                 Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(buildSelectSql("ORDER BY s.dateEntree DESC"))) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
     }
 
     /** Historique des stationnements pour un véhicule donné. */
     public List<Stationnement> findByVehicule(int vehiculeId) throws SQLException {
-        List<Stationnement> list = new ArrayList<>();
-        try (PreparedStatement ps = conn().prepareStatement(
-                buildSelectSql("WHERE s.vehicule_id=? ORDER BY s.dateEntree DESC"))) {
-            ps.setInt(1, vehiculeId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) list.add(mapRow(rs));
-        }
-        return list;
+        return STATS_FIND_BY_VEHICULE.liste(() -> {
+            List<Stationnement> list = new ArrayList<>();
+            try (Connection c = lecture();
+                 PreparedStatement ps = c.prepareStatement(FIND_BY_VEHICULE_SQL)) {
+                ps.setInt(1, vehiculeId);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
     }
 
     /** Stationnements en cours (non terminés). */
     public List<Stationnement> findEnCours() throws SQLException {
-        List<Stationnement> list = new ArrayList<>();
-        try (Statement st = conn().createStatement();
-             ResultSet rs = st.executeQuery(buildSelectSql("WHERE s.dateSortie IS NULL ORDER BY s.dateEntree"))) {
-            while (rs.next()) list.add(mapRow(rs));
-        }
-        return list;
+        return STATS_FIND_EN_COURS.liste(() -> {
+            List<Stationnement> list = new ArrayList<>();
+            try (Connection c = conn();
+                 Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(FIND_EN_COURS_SQL)) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
+    }
+
+    /** Stationnement en cours sur une place, ou null si elle est libre. */
+    public Stationnement findEnCoursParPlace(int placeId) throws SQLException {
+        return STATS_FIND_EN_COURS_PLACE.ligne(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(FIND_EN_COURS_PLACE_SQL)) {
+                ps.setInt(1, placeId);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? mapRow(rs) : null;
+            }
+        });
+    }
+
+    /**
+     * Vrai si cette entrée (place, véhicule, date à la seconde) est déjà enregistrée :
+     * permet de rejouer un journal d'entrées sans doublon.
+     */
+    public boolean existeEntree(int placeId, int vehiculeId, LocalDateTime dateEntree) throws SQLException {
+        return STATS_EXISTE_ENTREE.mesurer(existe -> existe ? 1 : 0, () -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(EXISTE_ENTREE_SQL)) {
+                ps.setInt(1, vehiculeId);
+                ps.setTimestamp(2, Timestamp.valueOf(dateEntree));
+                ps.setInt(3, placeId);
+                return ps.executeQuery().next();
+            }
+        });
     }
 
     /** Filtrage avancé : type de place, période, statut (en cours / terminé). */
     public List<Stationnement> findFiltered(String typePlaceFilter, String statutFilter,
                                              String dateDebutFilter, String dateFinFilter) throws SQLException {
-        List<Stationnement> list = new ArrayList<>();
-        StringBuilder sb = new StringBuilder(buildSelectSql("WHERE 1=1"));
+        StationnementFilter f = new StationnementFilter(typePlaceFilter, statutFilter, dateDebutFilter, dateFinFilter, null);
+        List<Object> params = new ArrayList<>();
+        String sql = filteredSql(f, params);
 
+        return STATS_FIND_FILTERED.liste(() -> {
+            List<Stationnement> list = new ArrayList<>();
+            try (Connection c = lecture();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                bind(ps, params);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
+    }
+
+    /** Reçoit les stationnements lus en flux par {@link #parcourir}. */
+    @FunctionalInterface
+    public interface LigneHandler {
+        void accept(Stationnement s) throws IOException;
+    }
+
+    /**
+     * Parcourt en flux les stationnements du filtre, par date d'entrée croissante, sans les garder en mémoire :
+     * le pilote MySQL transmet les lignes une à une (ResultSet en avant seule, fetchSize = Integer.MIN_VALUE).
+     * La connexion reste empruntée pendant tout le parcours ; le handler ne doit pas appeler d'autre DAO.
+     * Un thread interrompu arrête le parcours (connexion coupée) avec une SQLException ; une exception du handler
+     * coupe aussi la connexion avant d'être propagée.
+     * @return nombre de lignes transmises
+     */
+    public long parcourir(StationnementFilter f, LigneHandler handler) throws SQLException, IOException {
+        List<Object> params = new ArrayList<>();
+        String sql = exportSql(f, params);
+
+        return STATS_PARCOURIR.<Long, SQLException, IOException>mesurer(n -> (int) Math.min(n, Integer.MAX_VALUE), () -> {
+            try (Connection c = lecture();
+                 PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+                bind(ps, params);
+                long n = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    // Fermer un ResultSet en flux lirait toutes les lignes restantes : sur échec du handler ou
+                    // interruption, la connexion est coupée (le pool ne la réutilise pas)
+                    while (rs.next()) {
+                        try {
+                            handler.accept(mapRow(rs));
+                        } catch (IOException | RuntimeException e) {
+                            try {
+                                c.abort(Runnable::run);
+                            } catch (SQLException ae) {
+                                e.addSuppressed(ae);
+                            }
+                            throw e;
+                        }
+                        if ((++n & 1023) == 0 && Thread.currentThread().isInterrupted()) {
+                            c.abort(Runnable::run);
+                            throw new SQLException("Parcours interrompu après " + n + " lignes.");
+                        }
+                    }
+                }
+                return n;
+            }
+        });
+    }
+
+    // ---- Pagination par clé (dateEntree DESC, id DESC) ----
+
+    /** Nombre de stationnements correspondant au filtre. */
+    public int countFiltered(StationnementFilter f) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = countSql(f, params);
+        return STATS_COUNT_FILTERED.mesurer(count -> 1, () -> {
+            try (Connection c = lecture();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                bind(ps, params);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    /**
+     * Page de stationnements commençant strictement après {@code after} (null = début de l'historique).
+     * La recherche se fait sur l'index (dateEntree, id) : le coût ne dépend pas de la profondeur de la page.
+     */
+    public List<Stationnement> findPage(StationnementFilter f, PageCursor after, int limit) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = pageSql(f, after, limit, params);
+
+        return STATS_FIND_PAGE.liste(() -> {
+            List<Stationnement> list = new ArrayList<>(limit);
+            try (Connection c = lecture();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                bind(ps, params);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
+    }
+
+    /**
+     * Position atteinte en avançant de {@code skip} lignes (skip >= 1) après {@code from} :
+     * permet de sauter directement à une page lointaine sans charger les lignes intermédiaires.
+     * @return null si l'historique compte moins de lignes
+     */
+    public PageCursor seek(StationnementFilter f, PageCursor from, int skip) throws SQLException {
         List<Object> params = new ArrayList<>();
-        if (typePlaceFilter != null && !typePlaceFilter.isEmpty()) {
+        String sql = seekSql(f, from, skip, params);
+
+        return STATS_SEEK.ligne(() -> {
+            try (Connection c = lecture();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                bind(ps, params);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? new PageCursor(rs.getTimestamp(1).toLocalDateTime(), rs.getInt(2)) : null;
+            }
+        });
+    }
+
+    /** Revenus groupés par mois (pour le graphique), lus dans les agrégats RevenueRollup. */
+    public List<Object[]> getRevenusParMois() throws SQLException {
+        return STATS_REVENUS_PAR_MOIS.liste(rollupDAO::getRevenusParMois);
+    }
+
+    // ---- Utilitaires ----
+
+    /** Contrôle anti-chevauchement, servi par l'index d'occupation en mémoire (site local). */
+    public boolean isPlaceOccupee(int placeId) throws SQLException {
+        if (!local) return findEnCoursParPlace(placeId) != null;
+        return STATS_PLACE_OCCUPEE.mesurer(occupee -> 1, () -> OccupancyIndex.getInstance().isOccupee(placeId));
+    }
+
+    // ---- Construction des requêtes filtrées (paramètres ajoutés à params) ----
+
+    String filteredSql(StationnementFilter f, List<Object> params) throws SQLException {
+        StringBuilder sb = new StringBuilder(buildSelectSql("WHERE 1=1"));
+        appendFilter(sb, params, f, vehiculesPour(f));
+        return sb.append(" ORDER BY s.dateEntree DESC").toString();
+    }
+
+    String exportSql(StationnementFilter f, List<Object> params) throws SQLException {
+        StringBuilder sb = new StringBuilder(buildSelectSql("WHERE 1=1"));
+        appendFilter(sb, params, f, vehiculesPour(f));
+        return sb.append(" ORDER BY s.dateEntree, s.id").toString();
+    }
+
+    String countSql(StationnementFilter f, List<Object> params) throws SQLException {
+        StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM Stationnement s ");
+        int[] vehicules = vehiculesPour(f);
+        appendJoins(sb, f, vehicules);
+        appendFilter(sb, params, f, vehicules);
+        return sb.toString();
+    }
+
+    String pageSql(StationnementFilter f, PageCursor after, int limit, List<Object> params) throws SQLException {
+        int[] vehicules = vehiculesPour(f);
+        StringBuilder sb = new StringBuilder(buildSelectSql(peuSelectif(f, vehicules) ? PARCOURS_PAR_DATE : "", "WHERE 1=1"));
+        appendFilter(sb, params, f, vehicules);
+        appendSeek(sb, params, after);
+        params.add(limit);
+        return sb.append(" ORDER BY s.dateEntree DESC, s.id DESC LIMIT ?").toString();
+    }
+
+    String seekSql(StationnementFilter f, PageCursor from, int skip, List<Object> params) throws SQLException {
+        int[] vehicules = vehiculesPour(f);
+        StringBuilder sb = new StringBuilder("SELECT s.dateEntree, s.id FROM Stationnement s ");
+        if (peuSelectif(f, vehicules)) sb.append(PARCOURS_PAR_DATE);
+        appendJoins(sb, f, vehicules);
+        appendFilter(sb, params, f, vehicules);
+        appendSeek(sb, params, from);
+        params.add(skip - 1);
+        return sb.append(" ORDER BY s.dateEntree DESC, s.id DESC LIMIT 1 OFFSET ?").toString();
+    }
+
+    /**
+     * Véhicules correspondant au motif de matricule du filtre, résolus par l'index trigramme
+     * (complété au préalable des véhicules créés sur d'autres postes).
+     * @return null si le filtre n'a pas de matricule, si le motif est trop peu sélectif ou si le site
+     *         n'est pas le site local (LIKE en base)
+     */
+    private int[] vehiculesPour(StationnementFilter f) throws SQLException {
+        if (f.getMatricule() == null || !local) return null;
+        PlateIndex index = PlateIndex.getInstance();
+        index.rattraper();
+        int[] ids = index.find(f.getMatricule());
+        return ids.length <= MAX_VEHICULES_IN ? ids : null;
+    }
+
+    /** Motif de matricule correspondant à une part importante des véhicules. */
+    private boolean peuSelectif(StationnementFilter f, int[] vehicules) throws SQLException {
+        if (f.getMatricule() == null || !local) return false;
+        return vehicules == null || vehicules.length * 100L >= PEU_SELECTIF_PCT * (long) PlateIndex.getInstance().size();
+    }
+
+    /** Jointures nécessaires aux seuls critères utilisés (requêtes sans colonnes Place / Vehicule). */
+    private static void appendJoins(StringBuilder sb, StationnementFilter f, int[] vehicules) {
+        if (f.getTypePlace() != null) sb.append("JOIN Place p ON s.place_id = p.id ");
+        if (f.getMatricule() != null && vehicules == null) sb.append("JOIN Vehicule v ON s.vehicule_id = v.id ");
+        sb.append("WHERE 1=1");
+    }
+
+    /**
+     * Ajoute les critères du filtre à la clause WHERE (alias s, p, v).
+     * @param vehicules véhicules du motif de matricule (voir {@link #vehiculesPour}), null = LIKE sur v.matricule
+     */
+    private static void appendFilter(StringBuilder sb, List<Object> params, StationnementFilter f, int[] vehicules) {
+        if (f.getTypePlace() != null) {
             sb.append(" AND p.type=?");
-            params.add(typePlaceFilter);
+            params.add(f.getTypePlace());
         }
-        if ("En cours".equals(statutFilter)) {
+        if ("En cours".equals(f.getStatut())) {
             sb.append(" AND s.dateSortie IS NULL");
-        } else if ("Terminé".equals(statutFilter)) {
+        } else if ("Terminé".equals(f.getStatut())) {
             sb.append(" AND s.dateSortie IS NOT NULL");
         }
-        if (dateDebutFilter != null && !dateDebutFilter.isEmpty()) {
-            sb.append(" AND DATE(s.dateEntree) >= ?");
-            params.add(dateDebutFilter);
+        // Intervalle semi-ouvert [début 00:00, fin + 1 jour 00:00) sur la colonne brute : l'index reste utilisable
+        if (f.getDateDebut() != null) {
+            sb.append(" AND s.dateEntree >= ?");
+            params.add(Timestamp.valueOf(parseDate(f.getDateDebut()).atStartOfDay()));
         }
-        if (dateFinFilter != null && !dateFinFilter.isEmpty()) {
-            sb.append(" AND DATE(s.dateEntree) <= ?");
-            params.add(dateFinFilter);
+        if (f.getDateFin() != null) {
+            sb.append(" AND s.dateEntree < ?");
+            params.add(Timestamp.valueOf(parseDate(f.getDateFin()).plusDays(1).atStartOfDay()));
         }
-        sb.append(" ORDER BY s.dateEntree DESC");
-
-        try (PreparedStatement ps = conn().prepareStatement(sb.toString())) {
-            for (int i = 0; i < params.size(); i++) {
-                ps.setObject(i + 1, params.get(i));
+        if (vehicules != null) {
+            // Motif résolu en mémoire : la recherche passe par l'index (vehicule_id, dateEntree)
+            if (vehicules.length == 0) {
+                sb.append(" AND 1=0");
+            } else {
+                sb.append(" AND s.vehicule_id IN (").append(placeholders(vehicules.length)).append(')');
+                for (int id : vehicules) params.add(id);
             }
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) list.add(mapRow(rs));
+        } else if (f.getMatricule() != null) {
+            sb.append(" AND v.matricule LIKE ?");
+            String motif = f.getMatricule().toUpperCase()
+                    .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            params.add("%" + motif + "%");
         }
-        return list;
     }
 
-    /** Revenus groupés par mois (pour le graphique). */
-    public List<Object[]> getRevenusParMois() throws SQLException {
-        List<Object[]> result = new ArrayList<>();
-        String sql = "SELECT DATE_FORMAT(dateSortie,'%Y-%m') AS mois, SUM(montant) AS total " +
-                     "FROM Stationnement WHERE dateSortie IS NOT NULL " +
-                     "GROUP BY mois ORDER BY mois";
-        try (Statement st = conn().createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                result.add(new Object[]{rs.getString("mois"), rs.getDouble("total")});
-            }
+    private static LocalDate parseDate(String d) {
+        try {
+            return LocalDate.parse(d);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Date invalide : " + d + " (format attendu yyyy-mm-dd)");
         }
-        return result;
     }
 
-    // ---- Utilitaires ----
+    private static void appendSeek(StringBuilder sb, List<Object> params, PageCursor after) {
+        if (after == null) return;
+        Timestamp ts = Timestamp.valueOf(after.getDateEntree());
+        sb.append(" AND (s.dateEntree < ? OR (s.dateEntree = ? AND s.id < ?))");
+        params.add(ts);
+        params.add(ts);
+        params.add(after.getId());
+    }
 
-    public boolean isPlaceOccupee(int placeId) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM Stationnement WHERE place_id=? AND dateSortie IS NULL";
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setInt(1, placeId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getInt(1) > 0;
+    private static void bind(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
         }
-        return false;
     }
 
-    private String buildSelectSql(String whereClause) {
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 2);
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ",?");
+        return sb.toString();
+    }
+
+    /** Transaction annulée par le serveur pour rompre un interblocage (SQLState 40001). */
+    private static boolean interblocage(SQLException e) {
+        return e instanceof SQLTransactionRollbackException || "40001".equals(e.getSQLState());
+    }
+
+    private static void rollbackQuietly(Connection c) {
+        try {
+            c.rollback();
+        } catch (SQLException ignored) {}
+    }
+
+    static String buildSelectSql(String whereClause) {
+        return buildSelectSql("", whereClause);
+    }
+
+    /** @param indexHint indication d'index placée après l'alias de Stationnement ("" = aucune) */
+    private static String buildSelectSql(String indexHint, String whereClause) {
         return "SELECT s.id, s.dateEntree, s.dateSortie, s.montant, " +
-               "p.id AS pid, p.numero, p.type AS ptype, p.statut, p.tarifHoraire, " +
+               "p.id AS pid, p.numero, p.type AS ptype, p.statut, p.tarifHoraire, p.zone, p.niveau, p.distance, " +
                "v.id AS vid, v.matricule, v.marque, v.categorie " +
-               "FROM Stationnement s " +
+               "FROM Stationnement s " + indexHint +
                "JOIN Place p ON s.place_id = p.id " +
                "JOIN Vehicule v ON s.vehicule_id = v.id " +
                whereClause;
     }
 
-    private Stationnement mapRow(ResultSet rs) throws SQLException {
-        Place place = new Place(
-                rs.getInt("pid"), rs.getString("numero"),
-                Place.Type.valueOf(rs.getString("ptype")),
-                Place.Statut.valueOf(rs.getString("statut")),
-                rs.getDouble("tarifHoraire"));
-
-        Vehicule vehicule = new Vehicule(
-                rs.getInt("vid"), rs.getString("matricule"),
-                rs.getString("marque"),
-                Vehicule.Categorie.valueOf(rs.getString("categorie")));
+    Stationnement mapRow(ResultSet rs) throws SQLException {
+        // Instances partagées : une seule Place / un seul Vehicule par id pour tout l'historique (site local)
+        Place    place    = local ? EntityCache.place(rs, "pid", "ptype") : EntityCache.nouvellePlace(rs, "pid", "ptype");
+        Vehicule vehicule = local ? EntityCache.vehicule(rs, "vid") : EntityCache.nouveauVehicule(rs, "vid");
 
         Timestamp entree  = rs.getTimestamp("dateEntree");
         Timestamp sortie  = rs.getTimestamp("dateSortie");
-        double    montant = rs.getDouble("montant");
+        long      montant = Money.lire(rs, "montant");
 
         return new Stationnement(
                 rs.getInt("id"), place, vehicule,
                 entree != null ? entree.toLocalDateTime() : null,
                 sortie != null ? sortie.toLocalDateTime() : null,
-                rs.wasNull() ? null : montant);
+                montant);
     }
 }
@@ -0,0 +1,37 @@
+package parking.dao;
+
+/**
+ * Critères de recherche des stationnements (null ou vide = pas de filtre).
+ *  - typePlace : "Auto" / "Moto" / "PMR"
+ *  - statut    : "En cours" / "Terminé"
+ *  - dateDebut, dateFin : bornes incluses au format yyyy-mm-dd, sur la date d'entrée
+ *  - matricule : fragment de matricule
+ */
+public class StationnementFilter {
+
+    public static final StationnementFilter AUCUN = new StationnementFilter(null, null, null, null, null);
+
+    private final String typePlace;
+    private final String statut;
+    private final String dateDebut;
+    private final String dateFin;
+    private final String matricule;
+
+    public StationnementFilter(String typePlace, String statut, String dateDebut, String dateFin, String matricule) {
+        this.typePlace = blankToNull(typePlace);
+        this.statut    = blankToNull(statut);
+        this.dateDebut = blankToNull(dateDebut);
+        this.dateFin   = blankToNull(dateFin);
+        this.matricule = blankToNull(matricule);
+    }
+
+    public String getTypePlace() { return typePlace; }
+    public String getStatut()    { return statut; }
+    public String getDateDebut() { return dateDebut; }
+    public String getDateFin()   { return dateFin; }
+    public String getMatricule() { return matricule; }
+
+    private static String blankToNull(String s) {
+        return s == null || s.trim().isEmpty() ? null : s.trim();
+    }
+}
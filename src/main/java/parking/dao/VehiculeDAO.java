@@ -1,89 +1,186 @@
 package parking.dao;
 
 import parking.model.Vehicule;
+import parking.util.DaoMetrics;
 import parking.util.DatabaseConnection;
+import parking.util.LruCache;
+import parking.util.MethodStats;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * DAO pour l'entité Véhicule.
+ * Chaque instance travaille sur un site ; les caches et l'index des matricules ne concernent que le site local.
  */
 public class VehiculeDAO implements IDao<Vehicule> {
 
+    private static final MethodStats STATS_CREATE            = DaoMetrics.stats("VehiculeDAO.create");
+    private static final MethodStats STATS_UPDATE            = DaoMetrics.stats("VehiculeDAO.update");
+    private static final MethodStats STATS_DELETE            = DaoMetrics.stats("VehiculeDAO.delete");
+    private static final MethodStats STATS_FIND_BY_ID        = DaoMetrics.stats("VehiculeDAO.findById");
+    private static final MethodStats STATS_FIND_ALL          = DaoMetrics.stats("VehiculeDAO.findAll");
+    private static final MethodStats STATS_FIND_BY_MATRICULE = DaoMetrics.stats("VehiculeDAO.findByMatricule");
+
+    /**
+     * Cache des recherches par matricule (clé normalisée), partagé par toutes les instances.
+     * Un matricule inconnu est aussi mis en cache, pour une durée courte : un véhicule
+     * créé depuis un autre poste finit par être vu. Un véhicule trouvé expire lui aussi, plus tard :
+     * seules les modifications de ce poste invalident le cache, pas celles des autres.
+     */
+    private static final LruCache<String, Optional<Vehicule>> CACHE_MATRICULES = DaoMetrics.register(
+            new LruCache<>("matricules", Integer.getInteger("parking.cache.matricules.max", 1024)));
+    private static final long INCONNU_TTL_NANOS =
+            TimeUnit.SECONDS.toNanos(Long.getLong("parking.cache.matricules.inconnuTtlSec", 30));
+    private static final long CONNU_TTL_NANOS =
+            TimeUnit.SECONDS.toNanos(Long.getLong("parking.cache.matricules.ttlSec", 300));
+
+    private final String  site;
+    private final boolean local;
+
+    /** DAO du site local. */
+    public VehiculeDAO() {
+        this(DatabaseConnection.getSiteLocal());
+    }
+
+    public VehiculeDAO(String site) {
+        this.site  = site;
+        this.local = DatabaseConnection.isLocal(site);
+    }
+
+    public String getSite() { return site; }
+
+    /** Emprunte une connexion au pool du site ; à fermer après usage. */
     private Connection conn() throws SQLException {
-        return DatabaseConnection.getInstance();
+        return DatabaseConnection.getConnection(site);
     }
 
     @Override
     public void create(Vehicule v) throws SQLException {
         String sql = "INSERT INTO Vehicule (matricule, marque, categorie) VALUES (?,?,?)";
-        try (PreparedStatement ps = conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, v.getMatricule());
-            ps.setString(2, v.getMarque());
-            ps.setString(3, v.getCategorie().name());
-            ps.executeUpdate();
-            ResultSet rs = ps.getGeneratedKeys();
-            if (rs.next()) v.setId(rs.getInt(1));
-        }
+        STATS_CREATE.compter(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, v.getMatricule());
+                ps.setString(2, v.getMarque());
+                ps.setString(3, v.getCategorie().name());
+                int rows = ps.executeUpdate();
+                ResultSet rs = ps.getGeneratedKeys();
+                if (rs.next()) v.setId(rs.getInt(1));
+                return rows;
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (!local) return;
+        CACHE_MATRICULES.invalidate(normaliser(v.getMatricule()));
+        PlateIndex.getInstance().put(v.getId(), v.getMatricule());
+        AnalyticsStore.vehicule(v.getId(), v.getCategorie());
     }
 
     @Override
     public void update(Vehicule v) throws SQLException {
         String sql = "UPDATE Vehicule SET matricule=?, marque=?, categorie=? WHERE id=?";
-        try (PreparedStatement ps = conn().prepareStatement(sql)) {
-            ps.setString(1, v.getMatricule());
-            ps.setString(2, v.getMarque());
-            ps.setString(3, v.getCategorie().name());
-            ps.setInt(4, v.getId());
-            ps.executeUpdate();
-        }
+        STATS_UPDATE.compter(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, v.getMatricule());
+                ps.setString(2, v.getMarque());
+                ps.setString(3, v.getCategorie().name());
+                ps.setInt(4, v.getId());
+                return ps.executeUpdate();
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (!local) return;
+        EntityCache.VEHICULES.invalidate(v.getId());
+        CACHE_MATRICULES.invalidateValues(o -> o.isPresent() && o.get().getId() == v.getId());
+        CACHE_MATRICULES.invalidate(normaliser(v.getMatricule()));
+        PlateIndex.getInstance().put(v.getId(), v.getMatricule());
+        AnalyticsStore.vehicule(v.getId(), v.getCategorie());
     }
 
     @Override
     public void delete(int id) throws SQLException {
-        try (PreparedStatement ps = conn().prepareStatement("DELETE FROM Vehicule WHERE id=?")) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
-        }
+        STATS_DELETE.compter(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement("DELETE FROM Vehicule WHERE id=?")) {
+                ps.setInt(1, id);
+                return ps.executeUpdate();
+            }
+        });
+        DatabaseConnection.ecritureValidee(site);
+        if (!local) return;
+        EntityCache.VEHICULES.invalidate(id);
+        CACHE_MATRICULES.invalidateValues(o -> o.isPresent() && o.get().getId() == id);
+        PlateIndex.getInstance().remove(id);
     }
 
     @Override
     public Vehicule findById(int id) throws SQLException {
-        try (PreparedStatement ps = conn().prepareStatement("SELECT * FROM Vehicule WHERE id=?")) {
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return mapRow(rs);
-        }
-        return null;
+        return STATS_FIND_BY_ID.ligne(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement("SELECT * FROM Vehicule WHERE id=?")) {
+                ps.setInt(1, id);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? mapRow(rs) : null;
+            }
+        });
     }
 
     @Override
     public List<Vehicule> findAll() throws SQLException {
-        List<Vehicule> list = new ArrayList<>();
-        try (Statement st = conn().createStatement();
-             ResultSet rs = st.executeQuery("SELECT * FROM Vehicule ORDER BY matricule")) {
-            while (rs.next()) list.add(mapRow(rs));
-        }
-        return list;
+        return STATS_FIND_ALL.liste(() -> {
+            List<Vehicule> list = new ArrayList<>();
+            try (Connection c = conn();
+                 Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT * FROM Vehicule ORDER BY matricule")) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
+            return list;
+        });
     }
 
+    /** Recherche par matricule, servie par le cache (site local) si le matricule a déjà été demandé. */
     public Vehicule findByMatricule(String matricule) throws SQLException {
-        try (PreparedStatement ps = conn().prepareStatement("SELECT * FROM Vehicule WHERE matricule=?")) {
-            ps.setString(1, matricule);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return mapRow(rs);
-        }
-        return null;
+        String key = normaliser(matricule);
+        if (!local) return selectByMatricule(key);
+        Optional<Vehicule> cached = CACHE_MATRICULES.get(key);
+        if (cached != null) return cached.orElse(null);
+
+        long stamp = CACHE_MATRICULES.stamp();
+        Vehicule v = selectByMatricule(key);
+        CACHE_MATRICULES.put(key, Optional.ofNullable(v), v == null ? INCONNU_TTL_NANOS : CONNU_TTL_NANOS, stamp);
+        return v;
+    }
+
+    public static LruCache<String, Optional<Vehicule>> getCacheMatricules() {
+        return CACHE_MATRICULES;
+    }
+
+    /**
+     * Clé de cache : même équivalence que la base (collation insensible à la casse,
+     * espaces de fin ignorés). Les espaces de tête sont conservés : " AB-123" n'est pas "AB-123".
+     */
+    static String normaliser(String matricule) {
+        return matricule == null ? "" : matricule.stripTrailing().toUpperCase(Locale.ROOT);
+    }
+
+    private Vehicule selectByMatricule(String matricule) throws SQLException {
+        return STATS_FIND_BY_MATRICULE.ligne(() -> {
+            try (Connection c = conn();
+                 PreparedStatement ps = c.prepareStatement("SELECT * FROM Vehicule WHERE matricule=?")) {
+                ps.setString(1, matricule);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? mapRow(rs) : null;
+            }
+        });
     }
 
     private Vehicule mapRow(ResultSet rs) throws SQLException {
-        return new Vehicule(
-                rs.getInt("id"),
-                rs.getString("matricule"),
-                rs.getString("marque"),
-                Vehicule.Categorie.valueOf(rs.getString("categorie"))
-        );
+        return local ? EntityCache.vehicule(rs, "id") : EntityCache.nouveauVehicule(rs, "id");
     }
 }
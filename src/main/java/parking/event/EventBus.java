@@ -0,0 +1,100 @@
+package parking.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bus d'événements interne à l'application : les DAO publient les changements après écriture réussie
+ * ({@link PlaceChanged}, {@link SessionOpened}, {@link SessionClosed}), les écrans s'y abonnent
+ * pour mettre à jour leurs lignes sans relire la base.
+ *
+ * Un abonné reçoit les événements de son type (et des sous-types) par l'exécuteur donné à l'abonnement,
+ * par exemple {@code SwingUtilities::invokeLater} pour un composant Swing.
+ * Une erreur dans un abonné est journalisée ; elle n'interrompt ni la publication ni l'appel DAO.
+ */
+public final class EventBus {
+
+    private static final Logger LOG = Logger.getLogger(EventBus.class.getName());
+
+    private static final EventBus INSTANCE = new EventBus();
+
+    /** Un abonnement, à annuler quand l'abonné disparaît. */
+    public interface Subscription {
+        void cancel();
+    }
+
+    private static final class Subscriber<E> {
+        final Class<E>            type;
+        final Executor            executor;
+        final Consumer<? super E> listener;
+
+        Subscriber(Class<E> type, Executor executor, Consumer<? super E> listener) {
+            this.type     = type;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        void deliver(Object event) {
+            E e = type.cast(event);
+            executor.execute(() -> {
+                try {
+                    listener.accept(e);
+                } catch (RuntimeException ex) {
+                    LOG.log(Level.WARNING, "Erreur dans un abonné à " + type.getSimpleName(), ex);
+                }
+            });
+        }
+    }
+
+    /** Abonnés, dans l'ordre d'abonnement (sous le verrou du bus). */
+    private final List<Subscriber<?>> subscribers = new ArrayList<>();
+    /** Abonnés par classe d'événement publiée, vidé à chaque abonnement / désabonnement. */
+    private final Map<Class<?>, List<Subscriber<?>>> byClass = new ConcurrentHashMap<>();
+
+    private EventBus() {}
+
+    public static EventBus getInstance() {
+        return INSTANCE;
+    }
+
+    /** Abonne {@code listener} aux événements de type {@code type}, livrés dans le thread de publication. */
+    public <E> Subscription subscribe(Class<E> type, Consumer<? super E> listener) {
+        return subscribe(type, Runnable::run, listener);
+    }
+
+    /** Abonne {@code listener} aux événements de type {@code type}, livrés par {@code executor}. */
+    public <E> Subscription subscribe(Class<E> type, Executor executor, Consumer<? super E> listener) {
+        Subscriber<E> s = new Subscriber<>(type, executor, listener);
+        synchronized (this) {
+            subscribers.add(s);
+            byClass.clear();
+        }
+        return () -> {
+            synchronized (this) {
+                subscribers.remove(s);
+                byClass.clear();
+            }
+        };
+    }
+
+    /** Transmet l'événement à ses abonnés, dans l'ordre d'abonnement. */
+    public void publish(Object event) {
+        List<Subscriber<?>> targets = byClass.get(event.getClass());
+        if (targets == null) targets = targetsFor(event.getClass());
+        for (Subscriber<?> s : targets) s.deliver(event);
+    }
+
+    private synchronized List<Subscriber<?>> targetsFor(Class<?> c) {
+        return byClass.computeIfAbsent(c, k -> {
+            List<Subscriber<?>> list = new ArrayList<>();
+            for (Subscriber<?> s : subscribers) if (s.type.isAssignableFrom(k)) list.add(s);
+            return List.copyOf(list);
+        });
+    }
+}
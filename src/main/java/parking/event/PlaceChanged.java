@@ -0,0 +1,24 @@
+package parking.event;
+
+import parking.model.Place;
+
+/**
+ * Une place a été créée, modifiée, supprimée, occupée ou libérée.
+ * La place transmise est une copie : l'abonné peut la garder.
+ */
+public final class PlaceChanged {
+
+    private final int   placeId;
+    private final Place place;
+
+    /** @param place état après changement, null si la place a été supprimée */
+    public PlaceChanged(int placeId, Place place) {
+        this.placeId = placeId;
+        this.place   = place;
+    }
+
+    public int     getPlaceId()  { return placeId; }
+    /** État de la place après changement (null si supprimée). */
+    public Place   getPlace()    { return place; }
+    public boolean isSupprimee() { return place == null; }
+}
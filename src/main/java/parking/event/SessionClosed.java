@@ -0,0 +1,24 @@
+package parking.event;
+
+import java.time.LocalDateTime;
+
+/** Un stationnement est terminé (sortie enregistrée, place libérée). */
+public final class SessionClosed {
+
+    private final int           stationnementId;
+    private final int           placeId;
+    private final LocalDateTime dateSortie;
+    private final long          montant;   // centimes
+
+    public SessionClosed(int stationnementId, int placeId, LocalDateTime dateSortie, long montant) {
+        this.stationnementId = stationnementId;
+        this.placeId         = placeId;
+        this.dateSortie      = dateSortie;
+        this.montant         = montant;
+    }
+
+    public int           getStationnementId() { return stationnementId; }
+    public int           getPlaceId()         { return placeId; }
+    public LocalDateTime getDateSortie()      { return dateSortie; }
+    public long          getMontant()         { return montant; }
+}
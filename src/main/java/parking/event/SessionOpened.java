@@ -0,0 +1,16 @@
+package parking.event;
+
+import parking.model.Stationnement;
+
+/** Un stationnement a commencé (entrée enregistrée). */
+public final class SessionOpened {
+
+    private final Stationnement stationnement;
+
+    public SessionOpened(Stationnement stationnement) {
+        this.stationnement = stationnement;
+    }
+
+    /** Le stationnement en cours : id, place (copie), véhicule et date d'entrée. */
+    public Stationnement getStationnement() { return stationnement; }
+}
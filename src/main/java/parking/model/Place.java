@@ -1,5 +1,7 @@
 package parking.model;
 
+import parking.util.Money;
+
 /**
  * Entité Place de parking.
  */
@@ -12,11 +14,14 @@ public class Place {
     private String numero;
     private Type   type;
     private Statut statut;
-    private double tarifHoraire;
+    private long   tarifHoraire;   // centimes par heure
+    private String zone     = "A";
+    private int    niveau;
+    private int    distance;       // mètres jusqu'à la borne d'entrée
 
     public Place() {}
 
-    public Place(int id, String numero, Type type, Statut statut, double tarifHoraire) {
+    public Place(int id, String numero, Type type, Statut statut, long tarifHoraire) {
         this.id           = id;
         this.numero       = numero;
         this.type         = type;
@@ -37,12 +42,23 @@ public class Place {
     public Statut getStatut()             { return statut; }
     public void   setStatut(Statut s)     { this.statut = s; }
 
-    public double getTarifHoraire()           { return tarifHoraire; }
-    public void   setTarifHoraire(double t)   { this.tarifHoraire = t; }
+    /** Tarif horaire en centimes. */
+    public long   getTarifHoraire()           { return tarifHoraire; }
+    public void   setTarifHoraire(long t)     { this.tarifHoraire = t; }
+
+    public String getZone()               { return zone; }
+    public void   setZone(String z)       { this.zone = z; }
+
+    public int    getNiveau()             { return niveau; }
+    public void   setNiveau(int n)        { this.niveau = n; }
+
+    /** Distance à la borne d'entrée, en mètres. */
+    public int    getDistance()           { return distance; }
+    public void   setDistance(int d)      { this.distance = d; }
 
     @Override
     public String toString() {
-        return String.format("Place{id=%d, numero='%s', type=%s, statut=%s, tarif=%.2f €/h}",
-                id, numero, type, statut, tarifHoraire);
+        return String.format("Place{id=%d, numero='%s', type=%s, statut=%s, tarif=%s €/h, zone=%s, niveau=%d, distance=%d m}",
+                id, numero, type, statut, Money.format(tarifHoraire), zone, niveau, distance);
     }
 }
@@ -1,7 +1,8 @@
 package parking.model;
 
+import parking.util.Money;
+
 import java.time.LocalDateTime;
-import java.time.Duration;
 
 /**
  * Entité Stationnement (association Place ↔ Véhicule).
@@ -13,12 +14,12 @@ public class Stationnement {
     private Vehicule      vehicule;
     private LocalDateTime dateEntree;
     private LocalDateTime dateSortie;   // null si encore en cours
-    private Double        montant;      // null si encore en cours
+    private long          montant = Money.AUCUN;  // centimes, Money.AUCUN si encore en cours
 
     public Stationnement() {}
 
     public Stationnement(int id, Place place, Vehicule vehicule,
-                         LocalDateTime dateEntree, LocalDateTime dateSortie, Double montant) {
+                         LocalDateTime dateEntree, LocalDateTime dateSortie, long montant) {
         this.id         = id;
         this.place      = place;
         this.vehicule   = vehicule;
@@ -27,12 +28,10 @@ public class Stationnement {
         this.montant    = montant;
     }
 
-    /** Calcule le montant automatiquement à la sortie. */
-    public double calculerMontant() {
+    /** Calcule le montant (en centimes) automatiquement à la sortie, selon la grille tarifaire ({@link Tarification}). */
+    public long calculerMontant() {
         if (dateSortie == null) return 0;
-        long minutes = Duration.between(dateEntree, dateSortie).toMinutes();
-        double heures = minutes / 60.0;
-        return Math.round(heures * place.getTarifHoraire() * 100.0) / 100.0;
+        return Tarification.getInstance().centimes(place.getType(), place.getTarifHoraire(), dateEntree, dateSortie);
     }
 
     public boolean isEnCours() { return dateSortie == null; }
@@ -53,8 +52,10 @@ public class Stationnement {
     public LocalDateTime getDateSortie()            { return dateSortie; }
     public void          setDateSortie(LocalDateTime d) { this.dateSortie = d; }
 
-    public Double        getMontant()               { return montant; }
-    public void          setMontant(Double m)       { this.montant = m; }
+    /** Montant en centimes, {@link Money#AUCUN} si absent. */
+    public long          getMontant()               { return montant; }
+    public void          setMontant(long m)         { this.montant = m; }
+    public boolean       hasMontant()               { return montant != Money.AUCUN; }
 
     @Override
     public String toString() {
@@ -63,6 +64,6 @@ public class Stationnement {
                 place != null ? place.getNumero() : "?",
                 vehicule != null ? vehicule.getMatricule() : "?",
                 dateEntree, dateSortie,
-                montant != null ? String.format("%.2f €", montant) : "En cours");
+                hasMontant() ? Money.format(montant) + " €" : "En cours");
     }
 }
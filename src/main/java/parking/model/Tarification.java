@@ -0,0 +1,229 @@
+package parking.model;
+
+import parking.util.Money;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Grille tarifaire par type de place, compilée une fois pour un calcul de montant sans allocation.
+ *
+ * Les règles sont des coefficients appliqués au tarif horaire de la place :
+ *  - gratuitMinutes : minutes offertes en début de stationnement
+ *  - jour / nuit    : coefficients des tranches [jour.debut, nuit.debut) et du reste de la journée
+ *  - weekend        : coefficient de toutes les minutes du samedi et du dimanche (sinon jour / nuit)
+ *  - plafondJour    : montant maximal par jour calendaire, en heures au tarif de la place
+ * Chaque clé peut être précisée par type ("Moto.nuit=0.5") ; sans clé, le tarif est linéaire.
+ *
+ * Compilation : pour chaque type, les coefficients de chaque minute de la semaine (lundi 00:00 = 0)
+ * sont cumulés dans un tableau ; le coût d'une tranche de journée est une différence de deux cases,
+ * plafonnée, et une semaine complète est précalculée.
+ */
+public final class Tarification {
+
+    private static final Logger LOG = Logger.getLogger(Tarification.class.getName());
+
+    public static final String RESOURCE = "/tarifs.properties";
+
+    private static final int DAY  = 24 * 60;
+    private static final int WEEK = 7 * DAY;
+    /** Coefficients stockés en millièmes. */
+    private static final int UNIT = 1000;
+    private static final double MAX_COEF = 100;
+
+    private static volatile Tarification instance;
+
+    /** Règles compilées d'un type de place (montants en millièmes de minute au tarif de la place). */
+    private static final class Grille {
+        final int    gratuitMinutes;
+        /** cumul[m] = somme des coefficients des minutes [0, m) de la semaine. */
+        final int[]  cumul = new int[WEEK + 1];
+        final long   plafondJour;
+        /** Coût plafonné d'un jour complet, par jour de semaine (lundi = 0). */
+        final long[] jourComplet = new long[7];
+        final long   semaine;
+
+        Grille(int gratuitMinutes, int jour, int nuit, int weekend, int debutJour, int debutNuit, long plafondJour) {
+            this.gratuitMinutes = gratuitMinutes;
+            this.plafondJour    = plafondJour;
+            for (int m = 0; m < WEEK; m++) {
+                int dow = m / DAY, minute = m % DAY;
+                int coef;
+                if (weekend >= 0 && dow >= 5) coef = weekend;
+                else coef = estJour(minute, debutJour, debutNuit) ? jour : nuit;
+                cumul[m + 1] = cumul[m] + coef;
+            }
+            long s = 0;
+            for (int d = 0; d < 7; d++) {
+                jourComplet[d] = Math.min(cumul[(d + 1) * DAY] - cumul[d * DAY], plafondJour);
+                s += jourComplet[d];
+            }
+            semaine = s;
+        }
+
+        private static boolean estJour(int minute, int debutJour, int debutNuit) {
+            if (debutJour == debutNuit) return true;
+            if (debutJour < debutNuit) return minute >= debutJour && minute < debutNuit;
+            return minute >= debutJour || minute < debutNuit; // tranche de jour qui passe minuit
+        }
+
+        /** Coût des minutes [a, b) (minutes depuis l'époque, heure locale). */
+        long unites(long a, long b) {
+            if (b <= a) return 0;
+            long d0 = Math.floorDiv(a, DAY), d1 = Math.floorDiv(b - 1, DAY);
+            if (d0 == d1) return tranche(d0, a - d0 * DAY, b - d0 * DAY);
+            long total = tranche(d0, a - d0 * DAY, DAY) + tranche(d1, 0, b - d1 * DAY);
+            long pleins = d1 - d0 - 1;
+            total += pleins / 7 * semaine;
+            for (long d = d1 - pleins % 7; d < d1; d++) total += jourComplet[jourSemaine(d)];
+            return total;
+        }
+
+        private long tranche(long day, long from, long to) {
+            int base = jourSemaine(day) * DAY;
+            return Math.min(cumul[base + (int) to] - cumul[base + (int) from], plafondJour);
+        }
+
+        /** Lundi = 0 (le 1er janvier 1970 était un jeudi). */
+        private static int jourSemaine(long day) {
+            return (int) Math.floorMod(day + 3, 7L);
+        }
+    }
+
+    private final Map<Place.Type, Grille> grilles = new EnumMap<>(Place.Type.class);
+    private final Grille defaut;
+
+    private Tarification(Properties p) {
+        defaut = compiler(p, null);
+        for (Place.Type t : Place.Type.values()) grilles.put(t, compiler(p, t));
+    }
+
+    /** Grille chargée au premier appel : fichier -Dparking.tarifs.file, sinon ressource tarifs.properties. */
+    public static Tarification getInstance() {
+        Tarification t = instance;
+        if (t == null) {
+            synchronized (Tarification.class) {
+                if (instance == null) instance = charger();
+                t = instance;
+            }
+        }
+        return t;
+    }
+
+    /** Remplace la grille courante (rechargement, tests). */
+    public static void setInstance(Tarification t) {
+        instance = t;
+    }
+
+    /**
+     * Compile une grille.
+     * @throws IllegalArgumentException si une valeur est invalide
+     */
+    public static Tarification compiler(Properties p) {
+        return new Tarification(p);
+    }
+
+    private static Tarification charger() {
+        Properties p = new Properties();
+        String file = System.getProperty("parking.tarifs.file");
+        try (InputStream in = file != null ? Files.newInputStream(Paths.get(file))
+                                           : Tarification.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    p.load(r);
+                }
+            }
+            return compiler(p);
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.log(Level.WARNING, "Grille tarifaire illisible (" + e.getMessage() + ") : tarif horaire linéaire appliqué");
+            return compiler(new Properties());
+        }
+    }
+
+    private static Grille compiler(Properties p, Place.Type type) {
+        int    gratuit  = (int) nombre(p, type, "gratuitMinutes", 0, 0, WEEK);
+        int    jour     = coef(p, type, "jour", 1);
+        int    nuit     = coef(p, type, "nuit", jour / (double) UNIT);
+        int    weekend  = valeur(p, type, "weekend") != null ? coef(p, type, "weekend", 1) : -1;
+        int    debutJour = heure(p, type, "jour.debut");
+        int    debutNuit = heure(p, type, "nuit.debut");
+        double plafond  = nombre(p, type, "plafondJour", -1, -1, 24 * MAX_COEF);
+        long   plafondUnites = plafond < 0 ? Long.MAX_VALUE : Math.round(plafond * 60 * UNIT);
+        return new Grille(gratuit, jour, nuit, weekend, debutJour, debutNuit, plafondUnites);
+    }
+
+    /** Valeur de "Type.cle", sinon de "cle". */
+    private static String valeur(Properties p, Place.Type type, String cle) {
+        String v = type != null ? p.getProperty(type.name() + "." + cle) : null;
+        if (v == null) v = p.getProperty(cle);
+        return v != null && !v.trim().isEmpty() ? v.trim() : null;
+    }
+
+    private static double nombre(Properties p, Place.Type type, String cle, double defaut, double min, double max) {
+        String v = valeur(p, type, cle);
+        if (v == null) return defaut;
+        try {
+            double d = Double.parseDouble(v);
+            if (d < min || d > max) throw new IllegalArgumentException(cle + " hors limites : " + v);
+            return d;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(cle + " invalide : " + v);
+        }
+    }
+
+    private static int coef(Properties p, Place.Type type, String cle, double defaut) {
+        return (int) Math.round(nombre(p, type, cle, defaut, 0, MAX_COEF) * UNIT);
+    }
+
+    /** Heure "HH:mm" en minutes depuis minuit (00:00 par défaut). */
+    private static int heure(Properties p, Place.Type type, String cle) {
+        String v = valeur(p, type, cle);
+        if (v == null) return 0;
+        try {
+            return LocalTime.parse(v).toSecondOfDay() / 60;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(cle + " invalide : " + v + " (format HH:mm)");
+        }
+    }
+
+    // ---- Calcul ----
+
+    /** Montant en centimes d'un stationnement [entree, sortie) sur une place de ce type et de ce tarif horaire (centimes). */
+    public long centimes(Place.Type type, long tarifHoraire, LocalDateTime entree, LocalDateTime sortie) {
+        return centimes(type, tarifHoraire, secondes(entree), secondes(sortie));
+    }
+
+    /**
+     * Même calcul sur des instants en secondes locales ({@link #secondes(LocalDateTime)}).
+     * Les minutes entamées ne sont pas facturées (durée tronquée à la minute).
+     * Calcul entier exact, arrondi une seule fois au centime le plus proche.
+     */
+    public long centimes(Place.Type type, long tarifHoraire, long entree, long sortie) {
+        Grille g = type != null ? grilles.get(type) : defaut;
+        long debut   = Math.floorDiv(entree, 60);
+        long minutes = Math.floorDiv(sortie - entree, 60);
+        if (minutes <= g.gratuitMinutes) return 0;
+        long unites = g.unites(debut + g.gratuitMinutes, debut + minutes);
+        // unites en millièmes de minute : montant = unites * tarif / (60 * 1000)
+        return Money.arrondi(unites * tarifHoraire, 60L * UNIT);
+    }
+
+    /** Secondes depuis l'époque de l'heure locale (sans fuseau), sans allocation. */
+    public static long secondes(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,133 @@
+package parking.service;
+
+import parking.util.DatabaseConnection;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécution asynchrone des appels DAO, pour que les panels Swing ne bloquent plus l'EDT.
+ *  - Exécuteur borné : threads virtuels si la JVM les propose (Java 21+), sinon pool fixe
+ *  - Les appels rendent un {@link CompletableFuture}
+ *  - Un appel soumis avec une clé annule l'appel précédent de même clé encore en cours
+ *    (ex. "places.table" : seul le dernier rechargement de la table compte)
+ *  - Un appel s'exécute pour le {@link DatabaseConnection.Client} du thread qui le soumet :
+ *    un écran relit ses propres écritures sur le primaire, pas sur la réplique
+ */
+public final class AsyncDao {
+
+    /** Un appel DAO (peut lever SQLException). */
+    @FunctionalInterface
+    public interface DaoCall<T> {
+        T call() throws SQLException;
+    }
+
+    /** Un appel DAO sans résultat. */
+    @FunctionalInterface
+    public interface DaoAction {
+        void run() throws SQLException;
+    }
+
+    private static final int MAX_CONCURRENT = Integer.getInteger("parking.async.max", 8);
+    private static final int MAX_QUEUED     = 256;
+
+    private static final AsyncDao INSTANCE = new AsyncDao();
+
+    private final ExecutorService executor;
+    /** Borne la concurrence quand l'exécuteur (threads virtuels) ne le fait pas lui-même. */
+    private final Semaphore       permits;
+    private final Map<String, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+
+    private AsyncDao() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            executor = virtual;
+            permits  = new Semaphore(MAX_CONCURRENT);
+        } else {
+            AtomicInteger n = new AtomicInteger();
+            executor = new ThreadPoolExecutor(MAX_CONCURRENT, MAX_CONCURRENT, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(MAX_QUEUED), r -> {
+                        Thread t = new Thread(r, "parking-dao-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+            permits  = null;
+        }
+    }
+
+    public static AsyncDao getInstance() {
+        return INSTANCE;
+    }
+
+    /** Soumet un appel DAO. */
+    public <T> CompletableFuture<T> supply(DaoCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        DatabaseConnection.Client client = DatabaseConnection.getClient();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            if (result.isDone()) return null;
+            if (permits != null) permits.acquire();
+            DatabaseConnection.Client avant = DatabaseConnection.setClient(client);
+            try {
+                result.complete(call.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                DatabaseConnection.setClient(avant);
+                if (permits != null) permits.release();
+            }
+            return null;
+        });
+        // Annuler le future annule (et interrompt) la tâche
+        result.whenComplete((r, e) -> { if (result.isCancelled()) task.cancel(true); });
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new SQLException("Trop de requêtes en attente, réessayez.", e));
+        }
+        return result;
+    }
+
+    /**
+     * Soumet un appel DAO en remplaçant l'appel précédent de même clé :
+     * s'il n'est pas terminé, il est annulé et son résultat ne sera jamais livré.
+     */
+    public <T> CompletableFuture<T> supply(String key, DaoCall<T> call) {
+        CompletableFuture<T> future = supply(call);
+        CompletableFuture<?> previous = latest.put(key, future);
+        if (previous != null) previous.cancel(true);
+        future.whenComplete((r, e) -> latest.remove(key, future));
+        return future;
+    }
+
+    public CompletableFuture<Void> run(DaoAction action) {
+        return supply(() -> { action.run(); return null; });
+    }
+
+    /** Cause réelle d'un échec (dépile les CompletionException). */
+    public static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+        return e;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // JVM < 21
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package parking.service;
+
+import parking.dao.StationnementDAO;
+import parking.dao.StationnementFilter;
+import parking.model.Stationnement;
+import parking.util.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export de l'historique des stationnements en CSV ou JSON (éventuellement compressé en gzip).
+ * Les lignes sont lues en flux ({@link StationnementDAO#parcourir}) et écrites au fil de l'eau :
+ * la mémoire utilisée ne dépend pas du nombre de lignes.
+ * Le fichier est écrit sous un nom temporaire (.part) puis renommé une fois complet.
+ *
+ * CSV : séparateur ';', en-tête, dates ISO (yyyy-mm-ddThh:mm:ss), montants avec un point décimal.
+ * JSON : un tableau d'objets, un par ligne de fichier.
+ */
+public final class ExportService {
+
+    public enum Format { CSV, JSON }
+
+    /** Avancement de l'export, appelé au plus deux fois par seconde puis une dernière fois à la fin. */
+    @FunctionalInterface
+    public interface Progression {
+        void avancement(long lignes, double lignesParSeconde);
+    }
+
+    private static final int    BUFFER      = 1 << 16;
+    private static final long   PERIODE_NS  = 500_000_000L;
+    private static final String[] COLONNES  = {"id", "dateEntree", "dateSortie", "montant", "place", "typePlace",
+                                               "tarifHoraire", "matricule", "marque", "categorie"};
+
+    private final StationnementDAO dao;
+
+    public ExportService() {
+        this(new StationnementDAO());
+    }
+
+    public ExportService(StationnementDAO dao) {
+        this.dao = dao;
+    }
+
+    /** Format déduit de l'extension (.json ou .json.gz = JSON, sinon CSV). */
+    public static Format formatPour(Path fichier) {
+        String nom = fichier.getFileName().toString().toLowerCase(Locale.ROOT);
+        return nom.endsWith(".json") || nom.endsWith(".json.gz") ? Format.JSON : Format.CSV;
+    }
+
+    /** Compression déduite de l'extension (.gz). */
+    public static boolean gzipPour(Path fichier) {
+        return fichier.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    /**
+     * Exporte les stationnements du filtre, par date d'entrée croissante.
+     * @param progression peut être null
+     * @return nombre de lignes exportées
+     */
+    public long exporter(StationnementFilter f, Path fichier, Format format, boolean gzip,
+                         Progression progression) throws SQLException, IOException {
+        Path part = fichier.resolveSibling(fichier.getFileName() + ".part");
+        long t0 = System.nanoTime();
+        long[] dernier = {t0};
+        long n;
+        boolean ok = false;
+        try {
+            try (OutputStream os = Files.newOutputStream(part);
+                 Writer w = new BufferedWriter(new OutputStreamWriter(
+                         gzip ? new GZIPOutputStream(os, BUFFER) : os, StandardCharsets.UTF_8), BUFFER)) {
+                LigneWriter ligne = format == Format.JSON ? new JsonWriter(w) : new CsvWriter(w);
+                ligne.debut();
+                n = dao.parcourir(f, s -> {
+                    long count = ligne.ecrire(s);
+                    if (progression != null && (count & 1023) == 0) {
+                        long now = System.nanoTime();
+                        if (now - dernier[0] >= PERIODE_NS) {
+                            dernier[0] = now;
+                            progression.avancement(count, debit(count, t0, now));
+                        }
+                    }
+                });
+                ligne.fin();
+            }
+            Files.move(part, fichier, StandardCopyOption.REPLACE_EXISTING);
+            ok = true;
+        } finally {
+            if (!ok) Files.deleteIfExists(part);
+        }
+        if (progression != null) progression.avancement(n, debit(n, t0, System.nanoTime()));
+        return n;
+    }
+
+    private static double debit(long lignes, long t0, long now) {
+        long ns = Math.max(now - t0, 1);
+        return lignes * 1e9 / ns;
+    }
+
+    // ---- Écriture d'une ligne ----
+
+    private abstract static class LigneWriter {
+        final Writer w;
+        long n;
+
+        LigneWriter(Writer w) { this.w = w; }
+
+        abstract void debut() throws IOException;
+        abstract void fin() throws IOException;
+        abstract void ligne(Stationnement s) throws IOException;
+
+        /** Écrit la ligne ; retourne le nombre de lignes écrites. */
+        long ecrire(Stationnement s) throws IOException {
+            ligne(s);
+            return ++n;
+        }
+    }
+
+    private static final class CsvWriter extends LigneWriter {
+        CsvWriter(Writer w) { super(w); }
+
+        @Override void debut() throws IOException {
+            w.write(String.join(";", COLONNES));
+            w.write('\n');
+        }
+
+        @Override void fin() {}
+
+        @Override void ligne(Stationnement s) throws IOException {
+            w.write(Integer.toString(s.getId()));
+            w.write(';');
+            date(s.getDateEntree());
+            w.write(';');
+            date(s.getDateSortie());
+            w.write(';');
+            if (s.hasMontant()) w.write(Money.format(s.getMontant()));
+            w.write(';');
+            texte(s.getPlace().getNumero());
+            w.write(';');
+            w.write(s.getPlace().getType().name());
+            w.write(';');
+            w.write(Money.format(s.getPlace().getTarifHoraire()));
+            w.write(';');
+            texte(s.getVehicule().getMatricule());
+            w.write(';');
+            texte(s.getVehicule().getMarque());
+            w.write(';');
+            w.write(s.getVehicule().getCategorie().name());
+            w.write('\n');
+        }
+
+        private void date(LocalDateTime d) throws IOException {
+            if (d != null) w.write(d.toString());
+        }
+
+        /** Texte entre guillemets s'il contient un séparateur, un guillemet ou un saut de ligne. */
+        private void texte(String t) throws IOException {
+            if (t == null) return;
+            if (t.indexOf(';') < 0 && t.indexOf('"') < 0 && t.indexOf('\n') < 0 && t.indexOf('\r') < 0) {
+                w.write(t);
+            } else {
+                w.write('"');
+                w.write(t.replace("\"", "\"\""));
+                w.write('"');
+            }
+        }
+    }
+
+    private static final class JsonWriter extends LigneWriter {
+        JsonWriter(Writer w) { super(w); }
+
+        @Override void debut() throws IOException {
+            w.write('[');
+        }
+
+        @Override void fin() throws IOException {
+            w.write(n == 0 ? "]\n" : "\n]\n");
+        }
+
+        @Override void ligne(Stationnement s) throws IOException {
+            w.write(n == 0 ? "\n{" : ",\n{");
+            w.write("\"id\":");
+            w.write(Integer.toString(s.getId()));
+            w.write(",\"dateEntree\":");
+            texte(s.getDateEntree() != null ? s.getDateEntree().toString() : null);
+            w.write(",\"dateSortie\":");
+            texte(s.getDateSortie() != null ? s.getDateSortie().toString() : null);
+            w.write(",\"montant\":");
+            w.write(s.hasMontant() ? Money.format(s.getMontant()) : "null");
+            w.write(",\"place\":");
+            texte(s.getPlace().getNumero());
+            w.write(",\"typePlace\":");
+            texte(s.getPlace().getType().name());
+            w.write(",\"tarifHoraire\":");
+            w.write(Money.format(s.getPlace().getTarifHoraire()));
+            w.write(",\"matricule\":");
+            texte(s.getVehicule().getMatricule());
+            w.write(",\"marque\":");
+            texte(s.getVehicule().getMarque());
+            w.write(",\"categorie\":");
+            texte(s.getVehicule().getCategorie().name());
+            w.write('}');
+        }
+
+        private void texte(String t) throws IOException {
+            if (t == null) {
+                w.write("null");
+                return;
+            }
+            w.write('"');
+            for (int i = 0; i < t.length(); i++) {
+                char c = t.charAt(i);
+                switch (c) {
+                    case '"':  w.write("\\\""); break;
+                    case '\\': w.write("\\\\"); break;
+                    case '\n': w.write("\\n");  break;
+                    case '\r': w.write("\\r");  break;
+                    case '\t': w.write("\\t");  break;
+                    default:
+                        if (c < 0x20) w.write(String.format("\\u%04x", (int) c));
+                        else w.write(c);
+                }
+            }
+            w.write('"');
+        }
+    }
+}
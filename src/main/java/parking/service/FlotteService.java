@@ -0,0 +1,146 @@
+package parking.service;
+
+import parking.dao.PlaceDAO;
+import parking.dao.RevenueRollupDAO;
+import parking.util.DatabaseConnection;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Vues consolidées de la flotte de parkings (tous les sites de {@link DatabaseConnection#getSites()}).
+ * Chaque vue interroge les sites en parallèle via {@link AsyncDao}, chacun sur son propre pool,
+ * puis fusionne les résultats. Un site injoignable ne fait pas échouer la vue : il est signalé dans
+ * {@link Vue#getErreurs()} et ses colonnes restent vides.
+ */
+public class FlotteService {
+
+    /** Résultat fusionné : une ligne par site (occupation) ou par mois (revenus), et les sites en échec. */
+    public static final class Vue {
+        private final List<String>        sites;
+        private final List<Object[]>      lignes;
+        private final Map<String, String> erreurs;
+
+        Vue(List<String> sites, List<Object[]> lignes, Map<String, String> erreurs) {
+            this.sites   = Collections.unmodifiableList(sites);
+            this.lignes  = Collections.unmodifiableList(lignes);
+            this.erreurs = Collections.unmodifiableMap(erreurs);
+        }
+
+        public List<String>        getSites()   { return sites; }
+        public List<Object[]>      getLignes()  { return lignes; }
+        /** Site -> message d'erreur, pour les sites qui n'ont pas répondu. */
+        public Map<String, String> getErreurs() { return erreurs; }
+    }
+
+    /** Résultat d'un site : valeur, ou erreur. */
+    private static final class Reponse<T> {
+        final String site;
+        final T      valeur;
+        final String erreur;
+
+        Reponse(String site, T valeur, Throwable e) {
+            this.site   = site;
+            this.valeur = valeur;
+            this.erreur = e == null ? null : AsyncDao.unwrap(e).getMessage();
+        }
+    }
+
+    private final AsyncDao async = AsyncDao.getInstance();
+
+    /**
+     * Occupation par site : {site, places (Integer), occupées (Integer), taux en % (Double)},
+     * suivie d'une ligne "Flotte" qui totalise les sites ayant répondu.
+     */
+    public CompletableFuture<Vue> occupation() {
+        return surTousLesSites(site -> new PlaceDAO(site).compterOccupation()).thenApply(reponses -> {
+            List<String>        sites   = new ArrayList<>();
+            List<Object[]>      lignes  = new ArrayList<>();
+            Map<String, String> erreurs = new LinkedHashMap<>();
+            int total = 0, occupees = 0;
+            for (Reponse<int[]> r : reponses) {
+                sites.add(r.site);
+                if (r.erreur != null) {
+                    erreurs.put(r.site, r.erreur);
+                    lignes.add(new Object[]{r.site, null, null, null});
+                    continue;
+                }
+                total    += r.valeur[0];
+                occupees += r.valeur[1];
+                lignes.add(new Object[]{r.site, r.valeur[0], r.valeur[1], taux(r.valeur[1], r.valeur[0])});
+            }
+            lignes.add(new Object[]{"Flotte", total, occupees, taux(occupees, total)});
+            return new Vue(sites, lignes, erreurs);
+        });
+    }
+
+    /**
+     * Revenus par mois et par site : {yyyy-mm, centimes du site 1 (Long), …, total flotte (Long)},
+     * mois triés ; une cellule est null si le site n'a rien encaissé ce mois-là ou n'a pas répondu.
+     */
+    public CompletableFuture<Vue> revenusParMois() {
+        return surTousLesSites(site -> new RevenueRollupDAO(site).getRevenusParMois()).thenApply(reponses -> {
+            List<String>        sites   = new ArrayList<>();
+            Map<String, String> erreurs = new LinkedHashMap<>();
+            Map<String, Long[]> parMois = new TreeMap<>();
+            int n = reponses.size();
+            for (int i = 0; i < n; i++) {
+                Reponse<List<Object[]>> r = reponses.get(i);
+                sites.add(r.site);
+                if (r.erreur != null) {
+                    erreurs.put(r.site, r.erreur);
+                    continue;
+                }
+                for (Object[] row : r.valeur) {
+                    Long[] cellules = parMois.computeIfAbsent((String) row[0], m -> new Long[n]);
+                    cellules[i] = (Long) row[1];
+                }
+            }
+            List<Object[]> lignes = new ArrayList<>(parMois.size());
+            for (Map.Entry<String, Long[]> e : parMois.entrySet()) {
+                Object[] ligne = new Object[n + 2];
+                ligne[0] = e.getKey();
+                long total = 0;
+                for (int i = 0; i < n; i++) {
+                    ligne[i + 1] = e.getValue()[i];
+                    if (e.getValue()[i] != null) total += e.getValue()[i];
+                }
+                ligne[n + 1] = total;
+                lignes.add(ligne);
+            }
+            return new Vue(sites, lignes, erreurs);
+        });
+    }
+
+    // ---- Interne ----
+
+    /** Appel par site. */
+    @FunctionalInterface
+    private interface SiteCall<T> {
+        T call(String site) throws SQLException;
+    }
+
+    /** Lance l'appel sur chaque site en parallèle ; termine quand tous ont répondu (ou échoué). */
+    private <T> CompletableFuture<List<Reponse<T>>> surTousLesSites(SiteCall<T> call) {
+        List<String> sites = DatabaseConnection.getSites();
+        List<CompletableFuture<Reponse<T>>> futures = new ArrayList<>(sites.size());
+        for (String site : sites) {
+            futures.add(async.supply(() -> call.call(site)).handle((v, e) -> new Reponse<>(site, v, e)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(x -> {
+            List<Reponse<T>> reponses = new ArrayList<>(futures.size());
+            for (CompletableFuture<Reponse<T>> f : futures) reponses.add(f.join());
+            return reponses;
+        });
+    }
+
+    private static double taux(int occupees, int total) {
+        return total == 0 ? 0.0 : Math.round(occupees * 1000.0 / total) / 10.0;
+    }
+}
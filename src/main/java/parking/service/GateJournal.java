@@ -0,0 +1,254 @@
+package parking.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local des entrées / sorties des bornes (write-ahead log), utilisé quand la base est indisponible.
+ *
+ * Enregistrements binaires de taille fixe ({@value #RECORD} octets), sans allocation à l'écriture :
+ * <pre>
+ *   0  long  numéro de séquence
+ *   8  byte  type (ENTREE, SORTIE), 3 octets à 0
+ *  12  int   id de la place
+ *  16  int   id du véhicule (entrée) ou du stationnement (sortie, 0 si inconnu)
+ *  20  long  instant, en secondes locales
+ *  28  int   CRC32 des octets 0..27
+ * </pre>
+ * Écriture par lots (group commit) : {@link #ajouter} range l'enregistrement dans un tampon,
+ * {@link #sync} l'écrit et force le fichier sur disque ; un seul fsync couvre tous les enregistrements
+ * ajoutés entre-temps par les autres bornes. À l'ouverture, une fin de fichier incomplète ou corrompue
+ * (arrêt pendant une écriture) est tronquée.
+ *
+ * Les appels ne doivent pas être interrompus : une écriture interrompue ferme le canal (le journal
+ * devient alors inutilisable jusqu'à sa réouverture).
+ */
+public final class GateJournal implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(GateJournal.class.getName());
+
+    public static final byte ENTREE = 1;
+    public static final byte SORTIE = 2;
+
+    static final int RECORD = 32;
+    private static final int CORPS    = 28;
+    private static final int CAPACITE = RECORD * 2048;
+
+    /** Lecture d'un enregistrement. */
+    @FunctionalInterface
+    public interface Visiteur<X extends Exception> {
+        void enregistrement(long seq, byte type, int placeId, int ref, long instant) throws X;
+    }
+
+    private final Path        fichier;
+    private final FileChannel ch;
+    private final CRC32       crc = new CRC32();
+
+    // Sous le verrou de l'instance
+    private ByteBuffer actif   = ByteBuffer.allocateDirect(CAPACITE);
+    private ByteBuffer reserve = ByteBuffer.allocateDirect(CAPACITE);
+    private boolean    flushEnCours;
+    private long       prochainSeq;
+    /** Dernier numéro écrit et forcé sur disque. */
+    private long       durable;
+    /** Taille du fichier couverte par les enregistrements durables. */
+    private long       taille;
+    private IOException erreur;
+
+    /** Ouvre (ou crée) le journal et tronque une éventuelle fin incomplète. */
+    public GateJournal(Path fichier) throws IOException {
+        this.fichier = fichier;
+        this.ch = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long[] dernier = {0};
+        long valide = lire(0, ch.size(), (seq, type, placeId, ref, instant) -> dernier[0] = seq);
+        if (valide < ch.size()) {
+            LOG.warning("Journal " + fichier + " : " + (ch.size() - valide) + " octet(s) incomplets tronqués");
+            ch.truncate(valide);
+            ch.force(true);
+        }
+        ch.position(valide);
+        taille      = valide;
+        durable     = dernier[0];
+        prochainSeq = dernier[0] + 1;
+    }
+
+    public Path getFichier() { return fichier; }
+
+    /** Nombre d'enregistrements durables en attente de rejeu. */
+    public synchronized long taille() {
+        return taille / RECORD;
+    }
+
+    /**
+     * Range un enregistrement dans le tampon, sans l'écrire.
+     * @return son numéro de séquence, à passer à {@link #sync} avant de considérer l'événement comme enregistré
+     */
+    public long ajouter(byte type, int placeId, int ref, long instant) throws IOException {
+        while (true) {
+            long aForcer;
+            synchronized (this) {
+                verifier();
+                if (actif.remaining() >= RECORD) {
+                    long seq = prochainSeq++;
+                    int debut = actif.position();
+                    actif.putLong(seq).put(type).put((byte) 0).putShort((short) 0)
+                         .putInt(placeId).putInt(ref).putLong(instant);
+                    ByteBuffer corps = actif.duplicate();
+                    corps.position(debut).limit(debut + CORPS);
+                    crc.reset();
+                    crc.update(corps);
+                    actif.putInt((int) crc.getValue());
+                    return seq;
+                }
+                aForcer = prochainSeq - 1;
+            }
+            // Tampon plein : le vider avant de continuer
+            sync(aForcer);
+        }
+    }
+
+    /** Ajoute un enregistrement et attend qu'il soit sur disque. */
+    public long append(byte type, int placeId, int ref, long instant) throws IOException {
+        long seq = ajouter(type, placeId, ref, instant);
+        sync(seq);
+        return seq;
+    }
+
+    /**
+     * Attend que l'enregistrement {@code seq} soit sur disque. Le premier appelant écrit et force
+     * tout le tampon ; les suivants attendent ce lot au lieu de forcer chacun le fichier.
+     */
+    public void sync(long seq) throws IOException {
+        boolean interrompu = false;
+        try {
+            ByteBuffer lot;
+            long jusqua;
+            synchronized (this) {
+                while (true) {
+                    if (durable >= seq) return;
+                    verifier();
+                    if (!flushEnCours) break;
+                    interrompu |= attendre();
+                }
+                flushEnCours = true;
+                lot = actif;
+                actif = reserve;
+                reserve = null;
+                jusqua = prochainSeq - 1;
+            }
+            IOException err = null;
+            long ecrits = lot.position();
+            try {
+                lot.flip();
+                while (lot.hasRemaining()) ch.write(lot);
+                ch.force(false);
+            } catch (IOException e) {
+                err = e;
+            }
+            synchronized (this) {
+                lot.clear();
+                reserve = lot;
+                flushEnCours = false;
+                if (err == null) {
+                    durable = jusqua;
+                    taille += ecrits;
+                } else {
+                    erreur = err;
+                }
+                notifyAll();
+            }
+            if (err != null) throw err;
+        } finally {
+            if (interrompu) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lit les enregistrements durables à partir de l'octet {@code debut}
+     * (les enregistrements ajoutés pendant la lecture sont lus à l'appel suivant).
+     * @return position qui suit le dernier enregistrement lu
+     */
+    public <X extends Exception> long lire(long debut, Visiteur<X> visiteur) throws IOException, X {
+        long fin;
+        synchronized (this) {
+            fin = taille;
+        }
+        return lire(debut, fin, visiteur);
+    }
+
+    /** Lit jusqu'à {@code fin} ou jusqu'au premier enregistrement incomplet / corrompu. */
+    private <X extends Exception> long lire(long debut, long fin, Visiteur<X> visiteur) throws IOException, X {
+        ByteBuffer buf = ByteBuffer.allocate(CAPACITE);
+        CRC32 controle = new CRC32();
+        long pos = debut;
+        while (pos < fin) {
+            buf.clear();
+            if (fin - pos < CAPACITE) buf.limit((int) (fin - pos));
+            int n = ch.read(buf, pos);
+            if (n < RECORD) break;
+            buf.flip();
+            while (buf.remaining() >= RECORD) {
+                int r = buf.position();
+                controle.reset();
+                controle.update(buf.array(), r, CORPS);
+                if ((int) controle.getValue() != buf.getInt(r + CORPS)) return pos;
+                visiteur.enregistrement(buf.getLong(r), buf.get(r + 8), buf.getInt(r + 12), buf.getInt(r + 16),
+                        buf.getLong(r + 20));
+                buf.position(r + RECORD);
+                pos += RECORD;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Vide le journal si tous ses enregistrements ont été rejoués, c'est-à-dire si rien n'a été ajouté
+     * au-delà de la position {@code rejoue}.
+     * @return false si de nouveaux enregistrements sont arrivés (le journal est conservé)
+     */
+    public synchronized boolean vider(long rejoue) throws IOException {
+        verifier();
+        if (flushEnCours || actif.position() > 0 || taille != rejoue) return false;
+        ch.truncate(0);
+        ch.force(true);
+        taille = 0;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        long dernier;
+        synchronized (this) {
+            dernier = erreur == null ? prochainSeq - 1 : 0;
+        }
+        try {
+            sync(dernier);
+        } finally {
+            ch.close();
+        }
+    }
+
+    private void verifier() throws IOException {
+        if (erreur != null) throw new IOException("Journal " + fichier + " inutilisable : " + erreur.getMessage(), erreur);
+    }
+
+    /**
+     * Attend la fin du lot en cours d'écriture, sans abandonner : l'appelant restitue l'interruption
+     * une fois l'écriture terminée.
+     * @return true si le thread a été interrompu pendant l'attente
+     */
+    private boolean attendre() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package parking.service;
+
+import parking.dao.AuditLog;
+import parking.dao.OccupancyIndex;
+import parking.dao.PlaceDAO;
+import parking.dao.StationnementDAO;
+import parking.dao.VehiculeDAO;
+import parking.event.EventBus;
+import parking.event.PlaceChanged;
+import parking.event.SessionClosed;
+import parking.event.SessionOpened;
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Tarification;
+import parking.model.Vehicule;
+import parking.util.Money;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Entrées / sorties des bornes, qui continuent quand la base est injoignable.
+ *
+ * En ligne, chaque événement passe par {@link StationnementDAO}. Si la base ne répond pas
+ * (erreur de connexion, SQLState 08xxx), le service passe hors ligne : les événements sont ajoutés
+ * au journal local ({@link GateJournal}) et l'occupation est suivie en mémoire, sans aucun appel à la base.
+ * Une tâche de fond rejoue le journal par {@link StationnementDAO} dès que la base répond ;
+ * les événements arrivés pendant le rejeu sont ajoutés au journal à leur suite, dans l'ordre.
+ *
+ * Le rejeu est idempotent : une entrée déjà en base (même place, véhicule et date) et une sortie
+ * déjà enregistrée sont ignorées, si bien qu'un rejeu interrompu (panne, arrêt) peut être relancé.
+ * Un événement refusé par les règles métier est journalisé en avertissement et ignoré.
+ *
+ * Propriétés : parking.journal.file (parking-bornes.journal), parking.journal.retrySec (5).
+ */
+public final class GateService {
+
+    private static final Logger LOG = Logger.getLogger(GateService.class.getName());
+
+    private static final long RETRY_SEC = Long.getLong("parking.journal.retrySec", 5);
+
+    private static GateService instance;
+
+    private final StationnementDAO dao         = new StationnementDAO();
+    private final PlaceDAO         placeDAO    = new PlaceDAO();
+    private final VehiculeDAO      vehiculeDAO = new VehiculeDAO();
+    private final GateJournal      journal;
+    private final ScheduledExecutorService reprise;
+    private final Object           rejeu = new Object();
+
+    // Sous le verrou de l'instance
+    private boolean horsLigne;
+    /** Stationnements en cours par place ; id 0 pour une entrée journalisée pas encore en base. */
+    private final Map<Integer, Stationnement> enCours = new HashMap<>();
+
+    private GateService(GateJournal journal) {
+        this.journal = journal;
+        EventBus bus = EventBus.getInstance();
+        bus.subscribe(SessionOpened.class, e -> ouvert(e.getStationnement()));
+        bus.subscribe(SessionClosed.class, e -> ferme(e.getPlaceId(), e.getStationnementId()));
+
+        try {
+            charger();
+        } catch (SQLException e) {
+            horsLigne = true;
+            LOG.warning("Base indisponible au démarrage (" + e.getMessage() + ") : bornes hors ligne");
+            chargerAudit();
+        }
+        if (journal.taille() > 0) {
+            horsLigne = true;
+            try {
+                journal.lire(0, this::suivre);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Lecture du journal " + journal.getFichier() + " impossible", e);
+            }
+        }
+
+        reprise = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parking-bornes-rejeu");
+            t.setDaemon(true);
+            return t;
+        });
+        reprise.scheduleWithFixedDelay(this::reprendre, 0, RETRY_SEC, TimeUnit.SECONDS);
+    }
+
+    /** Service des bornes, journal ouvert au premier appel. */
+    public static synchronized GateService getInstance() throws IOException {
+        if (instance == null) {
+            String fichier = System.getProperty("parking.journal.file", "parking-bornes.journal");
+            instance = new GateService(new GateJournal(Paths.get(fichier)));
+        }
+        return instance;
+    }
+
+    /** Arrête la tâche de rejeu et ferme le journal (les événements en attente y restent). */
+    public static synchronized void close() {
+        if (instance != null) {
+            instance.reprise.shutdownNow();
+            try {
+                instance.journal.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Fermeture du journal impossible", e);
+            }
+            instance = null;
+        }
+    }
+
+    public synchronized boolean isHorsLigne() {
+        return horsLigne;
+    }
+
+    /** Nombre d'événements du journal en attente de rejeu. */
+    public long getEnAttente() {
+        return journal.taille();
+    }
+
+    // ---- Bornes ----
+
+    /**
+     * Enregistre une entrée, en base ou dans le journal si la base est injoignable.
+     * @return le stationnement ; son id vaut 0 s'il a été journalisé
+     * @throws SQLException si la place est déjà occupée
+     * @throws IOException  si le journal ne peut pas être écrit
+     */
+    public Stationnement entree(Place place, Vehicule vehicule, LocalDateTime date) throws SQLException, IOException {
+        Stationnement s = new Stationnement(0, place, vehicule, date, null, Money.AUCUN);
+        while (true) {
+            if (!isHorsLigne()) {
+                try {
+                    dao.create(s);
+                    return s;
+                } catch (SQLException e) {
+                    if (!indisponible(e)) throw e;
+                    basculer(e);
+                }
+            }
+            long seq;
+            synchronized (this) {
+                if (!horsLigne) continue; // rejeu terminé entre-temps
+                OccupancyIndex index = index();
+                if (enCours.containsKey(place.getId()) || (index != null && index.isOccupee(place.getId()))) {
+                    throw new SQLException("La place " + place.getNumero() + " est déjà occupée.");
+                }
+                seq = journal.ajouter(GateJournal.ENTREE, place.getId(), vehicule.getId(), Tarification.secondes(date));
+                enCours.put(place.getId(), s);
+            }
+            try {
+                journal.sync(seq);
+            } catch (IOException e) {
+                synchronized (this) {
+                    enCours.remove(place.getId(), s);
+                }
+                throw e;
+            }
+            occupation(place.getId(), true);
+            return s;
+        }
+    }
+
+    /**
+     * Entrée avec attribution automatique : la place libre la plus proche de la borne pour ce type,
+     * dans la zone demandée (null = toutes zones). Une place prise entre-temps (autre borne, saisie manuelle)
+     * est écartée et la suivante est tentée ; si l'entrée échoue pour une autre raison, la place est rendue.
+     * @return le stationnement, avec la place attribuée ; son id vaut 0 s'il a été journalisé
+     * @throws SQLException s'il n'y a pas de place libre
+     */
+    public Stationnement entree(Place.Type type, String zone, Vehicule vehicule, LocalDateTime date)
+            throws SQLException, IOException {
+        OccupancyIndex index = index();
+        if (index == null) throw new SQLException("Attribution automatique indisponible : occupation des places inconnue.");
+        while (true) {
+            Place place = index.getAllocateur().attribuer(type, zone);
+            if (place == null) {
+                throw new SQLException("Aucune place " + type + " libre" + (zone != null ? " en zone " + zone : "") + ".");
+            }
+            try {
+                return entree(place, vehicule, date);
+            } catch (SQLException | IOException | RuntimeException e) {
+                if (index.isOccupee(place.getId())) continue; // prise entre-temps : place suivante
+                index.rendre(place.getId());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Enregistre la sortie du stationnement en cours sur une place.
+     * @return le montant en centimes
+     */
+    public long sortie(int placeId, LocalDateTime date) throws SQLException, IOException {
+        while (true) {
+            if (!isHorsLigne()) {
+                try {
+                    Stationnement s = dao.findEnCoursParPlace(placeId);
+                    if (s == null) throw new SQLException("Aucun stationnement en cours sur cette place.");
+                    return dao.enregistrerSortie(s.getId(), date);
+                } catch (SQLException e) {
+                    if (!indisponible(e)) throw e;
+                    basculer(e);
+                }
+            }
+            Long montant = journaliserSortie(placeId, date);
+            if (montant != null) return montant;
+        }
+    }
+
+    /**
+     * Enregistre la sortie d'un stationnement connu par son id.
+     * @return le montant en centimes
+     */
+    public long sortieStationnement(int stationnementId, LocalDateTime date) throws SQLException, IOException {
+        while (true) {
+            if (!isHorsLigne()) {
+                try {
+                    return dao.enregistrerSortie(stationnementId, date);
+                } catch (SQLException e) {
+                    if (!indisponible(e)) throw e;
+                    basculer(e);
+                }
+            }
+            int placeId = 0;
+            synchronized (this) {
+                for (Stationnement s : enCours.values()) {
+                    if (s.getId() == stationnementId) placeId = s.getPlace().getId();
+                }
+            }
+            if (placeId == 0) throw new SQLException("Stationnement inconnu hors ligne (id=" + stationnementId + ")");
+            Long montant = journaliserSortie(placeId, date);
+            if (montant != null) return montant;
+        }
+    }
+
+    /** Sortie hors ligne ; null si le service est repassé en ligne entre-temps. */
+    private Long journaliserSortie(int placeId, LocalDateTime date) throws SQLException, IOException {
+        Stationnement s;
+        long seq;
+        synchronized (this) {
+            if (!horsLigne) return null;
+            s = enCours.get(placeId);
+            if (s == null) throw new SQLException("Aucun stationnement en cours connu sur cette place (base indisponible).");
+            seq = journal.ajouter(GateJournal.SORTIE, placeId, s.getId(), Tarification.secondes(date));
+            enCours.remove(placeId);
+        }
+        try {
+            journal.sync(seq);
+        } catch (IOException e) {
+            synchronized (this) {
+                enCours.putIfAbsent(placeId, s);
+            }
+            throw e;
+        }
+        Stationnement clos = new Stationnement(s.getId(), s.getPlace(), s.getVehicule(), s.getDateEntree(), date, Money.AUCUN);
+        long montant = clos.calculerMontant();
+        occupation(placeId, false);
+        if (s.getId() > 0) EventBus.getInstance().publish(new SessionClosed(s.getId(), placeId, date, montant));
+        return montant;
+    }
+
+    // ---- Rejeu ----
+
+    /**
+     * Rejoue le journal par {@link StationnementDAO}, recharge les stationnements en cours, puis vide le journal
+     * et repasse en ligne. Le rechargement précède le passage en ligne et sert de sonde quand le journal est vide :
+     * tant que la base ne répond pas, les bornes restent hors ligne et n'attendent pas l'échec de connexion.
+     * @return nombre d'événements rejoués
+     * @throws SQLException si la base est toujours injoignable (le journal est conservé, le service reste hors ligne)
+     */
+    public int rejouer() throws SQLException, IOException {
+        synchronized (rejeu) {
+            long pos = 0;
+            int[] n = {0};
+            while (true) {
+                pos = journal.lire(pos, (seq, type, placeId, ref, instant) -> {
+                    appliquer(type, placeId, ref, LocalDateTime.ofEpochSecond(instant, 0, ZoneOffset.UTC));
+                    n[0]++;
+                });
+                List<Stationnement> list = dao.findEnCours();
+                synchronized (this) {
+                    // Un événement journalisé depuis la lecture rend le journal non vide : on recommence
+                    if (journal.vider(pos)) {
+                        remplacer(list);
+                        if (horsLigne) LOG.info("Base disponible : " + n[0] + " événement(s) du journal rejoué(s)");
+                        horsLigne = false;
+                        break;
+                    }
+                }
+            }
+            return n[0];
+        }
+    }
+
+    private void reprendre() {
+        if (!isHorsLigne()) return;
+        try {
+            rejouer();
+        } catch (SQLException e) {
+            LOG.fine("Base toujours indisponible : " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Rejeu du journal impossible", e);
+        }
+    }
+
+    /** Applique un événement du journal s'il ne l'a pas déjà été. */
+    private void appliquer(byte type, int placeId, int ref, LocalDateTime instant) throws SQLException {
+        try {
+            if (type == GateJournal.ENTREE) {
+                if (dao.existeEntree(placeId, ref, instant)) return;
+                Place    place    = placeDAO.findById(placeId);
+                Vehicule vehicule = vehiculeDAO.findById(ref);
+                if (place == null || vehicule == null) {
+                    throw new SQLException("place " + placeId + " ou véhicule " + ref + " introuvable");
+                }
+                dao.create(new Stationnement(0, place, vehicule, instant, null, Money.AUCUN));
+            } else if (type == GateJournal.SORTIE) {
+                Stationnement s = ref > 0 ? dao.findById(ref) : dao.findEnCoursParPlace(placeId);
+                // Déjà close, ou stationnement postérieur à la sortie : rien à faire
+                if (s == null || !s.isEnCours() || s.getPlace().getId() != placeId || s.getDateEntree().isAfter(instant)) return;
+                dao.enregistrerSortie(s.getId(), instant);
+            }
+        } catch (SQLException e) {
+            if (indisponible(e)) throw e;
+            LOG.warning("Rejeu du journal : " + (type == GateJournal.ENTREE ? "entrée" : "sortie")
+                    + " place " + placeId + " du " + instant + " ignorée (" + e.getMessage() + ")");
+        }
+    }
+
+    // ---- Occupation en mémoire ----
+
+    /** Recharge les stationnements en cours depuis la base. */
+    private void charger() throws SQLException {
+        remplacer(dao.findEnCours());
+    }
+
+    private synchronized void remplacer(List<Stationnement> list) {
+        enCours.clear();
+        for (Stationnement s : list) enCours.put(s.getPlace().getId(), s);
+    }
+
+    /** Base indisponible au démarrage : stationnements en cours repris du journal d'audit, sans requête. */
+    private synchronized void chargerAudit() {
+        AuditLog audit = AuditLog.getInstance();
+        if (audit == null) return;
+        OccupancyIndex index = index();
+        for (Stationnement s : audit.enCours()) {
+            Place place = index != null ? index.get(s.getPlace().getId()) : null;
+            if (place != null) s.setPlace(place);
+            enCours.put(s.getPlace().getId(), s);
+        }
+        LOG.info("Occupation reprise du journal d'audit : " + enCours.size() + " stationnement(s) en cours");
+    }
+
+    /** Reporte un enregistrement du journal sur l'occupation (au démarrage, journal non vide). */
+    private synchronized void suivre(long seq, byte type, int placeId, int ref, long instant) {
+        if (type == GateJournal.SORTIE) {
+            enCours.remove(placeId);
+            return;
+        }
+        OccupancyIndex index = index();
+        Place place = index != null ? index.get(placeId) : null;
+        if (place == null) {
+            place = new Place();
+            place.setId(placeId);
+        }
+        Vehicule vehicule = new Vehicule();
+        vehicule.setId(ref);
+        enCours.put(placeId, new Stationnement(0, place, vehicule,
+                LocalDateTime.ofEpochSecond(instant, 0, ZoneOffset.UTC), null, Money.AUCUN));
+    }
+
+    /** Entrée publiée par le DAO (en ligne ou pendant le rejeu). */
+    private synchronized void ouvert(Stationnement s) {
+        int placeId = s.getPlace().getId();
+        Stationnement actuel = enCours.get(placeId);
+        // Pendant le rejeu, ne pas remplacer une entrée plus récente encore dans le journal
+        if (actuel == null || actuel.getId() == s.getId()
+                || (actuel.getId() == 0 && actuel.getDateEntree().equals(s.getDateEntree())
+                    && actuel.getVehicule().getId() == s.getVehicule().getId())) {
+            enCours.put(placeId, s);
+        }
+    }
+
+    /** Sortie publiée par le DAO (en ligne ou pendant le rejeu). */
+    private synchronized void ferme(int placeId, int stationnementId) {
+        Stationnement actuel = enCours.get(placeId);
+        if (actuel != null && actuel.getId() == stationnementId) enCours.remove(placeId);
+    }
+
+    /** Met à jour l'index d'occupation (s'il est chargé) et prévient les écrans. */
+    private static void occupation(int placeId, boolean occupee) {
+        OccupancyIndex index = index();
+        if (index == null) return;
+        if (occupee) index.markOccupee(placeId);
+        else index.markLibre(placeId);
+        Place place = index.get(placeId);
+        if (place != null) EventBus.getInstance().publish(new PlaceChanged(placeId, place));
+    }
+
+    /** Index d'occupation, ou null s'il n'a pas pu être chargé (base indisponible depuis le démarrage). */
+    private static OccupancyIndex index() {
+        return OccupancyIndex.getInstanceSiChargee();
+    }
+
+    private synchronized void basculer(SQLException e) {
+        if (horsLigne) return;
+        horsLigne = true;
+        LOG.warning("Base indisponible (" + e.getMessage() + ") : bornes hors ligne, journal " + journal.getFichier());
+    }
+
+    /** Vrai pour une erreur de connexion (base arrêtée, réseau coupé), faux pour un refus métier. */
+    static boolean indisponible(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException) return true;
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true;
+            }
+        }
+        return false;
+    }
+}
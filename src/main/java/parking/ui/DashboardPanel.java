@@ -1,26 +1,35 @@
 package parking.ui;
 
-import parking.dao.PlaceDAO;
+import parking.dao.OccupancyIndex;
 import parking.dao.StationnementDAO;
+import parking.event.EventBus;
+import parking.event.PlaceChanged;
+import parking.event.SessionClosed;
+import parking.event.SessionOpened;
 import parking.model.Stationnement;
+import parking.service.AsyncDao;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.time.format.DateTimeFormatter;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Onglet Tableau de bord : résumé des places et stationnements en cours.
+ * Chargé une fois, puis tenu à jour par les événements du {@link EventBus} (entrées, sorties, places) :
+ * seules les lignes concernées sont ajoutées, retirées ou redessinées, sans relire la base.
  */
 public class DashboardPanel extends JPanel {
 
-    private final PlaceDAO         placeDAO         = new PlaceDAO();
     private final StationnementDAO statDAO          = new StationnementDAO();
-    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private final AsyncDao         async            = AsyncDao.getInstance();
 
     private JLabel lblLibres, lblOccupees, lblTotal, lblEnCours;
-    private DefaultTableModel tableModel;
+    private final EnCoursTableModel tableModel = new EnCoursTableModel();
+
+    /** Événements reçus pendant un rechargement, rejoués sur l'instantané ; null hors rechargement. */
+    private List<Runnable> enAttente;
 
     public DashboardPanel() {
         setLayout(new BorderLayout(10, 10));
@@ -38,6 +47,16 @@ public class DashboardPanel extends JPanel {
         south.add(btnRefresh);
         add(south, BorderLayout.SOUTH);
 
+        EventBus bus = EventBus.getInstance();
+        bus.subscribe(SessionOpened.class, SwingUtilities::invokeLater,
+                e -> appliquer(() -> tableModel.add(e.getStationnement())));
+        bus.subscribe(SessionClosed.class, SwingUtilities::invokeLater,
+                e -> appliquer(() -> tableModel.remove(e.getStationnementId())));
+        bus.subscribe(PlaceChanged.class, SwingUtilities::invokeLater,
+                e -> appliquer(() -> { if (!e.isSupprimee()) tableModel.placeChanged(e.getPlace()); }));
+        // Durées et montants à ce jour avancent sans événement
+        new Timer(1000, e -> { if (isShowing()) tableModel.tic(); }).start();
+
         refresh();
     }
 
@@ -80,10 +99,6 @@ public class DashboardPanel extends JPanel {
     }
 
     private JPanel buildTablePanel() {
-        String[] cols = {"ID", "Place", "Type place", "Véhicule", "Marque", "Entrée", "Durée (h)"};
-        tableModel = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
         JTable table = new JTable(tableModel);
         table.setRowHeight(24);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
@@ -96,35 +111,54 @@ public class DashboardPanel extends JPanel {
         return panel;
     }
 
+    /** Instantané calculé hors EDT. */
+    private static final class Snapshot {
+        int total, libres, occupees;
+        List<Stationnement> enCours;
+    }
+
     public void refresh() {
+        if (enAttente == null) enAttente = new ArrayList<>();
+        SwingAsync.onEdt(async.supply("dashboard.refresh", () -> {
+            // Compteurs servis par l'index d'occupation (pas d'aller-retour base)
+            OccupancyIndex index = OccupancyIndex.getInstance();
+            Snapshot snap = new Snapshot();
+            snap.total    = index.countTotal();
+            snap.libres   = index.countLibres();
+            snap.occupees = index.countOccupees();
+            snap.enCours  = statDAO.findEnCours();
+            return snap;
+        }), this::apply, ex -> {
+            enAttente = null;
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    private void apply(Snapshot snap) {
+        lblTotal.setText(String.valueOf(snap.total));
+        lblLibres.setText(String.valueOf(snap.libres));
+        lblOccupees.setText(String.valueOf(snap.occupees));
+
+        tableModel.setRows(snap.enCours);
+        // Rejouer dans l'ordre les événements arrivés pendant la lecture (ajout et retrait sont idempotents)
+        List<Runnable> rejouer = enAttente;
+        enAttente = null;
+        if (rejouer != null) rejouer.forEach(Runnable::run);
+        lblEnCours.setText(String.valueOf(tableModel.getRowCount()));
+    }
+
+    /** Applique un événement (sur l'EDT) et met les compteurs à jour depuis l'index d'occupation. */
+    private void appliquer(Runnable maj) {
+        if (enAttente != null) enAttente.add(maj);
+        maj.run();
+        lblEnCours.setText(String.valueOf(tableModel.getRowCount()));
         try {
-            List<parking.model.Place> allPlaces = placeDAO.findAll();
-            long libres   = allPlaces.stream().filter(p -> p.getStatut() == parking.model.Place.Statut.Libre).count();
-            long occupees = allPlaces.stream().filter(p -> p.getStatut() == parking.model.Place.Statut.Occupée).count();
-
-            lblTotal.setText(String.valueOf(allPlaces.size()));
-            lblLibres.setText(String.valueOf(libres));
-            lblOccupees.setText(String.valueOf(occupees));
-
-            List<Stationnement> enCours = statDAO.findEnCours();
-            lblEnCours.setText(String.valueOf(enCours.size()));
-
-            tableModel.setRowCount(0);
-            for (Stationnement s : enCours) {
-                long minutes = java.time.Duration.between(s.getDateEntree(), java.time.LocalDateTime.now()).toMinutes();
-                double heures = Math.round(minutes / 60.0 * 10) / 10.0;
-                tableModel.addRow(new Object[]{
-                        s.getId(),
-                        s.getPlace().getNumero(),
-                        s.getPlace().getType(),
-                        s.getVehicule().getMatricule(),
-                        s.getVehicule().getMarque(),
-                        s.getDateEntree().format(FMT),
-                        heures
-                });
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Erreur : " + ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
+            OccupancyIndex index = OccupancyIndex.getInstance();
+            lblTotal.setText(String.valueOf(index.countTotal()));
+            lblLibres.setText(String.valueOf(index.countLibres()));
+            lblOccupees.setText(String.valueOf(index.countOccupees()));
+        } catch (SQLException ignored) {
+            // Index indisponible : compteurs inchangés jusqu'au prochain rechargement
         }
     }
 }
@@ -0,0 +1,94 @@
+package parking.ui;
+
+import parking.util.ConnectionPool;
+import parking.util.DaoMetrics;
+import parking.util.DatabaseConnection;
+import parking.util.LruCache;
+import parking.util.MethodStats;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Onglet Diagnostics : statistiques des méthodes DAO (appels, erreurs, lignes, latences),
+ * état du pool de connexions et des caches, rafraîchis chaque seconde tant que l'onglet est affiché.
+ * Les valeurs sont lues dans les compteurs en mémoire : aucun accès à la base.
+ */
+public class DiagnosticsPanel extends JPanel {
+
+    private static final String[] COLUMNS = {"Méthode", "Appels", "Erreurs", "Lignes", "Moy (ms)", "p50 (ms)", "p99 (ms)", "Max (ms)"};
+
+    private final DefaultTableModel tableModel;
+    private final JLabel            lblPool   = new JLabel();
+    private final JLabel            lblCaches = new JLabel();
+
+    public DiagnosticsPanel() {
+        setLayout(new BorderLayout(8, 8));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setBackground(new Color(245, 248, 255));
+
+        tableModel = new DefaultTableModel(COLUMNS, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+            @Override public Class<?> getColumnClass(int c) {
+                return c == 0 ? String.class : c <= 3 ? Long.class : Double.class;
+            }
+        };
+        JTable table = new JTable(tableModel);
+        table.setRowHeight(22);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(300);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+        bar.setBackground(new Color(245, 248, 255));
+        JButton btnReset = new JButton("Réinitialiser");
+        btnReset.addActionListener(e -> { DaoMetrics.resetAll(); refresh(); });
+        lblPool.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        bar.add(btnReset);
+        bar.add(lblPool);
+        add(bar, BorderLayout.NORTH);
+
+        lblCaches.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        add(lblCaches, BorderLayout.SOUTH);
+
+        new Timer(1000, e -> { if (isShowing()) refresh(); }).start();
+    }
+
+    private void refresh() {
+        List<MethodStats> stats = DaoMetrics.all();
+        if (tableModel.getRowCount() != stats.size()) tableModel.setRowCount(stats.size());
+        for (int i = 0; i < stats.size(); i++) {
+            MethodStats s = stats.get(i);
+            Object[] row = {s.getName(), s.getCalls(), s.getErrors(), s.getRows(),
+                    round(s.getMeanMs()), round(s.getP50Ms()), round(s.getP99Ms()), round(s.getMaxMs())};
+            for (int c = 0; c < row.length; c++) {
+                if (!row[c].equals(tableModel.getValueAt(i, c))) tableModel.setValueAt(row[c], i, c);
+            }
+        }
+        StringBuilder caches = new StringBuilder("<html>");
+        for (LruCache<?, ?> c : DaoMetrics.caches()) caches.append(DaoMetrics.describe(c)).append("<br>");
+        lblCaches.setText(caches.append("</html>").toString());
+        try {
+            ConnectionPool pool = DatabaseConnection.getPool();
+            String texte = String.format("Pool : %d connexion(s), %d active(s), %d libre(s)",
+                    pool.getTotalCount(), pool.getActiveCount(), pool.getIdleCount());
+            ConnectionPool replique = DatabaseConnection.getPoolReplique(DatabaseConnection.getSiteLocal());
+            if (replique != null) {
+                texte += String.format("  —  réplique : %d connexion(s), %d active(s)",
+                        replique.getTotalCount(), replique.getActiveCount());
+            }
+            lblPool.setText(texte);
+        } catch (SQLException ex) {
+            lblPool.setText("Pool indisponible : " + ex.getMessage());
+        }
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,105 @@
+package parking.ui;
+
+import parking.model.Place;
+import parking.model.Stationnement;
+import parking.model.Tarification;
+import parking.util.Money;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Modèle de la table des stationnements en cours (tableau de bord), tenu à jour ligne par ligne
+ * à partir des événements : une entrée ajoute une ligne, une sortie la retire, une place modifiée
+ * met à jour les lignes qui l'occupent.
+ * La durée et le montant à ce jour ({@link Tarification}) sont calculés à l'affichage,
+ * à l'instant du dernier {@link #tic()}.
+ */
+class EnCoursTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"ID", "Place", "Type place", "Véhicule", "Marque", "Entrée", "Durée (h)", "Montant (€)"};
+    private static final int COL_DUREE = 6, COL_MONTANT = 7;
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    /** Par date d'entrée croissante, comme {@code findEnCours()}. */
+    private final List<Stationnement> rows = new ArrayList<>();
+    /** Instant de calcul des durées et montants, en secondes locales. */
+    private long maintenant = Tarification.secondes(LocalDateTime.now());
+
+    /** Remplace toutes les lignes (chargement complet). */
+    void setRows(List<Stationnement> list) {
+        rows.clear();
+        rows.addAll(list);
+        fireTableDataChanged();
+    }
+
+    void add(Stationnement s) {
+        if (indexOf(s.getId()) >= 0) return; // déjà présent (chargement concurrent)
+        int i = rows.size();
+        while (i > 0 && rows.get(i - 1).getDateEntree().isAfter(s.getDateEntree())) i--;
+        rows.add(i, s);
+        fireTableRowsInserted(i, i);
+    }
+
+    void remove(int stationnementId) {
+        int i = indexOf(stationnementId);
+        if (i < 0) return;
+        rows.remove(i);
+        fireTableRowsDeleted(i, i);
+    }
+
+    /** Reporte une place modifiée sur les lignes qui l'occupent. */
+    void placeChanged(Place place) {
+        for (int i = 0; i < rows.size(); i++) {
+            Stationnement s = rows.get(i);
+            if (s.getPlace() != null && s.getPlace().getId() == place.getId()) {
+                s.setPlace(place);
+                fireTableRowsUpdated(i, i);
+            }
+        }
+    }
+
+    /** Avance l'horloge et redessine les colonnes durée et montant (appelé chaque seconde). */
+    void tic() {
+        maintenant = Tarification.secondes(LocalDateTime.now());
+        if (rows.isEmpty()) return;
+        fireTableChanged(new TableModelEvent(this, 0, rows.size() - 1, COL_DUREE));
+        fireTableChanged(new TableModelEvent(this, 0, rows.size() - 1, COL_MONTANT));
+    }
+
+    private int indexOf(int stationnementId) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId() == stationnementId) return i;
+        }
+        return -1;
+    }
+
+    @Override public int    getRowCount()         { return rows.size(); }
+    @Override public int    getColumnCount()      { return COLUMNS.length; }
+    @Override public String getColumnName(int c)  { return COLUMNS[c]; }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        Stationnement s = rows.get(row);
+        switch (col) {
+            case 0: return s.getId();
+            case 1: return s.getPlace().getNumero();
+            case 2: return s.getPlace().getType();
+            case 3: return s.getVehicule().getMatricule();
+            case 4: return s.getVehicule().getMarque();
+            case 5: return s.getDateEntree().format(FMT);
+            case COL_DUREE:
+                long minutes = (maintenant - Tarification.secondes(s.getDateEntree())) / 60;
+                return Math.round(minutes / 60.0 * 10) / 10.0;
+            case COL_MONTANT:
+                Place p = s.getPlace();
+                return Money.format(Tarification.getInstance().centimes(p.getType(), p.getTarifHoraire(),
+                        Tarification.secondes(s.getDateEntree()), maintenant));
+            default: return null;
+        }
+    }
+}
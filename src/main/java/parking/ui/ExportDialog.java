@@ -0,0 +1,152 @@
+package parking.ui;
+
+import parking.dao.StationnementDAO;
+import parking.dao.StationnementFilter;
+import parking.service.AsyncDao;
+import parking.service.ExportService;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dialogue d'export de l'historique (menu Fichier) : mêmes filtres que l'onglet Stationnements,
+ * format CSV ou JSON, compression gzip. L'export tourne hors EDT ; la barre suit le nombre de lignes
+ * écrites et le débit, le bouton Annuler interrompt la requête en cours.
+ */
+class ExportDialog extends JDialog {
+
+    private final StationnementDAO dao    = new StationnementDAO();
+    private final ExportService    export = new ExportService(dao);
+    private final AsyncDao         async  = AsyncDao.getInstance();
+
+    private final JComboBox<String> cbType    = new JComboBox<>(new String[]{"Tous types", "Auto", "Moto", "PMR"});
+    private final JComboBox<String> cbStatut  = new JComboBox<>(new String[]{"Tous", "En cours", "Terminé"});
+    private final JTextField        tfDebut   = new JTextField("", 10);
+    private final JTextField        tfFin     = new JTextField("", 10);
+    private final JTextField        tfMatricule = new JTextField("", 12);
+    private final JComboBox<ExportService.Format> cbFormat = new JComboBox<>(ExportService.Format.values());
+    private final JCheckBox         chkGzip   = new JCheckBox("Compresser (gzip)");
+    private final JProgressBar      progress  = new JProgressBar();
+    private final JLabel            lblEtat   = new JLabel(" ");
+    private final JButton           btnExporter = new JButton("Exporter…");
+    private final JButton           btnFermer   = new JButton("Fermer");
+
+    private CompletableFuture<Long> enCours;
+
+    ExportDialog(Frame owner) {
+        super(owner, "Exporter l'historique", true);
+        setSize(460, 340);
+        setLocationRelativeTo(owner);
+
+        JPanel form = new JPanel(new GridLayout(0, 2, 8, 8));
+        form.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        form.add(new JLabel("Type place :"));        form.add(cbType);
+        form.add(new JLabel("Statut :"));            form.add(cbStatut);
+        form.add(new JLabel("Du (yyyy-mm-dd) :"));   form.add(tfDebut);
+        form.add(new JLabel("Au :"));                form.add(tfFin);
+        form.add(new JLabel("Matricule :"));         form.add(tfMatricule);
+        form.add(new JLabel("Format :"));            form.add(cbFormat);
+        form.add(new JLabel());                      form.add(chkGzip);
+
+        JPanel bas = new JPanel(new BorderLayout(4, 4));
+        bas.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        progress.setStringPainted(true);
+        progress.setString("");
+        bas.add(progress, BorderLayout.NORTH);
+        bas.add(lblEtat,  BorderLayout.CENTER);
+        JPanel boutons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        boutons.add(btnFermer);
+        boutons.add(btnExporter);
+        bas.add(boutons, BorderLayout.SOUTH);
+
+        setLayout(new BorderLayout());
+        add(form, BorderLayout.CENTER);
+        add(bas,  BorderLayout.SOUTH);
+
+        btnExporter.addActionListener(e -> choisirFichier());
+        btnFermer.addActionListener(e -> {
+            if (enCours != null) enCours.cancel(true);
+            else dispose();
+        });
+        // Fermer la fenêtre pendant un export l'annule
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override public void windowClosed(WindowEvent e) {
+                if (enCours != null) enCours.cancel(true);
+            }
+        });
+    }
+
+    private void choisirFichier() {
+        ExportService.Format format = (ExportService.Format) cbFormat.getSelectedItem();
+        boolean gzip = chkGzip.isSelected();
+        String ext = (format == ExportService.Format.JSON ? ".json" : ".csv") + (gzip ? ".gz" : "");
+
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("stationnements" + ext));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File fichier = fc.getSelectedFile();
+        if (!fichier.getName().toLowerCase().endsWith(ext)) fichier = new File(fichier.getPath() + ext);
+
+        String type   = cbType.getSelectedIndex()   == 0 ? null : (String) cbType.getSelectedItem();
+        String statut = cbStatut.getSelectedIndex() == 0 ? null : (String) cbStatut.getSelectedItem();
+        StationnementFilter f = new StationnementFilter(type, statut, tfDebut.getText(), tfFin.getText(),
+                tfMatricule.getText().trim().toUpperCase());
+        lancer(f, fichier, format, gzip);
+    }
+
+    private void lancer(StationnementFilter f, File fichier, ExportService.Format format, boolean gzip) {
+        btnExporter.setEnabled(false);
+        btnFermer.setText("Annuler");
+        progress.setValue(0);
+        progress.setIndeterminate(true);
+        progress.setString("");
+        lblEtat.setText("Comptage des lignes…");
+
+        int[] total = {0};
+        enCours = async.supply(() -> {
+            total[0] = dao.countFiltered(f);
+            SwingUtilities.invokeLater(() -> {
+                progress.setIndeterminate(false);
+                progress.setMaximum(Math.max(total[0], 1));
+            });
+            try {
+                return export.exporter(f, fichier.toPath(), format, gzip, (lignes, debit) ->
+                        SwingUtilities.invokeLater(() -> afficher(lignes, total[0], debit)));
+            } catch (IOException e) {
+                throw new SQLException("Écriture impossible : " + e.getMessage(), e);
+            }
+        });
+        CompletableFuture<Long> future = enCours;
+        future.whenComplete((n, ex) -> {
+            if (future.isCancelled()) SwingUtilities.invokeLater(() -> terminer("Export annulé."));
+        });
+        SwingAsync.onEdt(future, n -> {
+            terminer(n + " ligne(s) exportée(s) dans " + fichier.getName());
+        }, ex -> {
+            terminer("Échec de l'export.");
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    private void afficher(long lignes, int total, double debit) {
+        if (enCours == null) return; // export annulé entre-temps
+        progress.setValue((int) Math.min(lignes, Integer.MAX_VALUE));
+        progress.setString(lignes + " / " + total);
+        lblEtat.setText(String.format("%.0f lignes/s", debit));
+    }
+
+    private void terminer(String message) {
+        enCours = null;
+        progress.setIndeterminate(false);
+        btnExporter.setEnabled(true);
+        btnFermer.setText("Fermer");
+        lblEtat.setText(message);
+    }
+}
@@ -0,0 +1,115 @@
+package parking.ui;
+
+import parking.service.FlotteService;
+import parking.util.Money;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Onglet Flotte (affiché quand plusieurs sites sont configurés) : occupation de chaque parking
+ * et revenus mensuels par site, avec le total de la flotte. Les sites sont interrogés en parallèle
+ * par {@link FlotteService} ; un site injoignable est signalé sous les tableaux.
+ */
+public class FlottePanel extends JPanel {
+
+    private static final String[] COLONNES_OCCUPATION = {"Site", "Places", "Occupées", "Taux (%)"};
+
+    private final FlotteService     service = new FlotteService();
+    private final DefaultTableModel occupationModel;
+    private final DefaultTableModel revenusModel;
+    private final JTable            tableRevenus;
+    private final JLabel            lblErreurs = new JLabel(" ");
+
+    public FlottePanel() {
+        setLayout(new BorderLayout(8, 8));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setBackground(new Color(245, 248, 255));
+
+        occupationModel = new DefaultTableModel(COLONNES_OCCUPATION, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+            @Override public Class<?> getColumnClass(int c) {
+                return c == 0 ? String.class : c <= 2 ? Integer.class : Double.class;
+            }
+        };
+        revenusModel = new DefaultTableModel() {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+            @Override public Class<?> getColumnClass(int c) { return c == 0 ? String.class : Long.class; }
+        };
+        JTable tableOccupation = table(occupationModel);
+        tableRevenus = table(revenusModel);
+
+        JPanel tables = new JPanel(new GridLayout(2, 1, 8, 8));
+        tables.setOpaque(false);
+        tables.add(titre("Occupation par site", tableOccupation));
+        tables.add(titre("Revenus par mois et par site", tableRevenus));
+        add(tables, BorderLayout.CENTER);
+
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+        bar.setBackground(new Color(245, 248, 255));
+        JButton btnRefresh = new JButton("🔄 Actualiser");
+        btnRefresh.addActionListener(e -> refresh());
+        bar.add(btnRefresh);
+        add(bar, BorderLayout.NORTH);
+
+        lblErreurs.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        lblErreurs.setForeground(new Color(180, 30, 30));
+        add(lblErreurs, BorderLayout.SOUTH);
+
+        refresh();
+    }
+
+    private void refresh() {
+        SwingAsync.onEdt(service.occupation(), this, vue -> {
+            occupationModel.setRowCount(0);
+            for (Object[] ligne : vue.getLignes()) occupationModel.addRow(ligne);
+            afficherErreurs(vue.getErreurs());
+        });
+        SwingAsync.onEdt(service.revenusParMois(), this, vue -> {
+            List<String> colonnes = new ArrayList<>();
+            colonnes.add("Mois");
+            colonnes.addAll(vue.getSites());
+            colonnes.add("Flotte");
+            revenusModel.setDataVector(vue.getLignes().toArray(new Object[0][]), colonnes.toArray());
+            DefaultTableCellRenderer euros = new DefaultTableCellRenderer() {
+                @Override protected void setValue(Object value) {
+                    setText(value == null ? "" : Money.format((Long) value));
+                }
+            };
+            euros.setHorizontalAlignment(SwingConstants.RIGHT);
+            for (int c = 1; c < revenusModel.getColumnCount(); c++) {
+                tableRevenus.getColumnModel().getColumn(c).setCellRenderer(euros);
+            }
+            afficherErreurs(vue.getErreurs());
+        });
+    }
+
+    private void afficherErreurs(Map<String, String> erreurs) {
+        if (erreurs.isEmpty()) {
+            lblErreurs.setText(" ");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("<html>");
+        erreurs.forEach((site, msg) -> sb.append("Site ").append(site).append(" injoignable : ").append(msg).append("<br>"));
+        lblErreurs.setText(sb.append("</html>").toString());
+    }
+
+    private static JTable table(DefaultTableModel model) {
+        JTable table = new JTable(model);
+        table.setRowHeight(22);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        return table;
+    }
+
+    private static JComponent titre(String titre, JTable table) {
+        JScrollPane sp = new JScrollPane(table);
+        sp.setBorder(BorderFactory.createTitledBorder(titre));
+        return sp;
+    }
+}
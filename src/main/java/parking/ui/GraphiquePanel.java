@@ -1,51 +1,198 @@
 package parking.ui;
 
-import parking.dao.StationnementDAO;
+import parking.dao.AnalyticsStore;
+import parking.dao.AnalyticsStore.Axe;
+import parking.dao.AnalyticsStore.Filtre;
+import parking.event.EventBus;
+import parking.event.SessionClosed;
+import parking.model.Place;
+import parking.model.Vehicule;
+import parking.service.AsyncDao;
+import parking.util.Money;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 
 /**
- * Onglet Graphique : Revenus par mois (barres).
- * Utilise un rendu personnalisé sans dépendance externe (JFreeChart est optionnel).
- * Si JFreeChart est disponible dans le classpath, il est utilisé ; sinon,
- * un graphique en barres est dessiné via Graphics2D.
+ * Onglet Graphique : revenus, nombre de stationnements ou durée moyenne, regroupés par mois, semaine, jour,
+ * type de place, place ou catégorie de véhicule.
+ * Les regroupements sont calculés en mémoire par {@link AnalyticsStore} (aucune requête après le chargement) :
+ * un clic sur une barre filtre sur ce groupe et détaille l'axe suivant (mois → jours, type → places…),
+ * « Retour » remonte d'un niveau. Le graphique se met à jour à chaque sortie.
+ * Second onglet : occupation des places au fil du temps ({@link OccupationChart}).
+ * Rendu Graphics2D intégré (sans dépendance externe).
  */
 public class GraphiquePanel extends JPanel {
 
-    private final StationnementDAO dao = new StationnementDAO();
-    private List<Object[]> data; // {mois, total}
+    private static final String[] AXES    = {"Mois", "Semaine", "Jour", "Type de place", "Place", "Catégorie"};
+    private static final Axe[]    AXE_DE  = {Axe.MOIS, Axe.SEMAINE, Axe.JOUR, Axe.TYPE, Axe.PLACE, Axe.CATEGORIE};
+    private static final String[] MESURES = {"Revenus (€)", "Stationnements", "Durée moyenne (min)"};
+
+    private final AsyncDao          async     = AsyncDao.getInstance();
+    private final JComboBox<String> cbAxe     = new JComboBox<>(AXES);
+    private final JComboBox<String> cbMesure  = new JComboBox<>(MESURES);
+    private final JComboBox<String> cbType    = new JComboBox<>(new String[]{"Tous types", "Auto", "Moto", "PMR"});
+    private final JLabel            title     = new JLabel("", JLabel.CENTER);
+    private final JLabel            lblFiltre = new JLabel(" ");
+    private final JButton           btnRetour = new JButton("◀ Retour");
+    private final Timer             rafraichir;
+
+    /** Niveaux précédents du détail : {axe, filtre}. */
+    private final Deque<Object[]> historique = new ArrayDeque<>();
+    private Filtre         filtre = Filtre.TOUT;
+    private List<Object[]> data; // {libellé, clé, nombre, centimes, secondes}
+    private int[]          barX = new int[0];
+    private int            barW;
+    private boolean        majCombos;
 
     public GraphiquePanel() {
         setLayout(new BorderLayout(10, 10));
         setBorder(new EmptyBorder(15, 15, 15, 15));
         setBackground(new Color(245, 248, 255));
+        JPanel regroupements = new JPanel(new BorderLayout(10, 10));
+        regroupements.setBackground(new Color(245, 248, 255));
 
-        JLabel title = new JLabel("Revenus par mois (€)", JLabel.CENTER);
         title.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        add(title, BorderLayout.NORTH);
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.CENTER, 8, 4));
+        controls.setBackground(new Color(245, 248, 255));
+        controls.add(new JLabel("Par :"));
+        controls.add(cbAxe);
+        controls.add(new JLabel("Mesure :"));
+        controls.add(cbMesure);
+        controls.add(cbType);
+        JPanel north = new JPanel(new BorderLayout());
+        north.setBackground(new Color(245, 248, 255));
+        north.add(title, BorderLayout.NORTH);
+        north.add(controls, BorderLayout.SOUTH);
+        regroupements.add(north, BorderLayout.NORTH);
+
+        BarChartCanvas canvas = new BarChartCanvas();
+        canvas.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { detailler(barreA(e.getX())); }
+        });
+        regroupements.add(canvas, BorderLayout.CENTER);
 
-        add(new BarChartCanvas(), BorderLayout.CENTER);
+        cbAxe.addActionListener(e -> { if (!majCombos) loadData(); });
+        cbMesure.addActionListener(e -> { updateTitle(); repaint(); });
+        cbType.addActionListener(e -> {
+            if (majCombos) return;
+            int i = cbType.getSelectedIndex();
+            filtre = filtre.avecType(i == 0 ? null : Place.Type.values()[i - 1]);
+            loadData();
+        });
+        btnRetour.addActionListener(e -> retour());
+        btnRetour.setEnabled(false);
 
         JButton btnRefresh = new JButton("⟳ Actualiser");
-        btnRefresh.addActionListener(e -> { loadData(); repaint(); });
-        JPanel south = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        btnRefresh.addActionListener(e -> loadData());
+        JPanel south = new JPanel(new BorderLayout());
         south.setBackground(new Color(245, 248, 255));
-        south.add(btnRefresh);
-        add(south, BorderLayout.SOUTH);
+        lblFiltre.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        south.add(lblFiltre, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.setBackground(new Color(245, 248, 255));
+        buttons.add(btnRetour);
+        buttons.add(btnRefresh);
+        south.add(buttons, BorderLayout.EAST);
+        regroupements.add(south, BorderLayout.SOUTH);
+
+        JTabbedPane vues = new JTabbedPane();
+        vues.addTab("Regroupements", regroupements);
+        vues.addTab("Occupation", new OccupationChart());
+        add(vues, BorderLayout.CENTER);
+
+        // Sorties regroupées : un seul recalcul par seconde au plus
+        rafraichir = new Timer(1000, e -> { if (isShowing()) loadData(); });
+        rafraichir.setRepeats(false);
+        EventBus.getInstance().subscribe(SessionClosed.class, SwingUtilities::invokeLater, e -> rafraichir.restart());
 
         loadData();
     }
 
+    private Axe axe() {
+        return AXE_DE[cbAxe.getSelectedIndex()];
+    }
+
     private void loadData() {
-        try {
-            data = dao.getRevenusParMois();
+        Axe axe = axe();
+        Filtre f = filtre;
+        updateTitle();
+        lblFiltre.setText(decrire(f));
+        SwingAsync.onEdt(async.supply("graphique.analyse", () -> AnalyticsStore.getInstance().grouper(axe, f)), this, list -> {
+            data = list;
             repaint();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur DB", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    /** Filtre sur la barre cliquée et passe à l'axe de détail. */
+    private void detailler(int i) {
+        if (data == null || i < 0 || i >= data.size()) return;
+        Axe axe = axe();
+        Object cle = data.get(i)[1];
+        Filtre f;
+        Axe suivant;
+        switch (axe) {
+            case MOIS:      f = filtre.avecPeriode((LocalDate) cle, ((LocalDate) cle).plusMonths(1).minusDays(1)); suivant = Axe.JOUR; break;
+            case SEMAINE:   f = filtre.avecPeriode((LocalDate) cle, ((LocalDate) cle).plusDays(6));               suivant = Axe.JOUR; break;
+            case JOUR:      f = filtre.avecPeriode((LocalDate) cle, (LocalDate) cle);                              suivant = Axe.TYPE; break;
+            case TYPE:      f = filtre.avecType((Place.Type) cle);                                                 suivant = Axe.PLACE; break;
+            case CATEGORIE: f = filtre.avecCategorie((Vehicule.Categorie) cle);                                    suivant = Axe.MOIS; break;
+            default:        f = filtre.avecPlace((Integer) cle);                                                   suivant = Axe.MOIS; break;
+        }
+        historique.push(new Object[]{axe, filtre});
+        afficher(suivant, f);
+    }
+
+    private void retour() {
+        Object[] precedent = historique.poll();
+        if (precedent != null) afficher((Axe) precedent[0], (Filtre) precedent[1]);
+    }
+
+    private void afficher(Axe axe, Filtre f) {
+        filtre = f;
+        majCombos = true;
+        for (int i = 0; i < AXE_DE.length; i++) if (AXE_DE[i] == axe) cbAxe.setSelectedIndex(i);
+        cbType.setSelectedIndex(f.getType() == null ? 0 : f.getType().ordinal() + 1);
+        majCombos = false;
+        btnRetour.setEnabled(!historique.isEmpty());
+        loadData();
+    }
+
+    private void updateTitle() {
+        title.setText(MESURES[cbMesure.getSelectedIndex()] + " par " + AXES[cbAxe.getSelectedIndex()].toLowerCase());
+    }
+
+    private static String decrire(Filtre f) {
+        StringBuilder sb = new StringBuilder();
+        if (f.getDu() != null) sb.append(f.getDu().equals(f.getAu()) ? "Le " + f.getDu() : "Du " + f.getDu() + " au " + f.getAu());
+        if (f.getType() != null) sb.append(sb.length() > 0 ? " · " : "").append("Type ").append(f.getType());
+        if (f.getPlaceId() != 0) sb.append(sb.length() > 0 ? " · " : "").append("Place #").append(f.getPlaceId());
+        if (f.getCategorie() != null) sb.append(sb.length() > 0 ? " · " : "").append("Catégorie ").append(f.getCategorie());
+        return sb.length() == 0 ? "Tous les stationnements terminés" : sb.toString();
+    }
+
+    /** Valeur affichée de la ligne selon la mesure choisie. */
+    private double valeur(Object[] r) {
+        long n = (long) r[2];
+        switch (cbMesure.getSelectedIndex()) {
+            case 0:  return Money.euros((long) r[3]);
+            case 1:  return n;
+            default: return n == 0 ? 0 : (long) r[4] / 60.0 / n;
+        }
+    }
+
+    private int barreA(int x) {
+        for (int i = 0; i < barX.length; i++) {
+            if (x >= barX[i] && x < barX[i] + Math.max(barW, 3)) return i;
         }
+        return -1;
     }
 
     // ---- Canvas de dessin ----
@@ -54,15 +201,17 @@ public class GraphiquePanel extends JPanel {
         BarChartCanvas() {
             setBackground(Color.WHITE);
             setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
+            setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             if (data == null || data.isEmpty()) {
+                barX = new int[0];
                 g.setFont(new Font("Segoe UI", Font.ITALIC, 14));
                 g.setColor(Color.GRAY);
-                g.drawString("Aucune donnée disponible.", 40, 80);
+                g.drawString(data == null ? "Chargement…" : "Aucune donnée disponible.", 40, 80);
                 return;
             }
 
@@ -73,14 +222,17 @@ public class GraphiquePanel extends JPanel {
             int paddingLeft = 80, paddingRight = 30, paddingTop = 30, paddingBottom = 60;
             int chartW = W - paddingLeft - paddingRight;
             int chartH = H - paddingTop - paddingBottom;
+            String unite = cbMesure.getSelectedIndex() == 0 ? " €" : cbMesure.getSelectedIndex() == 2 ? " min" : "";
 
             // Valeurs max
-            double maxVal = data.stream().mapToDouble(r -> (double) r[1]).max().orElse(1);
-            maxVal = Math.ceil(maxVal / 10) * 10; // arrondir au 10 supérieur
+            double maxVal = data.stream().mapToDouble(GraphiquePanel.this::valeur).max().orElse(1);
+            maxVal = Math.max(1, Math.ceil(maxVal / 10) * 10); // arrondir au 10 supérieur
 
             int n = data.size();
-            int barWidth = Math.min(60, chartW / n - 10);
-            int gap      = (chartW - n * barWidth) / (n + 1);
+            int barWidth = Math.max(1, Math.min(60, chartW / n - Math.min(10, chartW / n / 4)));
+            int gap      = Math.max(0, (chartW - n * barWidth) / (n + 1));
+            barW = barWidth;
+            barX = new int[n];
 
             // Axe Y (lignes de grille + labels)
             g2.setColor(new Color(220, 220, 220));
@@ -91,7 +243,7 @@ public class GraphiquePanel extends JPanel {
                 g2.drawLine(paddingLeft, y, paddingLeft + chartW, y);
                 g2.setColor(Color.DARK_GRAY);
                 g2.setFont(new Font("Segoe UI", Font.PLAIN, 11));
-                g2.drawString(String.format("%.0f €", val), 5, y + 4);
+                g2.drawString(String.format("%.0f%s", val, unite), 5, y + 4);
                 g2.setColor(new Color(220, 220, 220));
             }
 
@@ -106,12 +258,15 @@ public class GraphiquePanel extends JPanel {
                 new Color(220, 80, 60),  new Color(140, 80, 200), new Color(0, 180, 200)
             };
 
+            // Une étiquette sur k quand les barres sont trop serrées
+            int pas = Math.max(1, (int) Math.ceil(n * 48.0 / Math.max(1, chartW)));
             for (int i = 0; i < n; i++) {
-                String mois  = (String) data.get(i)[0];
-                double val   = (double) data.get(i)[1];
+                String label = (String) data.get(i)[0];
+                double val   = valeur(data.get(i));
                 int barH = (int) (chartH * val / maxVal);
                 int x    = paddingLeft + gap + i * (barWidth + gap);
                 int y    = paddingTop + chartH - barH;
+                barX[i]  = x;
 
                 // Ombre
                 g2.setColor(new Color(0, 0, 0, 30));
@@ -121,6 +276,7 @@ public class GraphiquePanel extends JPanel {
                 g2.setColor(palette[i % palette.length]);
                 g2.fillRoundRect(x, y, barWidth, barH, 6, 6);
 
+                if (i % pas != 0) continue;
                 // Valeur au-dessus
                 g2.setColor(Color.DARK_GRAY);
                 g2.setFont(new Font("Segoe UI", Font.BOLD, 11));
@@ -128,9 +284,9 @@ public class GraphiquePanel extends JPanel {
                 FontMetrics fm = g2.getFontMetrics();
                 g2.drawString(valStr, x + (barWidth - fm.stringWidth(valStr)) / 2, y - 4);
 
-                // Label mois
+                // Label
                 g2.setFont(new Font("Segoe UI", Font.PLAIN, 10));
-                String label = mois.length() > 7 ? mois.substring(2) : mois; // yyyy-mm -> yy-mm
+                if (label.length() > 7 && label.charAt(4) == '-') label = label.substring(2); // yyyy-mm-dd -> yy-mm-dd
                 g2.drawString(label, x + (barWidth - g2.getFontMetrics().stringWidth(label)) / 2,
                         paddingTop + chartH + 16);
             }
@@ -139,7 +295,7 @@ public class GraphiquePanel extends JPanel {
             g2.setFont(new Font("Segoe UI", Font.ITALIC, 11));
             g2.setColor(Color.GRAY);
             g2.rotate(-Math.PI / 2, 12, H / 2.0);
-            g2.drawString("Revenus (€)", 12, (int)(H / 2.0));
+            g2.drawString(MESURES[cbMesure.getSelectedIndex()], 12, (int)(H / 2.0));
             g2.rotate(Math.PI / 2, 12, H / 2.0);
         }
     }
@@ -1,5 +1,7 @@
 package parking.ui;
 
+import parking.util.DatabaseConnection;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -25,6 +27,10 @@ public class MainFrame extends JFrame {
         // ---- Barre de menu ----
         JMenuBar menuBar = new JMenuBar();
         JMenu menuFichier = new JMenu("Fichier");
+        JMenuItem itemExport = new JMenuItem("Exporter l'historique…");
+        itemExport.addActionListener(e -> new ExportDialog(this).setVisible(true));
+        menuFichier.add(itemExport);
+        menuFichier.addSeparator();
         JMenuItem itemQuitter = new JMenuItem("Quitter");
         itemQuitter.addActionListener(e -> System.exit(0));
         menuFichier.add(itemQuitter);
@@ -57,6 +63,8 @@ public class MainFrame extends JFrame {
         tabs.addTab("🚗  Véhicules",        new VehiculePanel());
         tabs.addTab("📋  Stationnements",   new StationnementPanel());
         tabs.addTab("📊  Graphique",        new GraphiquePanel());
+        tabs.addTab("🩺  Diagnostics",      new DiagnosticsPanel());
+        if (DatabaseConnection.getSites().size() > 1) tabs.addTab("🏢  Flotte", new FlottePanel());
 
         // ---- Layout principal ----
         setLayout(new BorderLayout());
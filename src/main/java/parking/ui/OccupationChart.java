@@ -0,0 +1,257 @@
+package parking.ui;
+
+import parking.dao.OccupancyTimeline;
+import parking.dao.OccupancyTimeline.Serie;
+import parking.service.AsyncDao;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Occupation des places au fil du temps : une courbe par type de place et le total, sur un jour
+ * (tranches de 5 min), une semaine (30 min), un mois (2 h) ou une année (1 jour).
+ * Affiche au choix l'occupation moyenne ou le pic de chaque pas, et le pic de la période.
+ * Les données viennent de {@link OccupancyTimeline} ; « Recalculer » relit tout l'historique
+ * (nécessaire après correction de stationnements passés).
+ */
+class OccupationChart extends JPanel {
+
+    private static final String[] PERIODES = {"Jour", "Semaine", "Mois", "Année"};
+    private static final int[]    PAS      = {300, 1800, 7200, 86_400};
+    private static final String[] SERIES   = {"Auto", "Moto", "PMR", "Total"};
+    private static final Color[]  COULEURS = {
+        new Color(30, 100, 200), new Color(255, 165, 0), new Color(60, 179, 113), new Color(90, 90, 90)
+    };
+    private static final DateTimeFormatter HEURE = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+
+    private final AsyncDao          async      = AsyncDao.getInstance();
+    private final JComboBox<String> cbPeriode  = new JComboBox<>(PERIODES);
+    private final JCheckBox         chkPics    = new JCheckBox("Pics");
+    private final JLabel            lblPeriode = new JLabel("", JLabel.CENTER);
+    private final JLabel            lblPics    = new JLabel(" ");
+
+    private LocalDate date = LocalDate.now();
+    private Serie     serie;
+
+    OccupationChart() {
+        setLayout(new BorderLayout(10, 10));
+        setBackground(new Color(245, 248, 255));
+
+        JButton btnPrec = new JButton("◀");
+        JButton btnSuiv = new JButton("▶");
+        JButton btnAujourdhui = new JButton("Aujourd'hui");
+        btnPrec.addActionListener(e -> deplacer(-1));
+        btnSuiv.addActionListener(e -> deplacer(1));
+        btnAujourdhui.addActionListener(e -> { date = LocalDate.now(); loadData(); });
+        cbPeriode.addActionListener(e -> loadData());
+        chkPics.setOpaque(false);
+        chkPics.addActionListener(e -> repaint());
+        lblPeriode.setFont(new Font("Segoe UI", Font.BOLD, 14));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.CENTER, 8, 4));
+        controls.setBackground(new Color(245, 248, 255));
+        controls.add(cbPeriode);
+        controls.add(btnPrec);
+        controls.add(lblPeriode);
+        controls.add(btnSuiv);
+        controls.add(btnAujourdhui);
+        controls.add(chkPics);
+        add(controls, BorderLayout.NORTH);
+
+        add(new LineChartCanvas(), BorderLayout.CENTER);
+
+        JButton btnRecalculer = new JButton("⟳ Recalculer");
+        btnRecalculer.setToolTipText("Relit tout l'historique (après correction de stationnements passés)");
+        btnRecalculer.addActionListener(e -> {
+            OccupancyTimeline.getInstance().reconstruire();
+            loadData();
+        });
+        JButton btnRefresh = new JButton("⟳ Actualiser");
+        btnRefresh.addActionListener(e -> loadData());
+        JPanel south = new JPanel(new BorderLayout());
+        south.setBackground(new Color(245, 248, 255));
+        lblPics.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        south.add(lblPics, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.setBackground(new Color(245, 248, 255));
+        buttons.add(btnRecalculer);
+        buttons.add(btnRefresh);
+        south.add(buttons, BorderLayout.EAST);
+        add(south, BorderLayout.SOUTH);
+
+        loadData();
+    }
+
+    private void deplacer(int sens) {
+        switch (cbPeriode.getSelectedIndex()) {
+            case 0:  date = date.plusDays(sens);   break;
+            case 1:  date = date.plusWeeks(sens);  break;
+            case 2:  date = date.plusMonths(sens); break;
+            default: date = date.plusYears(sens);
+        }
+        loadData();
+    }
+
+    private void loadData() {
+        int periode = cbPeriode.getSelectedIndex();
+        LocalDate du, au;
+        switch (periode) {
+            case 0:
+                du = au = date;
+                lblPeriode.setText(date.toString());
+                break;
+            case 1:
+                du = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                au = du.plusDays(6);
+                lblPeriode.setText(du + " → " + au);
+                break;
+            case 2:
+                du = date.withDayOfMonth(1);
+                au = date.with(TemporalAdjusters.lastDayOfMonth());
+                lblPeriode.setText(du.toString().substring(0, 7));
+                break;
+            default:
+                du = date.withDayOfYear(1);
+                au = date.with(TemporalAdjusters.lastDayOfYear());
+                lblPeriode.setText(String.valueOf(date.getYear()));
+        }
+        int pas = PAS[periode];
+        serie = null;
+        lblPics.setText(" ");
+        repaint();
+        SwingAsync.onEdt(async.supply("graphique.occupation",
+                () -> OccupancyTimeline.getInstance().serie(du, au, pas)), this, s -> {
+            serie = s;
+            afficherPics();
+            repaint();
+        });
+    }
+
+    private void afficherPics() {
+        StringBuilder sb = new StringBuilder("Pics : ");
+        for (int s = SERIES.length - 1; s >= 0; s--) {
+            int i = serie.indicePic(s);
+            if (i < 0) continue;
+            int pic = serie.getPics(s)[i];
+            sb.append(SERIES[s]).append(' ').append(pic);
+            if (pic > 0) sb.append(" (").append(serie.instant(i).format(HEURE)).append(')');
+            if (s > 0) sb.append("  ·  ");
+        }
+        lblPics.setText(sb.toString());
+    }
+
+    // ---- Canvas de dessin ----
+    private class LineChartCanvas extends JPanel {
+
+        LineChartCanvas() {
+            setBackground(Color.WHITE);
+            setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (serie == null || serie.getTaille() == 0) {
+                g.setFont(new Font("Segoe UI", Font.ITALIC, 14));
+                g.setColor(Color.GRAY);
+                g.drawString(serie == null ? "Chargement…" : "Aucune donnée disponible.", 40, 80);
+                return;
+            }
+
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            int W = getWidth(), H = getHeight();
+            int paddingLeft = 60, paddingRight = 30, paddingTop = 30, paddingBottom = 50;
+            int chartW = W - paddingLeft - paddingRight;
+            int chartH = H - paddingTop - paddingBottom;
+            boolean pics = chkPics.isSelected();
+            int total = SERIES.length - 1;
+
+            // Le pic total borne toutes les courbes
+            int i0 = serie.indicePic(total);
+            double maxVal = Math.max(1, Math.ceil(serie.getPics(total)[i0] / 10.0) * 10);
+            // Nombre de pas de la période entière (la série s'arrête à maintenant)
+            LocalDateTime fin = finPeriode();
+            long n = Math.max(serie.getTaille(),
+                    Duration.between(serie.getDebut(), fin).getSeconds() / serie.getPas());
+
+            // Axe Y
+            g2.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+            for (int i = 0; i <= 5; i++) {
+                int y = paddingTop + chartH - chartH * i / 5;
+                g2.setColor(new Color(220, 220, 220));
+                g2.drawLine(paddingLeft, y, paddingLeft + chartW, y);
+                g2.setColor(Color.DARK_GRAY);
+                g2.drawString(String.format("%.0f", maxVal * i / 5), 5, y + 4);
+            }
+            g2.drawLine(paddingLeft, paddingTop + chartH, paddingLeft + chartW, paddingTop + chartH);
+            g2.drawLine(paddingLeft, paddingTop, paddingLeft, paddingTop + chartH);
+
+            // Axe X : une dizaine d'étiquettes
+            g2.setFont(new Font("Segoe UI", Font.PLAIN, 10));
+            DateTimeFormatter fmt = serie.getPas() < 3600 && n <= 288 ? DateTimeFormatter.ofPattern("HH:mm")
+                    : serie.getPas() < 86_400 ? DateTimeFormatter.ofPattern("dd/MM HH'h'") : DateTimeFormatter.ofPattern("dd/MM");
+            long etiquette = Math.max(1, n / 10);
+            for (long i = 0; i < n; i += etiquette) {
+                int x = paddingLeft + (int) (chartW * i / n);
+                String label = serie.instant((int) i).format(fmt);
+                g2.setColor(new Color(235, 235, 235));
+                g2.drawLine(x, paddingTop, x, paddingTop + chartH);
+                g2.setColor(Color.DARK_GRAY);
+                g2.drawString(label, x - g2.getFontMetrics().stringWidth(label) / 2, paddingTop + chartH + 16);
+            }
+
+            // Courbes
+            g2.setStroke(new BasicStroke(1.6f));
+            for (int s = 0; s < SERIES.length; s++) {
+                g2.setColor(COULEURS[s]);
+                int px = -1, py = -1;
+                for (int i = 0; i < serie.getTaille(); i++) {
+                    double v = pics ? serie.getPics(s)[i] : serie.getMoyennes(s)[i];
+                    int x = paddingLeft + (int) (chartW * (i + 0.5) / n);
+                    int y = paddingTop + chartH - (int) (chartH * v / maxVal);
+                    if (px >= 0) g2.drawLine(px, py, x, y);
+                    px = x;
+                    py = y;
+                }
+                // Légende
+                int lx = paddingLeft + 10 + s * 80;
+                g2.fillRect(lx, 10, 14, 4);
+                g2.setColor(Color.DARK_GRAY);
+                g2.drawString(SERIES[s], lx + 18, 16);
+            }
+
+            // Pic total
+            int x = paddingLeft + (int) (chartW * (i0 + 0.5) / n);
+            int y = paddingTop + chartH - (int) (chartH * serie.getPics(total)[i0] / maxVal);
+            g2.setColor(new Color(200, 40, 40));
+            g2.fillOval(x - 4, y - 4, 8, 8);
+            g2.setFont(new Font("Segoe UI", Font.BOLD, 11));
+            g2.drawString("Pic " + serie.getPics(total)[i0], x + 6, Math.max(paddingTop + 10, y - 4));
+
+            // Titre axe Y
+            g2.setFont(new Font("Segoe UI", Font.ITALIC, 11));
+            g2.setColor(Color.GRAY);
+            g2.rotate(-Math.PI / 2, 12, H / 2.0);
+            g2.drawString(pics ? "Places occupées (pic)" : "Places occupées (moyenne)", 12, (int) (H / 2.0));
+            g2.rotate(Math.PI / 2, 12, H / 2.0);
+        }
+
+        private LocalDateTime finPeriode() {
+            LocalDateTime debut = serie.getDebut();
+            switch (cbPeriode.getSelectedIndex()) {
+                case 0:  return debut.plusDays(1);
+                case 1:  return debut.plusWeeks(1);
+                case 2:  return debut.plusMonths(1);
+                default: return debut.plusYears(1);
+            }
+        }
+    }
+}
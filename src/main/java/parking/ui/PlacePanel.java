@@ -1,27 +1,41 @@
 package parking.ui;
 
 import parking.dao.PlaceDAO;
+import parking.event.EventBus;
+import parking.event.PlaceChanged;
 import parking.model.Place;
+import parking.service.AsyncDao;
+import parking.util.Money;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Vector;
 
 /**
  * Onglet CRUD Gestion des Places.
+ * Les changements de places ({@link PlaceChanged} : CRUD, entrées, sorties) sont reportés ligne par ligne,
+ * y compris ceux faits depuis un autre onglet.
  */
 public class PlacePanel extends JPanel {
 
-    private final PlaceDAO dao = new PlaceDAO();
+    private final PlaceDAO dao   = new PlaceDAO();
+    private final AsyncDao async = AsyncDao.getInstance();
 
     private DefaultTableModel tableModel;
     private JTable            table;
     private TableRowSorter<DefaultTableModel> sorter;
 
+    /** Filtre du dernier chargement (null = tous). */
+    private String filtreType, filtreStatut;
+    /** Événements reçus pendant un chargement, rejoués sur son résultat ; null hors chargement. */
+    private List<PlaceChanged> enAttente;
+
     // Formulaire
-    private JTextField  tfNumero, tfTarif, tfSearch;
+    private JTextField  tfNumero, tfTarif, tfSearch, tfZone, tfNiveau, tfDistance;
     private JComboBox<String> cbType, cbStatut, cbFilterType, cbFilterStatut;
 
     public PlacePanel() {
@@ -33,6 +47,10 @@ public class PlacePanel extends JPanel {
         add(buildTablePanel(), BorderLayout.CENTER);
         add(buildFormPanel(),  BorderLayout.EAST);
 
+        EventBus.getInstance().subscribe(PlaceChanged.class, SwingUtilities::invokeLater, e -> {
+            if (enAttente != null) enAttente.add(e);
+            appliquer(e);
+        });
         loadTable(null, null);
     }
 
@@ -57,7 +75,7 @@ public class PlacePanel extends JPanel {
 
     // ---- Table ----
     private JPanel buildTablePanel() {
-        String[] cols = {"ID", "Numéro", "Type", "Statut", "Tarif (€/h)"};
+        String[] cols = {"ID", "Numéro", "Type", "Statut", "Tarif (€/h)", "Zone", "Niveau", "Distance (m)"};
         tableModel = new DefaultTableModel(cols, 0) {
             @Override public boolean isCellEditable(int r, int c) { return false; }
         };
@@ -88,6 +106,9 @@ public class PlacePanel extends JPanel {
 
         tfNumero = new JTextField(12);
         tfTarif  = new JTextField(12);
+        tfZone     = new JTextField("A", 12);
+        tfNiveau   = new JTextField("0", 12);
+        tfDistance = new JTextField("0", 12);
         cbType   = new JComboBox<>(new String[]{"Auto", "Moto", "PMR"});
         cbStatut = new JComboBox<>(new String[]{"Libre", "Occupée"});
 
@@ -95,6 +116,9 @@ public class PlacePanel extends JPanel {
         addFormRow(p, "Type :",    cbType);
         addFormRow(p, "Statut :",  cbStatut);
         addFormRow(p, "Tarif €/h:", tfTarif);
+        addFormRow(p, "Zone :",     tfZone);
+        addFormRow(p, "Niveau :",   tfNiveau);
+        addFormRow(p, "Distance à l'entrée (m) :", tfDistance);
 
         p.add(Box.createVerticalStrut(10));
 
@@ -135,11 +159,12 @@ public class PlacePanel extends JPanel {
             Place p = new Place(0, tfNumero.getText().trim(),
                     Place.Type.valueOf((String) cbType.getSelectedItem()),
                     Place.Statut.valueOf((String) cbStatut.getSelectedItem()),
-                    Double.parseDouble(tfTarif.getText().trim()));
-            dao.create(p);
-            clearForm();
-            loadTable(null, null);
-            JOptionPane.showMessageDialog(this, "Place créée avec succès !", "Succès", JOptionPane.INFORMATION_MESSAGE);
+                    Money.parse(tfTarif.getText()));
+            emplacement(p);
+            SwingAsync.onEdt(async.run(() -> dao.create(p)), this, v -> {
+                clearForm();
+                JOptionPane.showMessageDialog(this, "Place créée avec succès !", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            });
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
         }
@@ -154,10 +179,11 @@ public class PlacePanel extends JPanel {
             Place p = new Place(id, tfNumero.getText().trim(),
                     Place.Type.valueOf((String) cbType.getSelectedItem()),
                     Place.Statut.valueOf((String) cbStatut.getSelectedItem()),
-                    Double.parseDouble(tfTarif.getText().trim()));
-            dao.update(p);
-            loadTable(null, null);
-            JOptionPane.showMessageDialog(this, "Place modifiée.", "Succès", JOptionPane.INFORMATION_MESSAGE);
+                    Money.parse(tfTarif.getText()));
+            emplacement(p);
+            SwingAsync.onEdt(async.run(() -> dao.update(p)), this, v -> {
+                JOptionPane.showMessageDialog(this, "Place modifiée.", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            });
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
         }
@@ -168,14 +194,8 @@ public class PlacePanel extends JPanel {
         if (row < 0) { JOptionPane.showMessageDialog(this, "Sélectionnez une place."); return; }
         if (JOptionPane.showConfirmDialog(this, "Supprimer cette place ?", "Confirmation",
                 JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
-        try {
-            int id = (int) tableModel.getValueAt(table.convertRowIndexToModel(row), 0);
-            dao.delete(id);
-            clearForm();
-            loadTable(null, null);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-        }
+        int id = (int) tableModel.getValueAt(table.convertRowIndexToModel(row), 0);
+        SwingAsync.onEdt(async.run(() -> dao.delete(id)), this, v -> clearForm());
     }
 
     private void applyFilter() {
@@ -194,17 +214,47 @@ public class PlacePanel extends JPanel {
     }
 
     private void loadTable(String type, String statut) {
-        try {
-            List<Place> list = dao.findFiltered(type, statut);
+        filtreType   = type;
+        filtreStatut = statut;
+        if (enAttente == null) enAttente = new ArrayList<>();
+        SwingAsync.onEdt(async.supply("places.table", () -> dao.findFiltered(type, statut)), list -> {
             tableModel.setRowCount(0);
-            for (Place p : list) {
-                tableModel.addRow(new Object[]{
-                        p.getId(), p.getNumero(), p.getType(), p.getStatut(), p.getTarifHoraire()
-                });
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur DB", JOptionPane.ERROR_MESSAGE);
+            for (Place p : list) tableModel.addRow(row(p));
+            List<PlaceChanged> rejouer = enAttente;
+            enAttente = null;
+            for (PlaceChanged e : rejouer) appliquer(e);
+        }, ex -> {
+            enAttente = null;
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    /** Ajoute, met à jour ou retire la ligne de la place selon le filtre courant. */
+    private void appliquer(PlaceChanged e) {
+        int row = -1;
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            if ((int) tableModel.getValueAt(i, 0) == e.getPlaceId()) { row = i; break; }
         }
+        Place p = e.getPlace();
+        boolean visible = p != null
+                && (filtreType   == null || p.getType().name().equals(filtreType))
+                && (filtreStatut == null || p.getStatut().name().equals(filtreStatut));
+        if (!visible) {
+            if (row >= 0) tableModel.removeRow(row);
+        } else if (row < 0) {
+            tableModel.addRow(row(p));
+        } else {
+            @SuppressWarnings("unchecked")
+            Vector<Object> data = tableModel.getDataVector().get(row);
+            Object[] values = row(p);
+            for (int c = 0; c < values.length; c++) data.set(c, values[c]);
+            tableModel.fireTableRowsUpdated(row, row);
+        }
+    }
+
+    private static Object[] row(Place p) {
+        return new Object[]{p.getId(), p.getNumero(), p.getType(), p.getStatut(), Money.format(p.getTarifHoraire()),
+                p.getZone(), p.getNiveau(), p.getDistance()};
     }
 
     private void populateForm() {
@@ -215,11 +265,17 @@ public class PlacePanel extends JPanel {
         cbType.setSelectedItem(tableModel.getValueAt(model, 2).toString());
         cbStatut.setSelectedItem(tableModel.getValueAt(model, 3).toString());
         tfTarif.setText(tableModel.getValueAt(model, 4).toString());
+        tfZone.setText(tableModel.getValueAt(model, 5).toString());
+        tfNiveau.setText(tableModel.getValueAt(model, 6).toString());
+        tfDistance.setText(tableModel.getValueAt(model, 7).toString());
     }
 
     private void clearForm() {
         tfNumero.setText("");
         tfTarif.setText("");
+        tfZone.setText("A");
+        tfNiveau.setText("0");
+        tfDistance.setText("0");
         cbType.setSelectedIndex(0);
         cbStatut.setSelectedIndex(0);
         table.clearSelection();
@@ -228,7 +284,22 @@ public class PlacePanel extends JPanel {
     private void validateForm() throws Exception {
         if (tfNumero.getText().trim().isEmpty()) throw new Exception("Le numéro est obligatoire.");
         if (tfTarif.getText().trim().isEmpty())  throw new Exception("Le tarif est obligatoire.");
-        try { Double.parseDouble(tfTarif.getText().trim()); }
+        try { Money.parse(tfTarif.getText()); }
         catch (NumberFormatException e) { throw new Exception("Tarif invalide (nombre attendu)."); }
+        if (tfZone.getText().trim().isEmpty())     throw new Exception("La zone est obligatoire.");
+        if (tfZone.getText().trim().length() > 10) throw new Exception("La zone fait au plus 10 caractères.");
+        try {
+            Integer.parseInt(tfNiveau.getText().trim());
+            if (Integer.parseInt(tfDistance.getText().trim()) < 0) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            throw new Exception("Niveau et distance : nombres entiers attendus (distance positive).");
+        }
+    }
+
+    /** Zone, niveau et distance saisis (formulaire validé). */
+    private void emplacement(Place p) {
+        p.setZone(tfZone.getText().trim());
+        p.setNiveau(Integer.parseInt(tfNiveau.getText().trim()));
+        p.setDistance(Integer.parseInt(tfDistance.getText().trim()));
     }
 }
@@ -2,14 +2,20 @@ package parking.ui;
 
 import parking.dao.PlaceDAO;
 import parking.dao.StationnementDAO;
+import parking.dao.StationnementFilter;
 import parking.dao.VehiculeDAO;
 import parking.model.Place;
 import parking.model.Stationnement;
 import parking.model.Vehicule;
+import parking.service.AsyncDao;
+import parking.service.GateService;
+import parking.util.Money;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -26,11 +32,12 @@ public class StationnementPanel extends JPanel {
     private final StationnementDAO dao          = new StationnementDAO();
     private final PlaceDAO         placeDAO     = new PlaceDAO();
     private final VehiculeDAO      vehiculeDAO  = new VehiculeDAO();
+    private final AsyncDao         async        = AsyncDao.getInstance();
 
     private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
-    private DefaultTableModel tableModel;
-    private JTable            table;
+    private StationnementTableModel tableModel;
+    private JTable                  table;
 
     // Filtres
     private JComboBox<String> cbFilterType, cbFilterStatut;
@@ -79,10 +86,8 @@ public class StationnementPanel extends JPanel {
 
     // ---- Table ----
     private JPanel buildTablePanel() {
-        String[] cols = {"ID", "Place", "Type Place", "Véhicule", "Marque", "Entrée", "Sortie", "Montant (€)", "Statut"};
-        tableModel = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        // Modèle virtuel : les pages sont chargées au défilement
+        tableModel = new StationnementTableModel(dao);
         table = new JTable(tableModel);
         table.setRowHeight(24);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
@@ -120,58 +125,76 @@ public class StationnementPanel extends JPanel {
 
     // ---- Dialog Nouvelle Entrée ----
     private void dialogEntree() {
+        // Listes chargées hors EDT, dialogue ouvert à leur arrivée
+        SwingAsync.onEdt(async.supply(() -> new Object[]{placeDAO.findZones(), vehiculeDAO.findAll()}), this, lists -> {
+            @SuppressWarnings("unchecked") List<String>   zones     = (List<String>) lists[0];
+            @SuppressWarnings("unchecked") List<Vehicule> vehicules = (List<Vehicule>) lists[1];
+            showDialogEntree(zones, vehicules);
+        });
+    }
+
+    /** La place est attribuée automatiquement : la plus proche de la borne, du type et de la zone choisis. */
+    private void showDialogEntree(List<String> zones, List<Vehicule> vehicules) {
         JDialog dlg = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Nouvelle Entrée", true);
         dlg.setSize(400, 280);
         dlg.setLocationRelativeTo(this);
         dlg.setLayout(new GridLayout(0, 2, 8, 8));
         dlg.getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
-        JComboBox<String> cbPlaces    = new JComboBox<>();
-        JComboBox<String> cbVehicules = new JComboBox<>();
+        JComboBox<String>     cbVehicules = new JComboBox<>();
+        JComboBox<Place.Type> cbType      = new JComboBox<>(Place.Type.values());
+        JComboBox<String>     cbZone      = new JComboBox<>();
 
         // Remplir listes
-        try {
-            List<Place> libres = placeDAO.findFiltered(null, "Libre");
-            for (Place pl : libres) cbPlaces.addItem(pl.getId() + " – " + pl.getNumero() + " (" + pl.getType() + ") " + pl.getTarifHoraire() + "€/h");
-            List<Vehicule> vehicules = vehiculeDAO.findAll();
-            for (Vehicule v : vehicules) cbVehicules.addItem(v.getId() + " – " + v.getMatricule() + " " + v.getMarque());
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
+        for (Vehicule v : vehicules) cbVehicules.addItem(v.getId() + " – " + v.getMatricule() + " " + v.getMarque());
+        cbZone.addItem("Toutes zones (la plus proche)");
+        for (String z : zones) cbZone.addItem(z);
+        // Type de place proposé : celui de la catégorie du véhicule
+        cbVehicules.addActionListener(e -> {
+            int i = cbVehicules.getSelectedIndex();
+            if (i >= 0 && vehicules.get(i).getCategorie() != null) {
+                cbType.setSelectedItem(Place.Type.valueOf(vehicules.get(i).getCategorie().name()));
+            }
+        });
+        if (!vehicules.isEmpty()) cbVehicules.setSelectedIndex(0);
 
-        dlg.add(new JLabel("Place libre :")); dlg.add(cbPlaces);
-        dlg.add(new JLabel("Véhicule :"));   dlg.add(cbVehicules);
+        dlg.add(new JLabel("Véhicule :"));      dlg.add(cbVehicules);
+        dlg.add(new JLabel("Type de place :")); dlg.add(cbType);
+        dlg.add(new JLabel("Zone :"));          dlg.add(cbZone);
 
         JButton btnOk = new JButton("Enregistrer l'entrée");
         JButton btnAnnuler = new JButton("Annuler");
         dlg.add(btnAnnuler); dlg.add(btnOk);
 
         btnOk.addActionListener(e -> {
-            if (cbPlaces.getItemCount() == 0 || cbVehicules.getItemCount() == 0) {
-                JOptionPane.showMessageDialog(dlg, "Aucune place libre ou véhicule disponible.");
+            if (cbVehicules.getItemCount() == 0) {
+                JOptionPane.showMessageDialog(dlg, "Aucun véhicule disponible.");
                 return;
             }
-            try {
-                String placeStr = (String) cbPlaces.getSelectedItem();
-                String vehicStr = (String) cbVehicules.getSelectedItem();
-                int placeId    = Integer.parseInt(placeStr.split(" ")[0]);
-                int vehiculeId = Integer.parseInt(vehicStr.split(" ")[0]);
-
-                Place   place   = placeDAO.findById(placeId);
-                Vehicule vehicule = vehiculeDAO.findById(vehiculeId);
-
-                Stationnement s = new Stationnement();
-                s.setPlace(place); s.setVehicule(vehicule);
-                s.setDateEntree(LocalDateTime.now());
-                dao.create(s);
-
-                JOptionPane.showMessageDialog(dlg, "Entrée enregistrée ! Place " + place.getNumero() + " attribuée.", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            Vehicule   vehicule = vehicules.get(cbVehicules.getSelectedIndex());
+            Place.Type type     = (Place.Type) cbType.getSelectedItem();
+            String     zone     = cbZone.getSelectedIndex() == 0 ? null : (String) cbZone.getSelectedItem();
+
+            btnOk.setEnabled(false);
+            // Par le service des bornes : l'entrée est journalisée si la base ne répond plus
+            SwingAsync.onEdt(async.supply(() -> {
+                try {
+                    return GateService.getInstance().entree(type, zone, vehicule, LocalDateTime.now());
+                } catch (IOException ex) {
+                    throw new SQLException("Journal des bornes inaccessible : " + ex.getMessage(), ex);
+                }
+            }), s -> {
+                Place p = s.getPlace();
+                String msg = "Entrée enregistrée ! Place " + p.getNumero() + " attribuée (zone " + p.getZone()
+                        + ", niveau " + p.getNiveau() + ", " + p.getDistance() + " m).";
+                if (s.getId() == 0) msg += "\nBase indisponible : entrée conservée dans le journal local, enregistrée au retour de la base.";
+                JOptionPane.showMessageDialog(dlg, msg, "Succès", JOptionPane.INFORMATION_MESSAGE);
                 dlg.dispose();
                 loadTable();
-            } catch (Exception ex) {
+            }, ex -> {
+                btnOk.setEnabled(true);
                 JOptionPane.showMessageDialog(dlg, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
         btnAnnuler.addActionListener(e -> dlg.dispose());
         dlg.setVisible(true);
@@ -181,34 +204,42 @@ public class StationnementPanel extends JPanel {
     private void enregistrerSortie() {
         int row = table.getSelectedRow();
         if (row < 0) { JOptionPane.showMessageDialog(this, "Sélectionnez un stationnement en cours."); return; }
-        int id = (int) tableModel.getValueAt(row, 0);
+        Object idValue = tableModel.getValueAt(row, 0);
+        if (idValue == null) { JOptionPane.showMessageDialog(this, "Chargement en cours, réessayez."); return; }
+        int id = (int) idValue;
         String statut = (String) tableModel.getValueAt(row, 8);
         if (!"En cours".equals(statut)) {
             JOptionPane.showMessageDialog(this, "Ce stationnement est déjà terminé."); return;
         }
         if (JOptionPane.showConfirmDialog(this, "Enregistrer la sortie maintenant ?", "Confirmation",
                 JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
-        try {
-            dao.enregistrerSortie(id, LocalDateTime.now());
-            // Retrieve and show montant
-            Stationnement s = dao.findById(id);
+        LocalDateTime sortie = LocalDateTime.now();
+        SwingAsync.onEdt(async.supply(() -> {
+            try {
+                return GateService.getInstance().sortieStationnement(id, sortie);
+            } catch (IOException e) {
+                throw new SQLException("Journal des bornes inaccessible : " + e.getMessage(), e);
+            }
+        }), this, montant -> {
             JOptionPane.showMessageDialog(this,
-                    String.format("Sortie enregistrée.\nMontant calculé : %.2f €", s.getMontant()),
+                    "Sortie enregistrée.\nMontant calculé : " + Money.format(montant) + " €",
                     "Sortie", JOptionPane.INFORMATION_MESSAGE);
             loadTable();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     // ---- Historique Véhicule ----
     private void dialogHistorique() {
         String mat = JOptionPane.showInputDialog(this, "Matricule du véhicule :");
         if (mat == null || mat.trim().isEmpty()) return;
-        try {
-            Vehicule v = vehiculeDAO.findByMatricule(mat.trim().toUpperCase());
-            if (v == null) { JOptionPane.showMessageDialog(this, "Véhicule non trouvé."); return; }
-            List<Stationnement> hist = dao.findByVehicule(v.getId());
+        String matricule = mat.trim().toUpperCase();
+        SwingAsync.onEdt(async.supply(() -> {
+            Vehicule v = vehiculeDAO.findByMatricule(matricule);
+            return v == null ? null : new Object[]{v, dao.findByVehicule(v.getId())};
+        }), this, res -> {
+            if (res == null) { JOptionPane.showMessageDialog(this, "Véhicule non trouvé."); return; }
+            Vehicule v = (Vehicule) res[0];
+            @SuppressWarnings("unchecked") List<Stationnement> hist = (List<Stationnement>) res[1];
 
             JDialog dlg = new JDialog((Frame) SwingUtilities.getWindowAncestor(this),
                     "Historique – " + v.getMatricule() + " " + v.getMarque(), true);
@@ -221,72 +252,38 @@ public class StationnementPanel extends JPanel {
                         s.getPlace().getNumero(),
                         s.getDateEntree().format(FMT),
                         s.getDateSortie() != null ? s.getDateSortie().format(FMT) : "—",
-                        s.getMontant() != null ? String.format("%.2f", s.getMontant()) : "—",
+                        s.hasMontant() ? Money.format(s.getMontant()) : "—",
                         s.isEnCours() ? "En cours" : "Terminé"
                 });
             }
             JTable t = new JTable(m); t.setRowHeight(24);
             dlg.add(new JScrollPane(t));
             dlg.setVisible(true);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     // ---- Supprimer ----
     private void supprimerStationnement() {
         int row = table.getSelectedRow();
         if (row < 0) { JOptionPane.showMessageDialog(this, "Sélectionnez un stationnement."); return; }
+        Object idValue = tableModel.getValueAt(row, 0);
+        if (idValue == null) { JOptionPane.showMessageDialog(this, "Chargement en cours, réessayez."); return; }
         if (JOptionPane.showConfirmDialog(this, "Supprimer ce stationnement ?", "Confirmation",
                 JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
-        try {
-            int id = (int) tableModel.getValueAt(row, 0);
-            dao.delete(id);
-            loadTable();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-        }
+        int id = (int) idValue;
+        SwingAsync.onEdt(async.run(() -> dao.delete(id)), this, v -> loadTable());
     }
 
     private void applyFilter() {
         String type   = cbFilterType.getSelectedIndex()   == 0 ? null : (String) cbFilterType.getSelectedItem();
         String statut = cbFilterStatut.getSelectedIndex() == 0 ? null : (String) cbFilterStatut.getSelectedItem();
-        String debut  = tfFilterDateDebut.getText().trim().isEmpty() ? null : tfFilterDateDebut.getText().trim();
-        String fin    = tfFilterDateFin.getText().trim().isEmpty()   ? null : tfFilterDateFin.getText().trim();
-        try {
-            List<Stationnement> list = dao.findFiltered(type, statut, debut, fin);
-            // Apply vehicle filter client-side
-            String matFilter = tfFilterVehicule.getText().trim().toUpperCase();
-            populateTable(list, matFilter);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur DB", JOptionPane.ERROR_MESSAGE);
-        }
+        String debut  = tfFilterDateDebut.getText().trim();
+        String fin    = tfFilterDateFin.getText().trim();
+        String mat    = tfFilterVehicule.getText().trim().toUpperCase();
+        tableModel.setFilter(new StationnementFilter(type, statut, debut, fin, mat), this);
     }
 
     private void loadTable() {
-        try {
-            List<Stationnement> list = dao.findAll();
-            populateTable(list, "");
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur DB", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    private void populateTable(List<Stationnement> list, String matFilter) {
-        tableModel.setRowCount(0);
-        for (Stationnement s : list) {
-            if (!matFilter.isEmpty() && !s.getVehicule().getMatricule().contains(matFilter)) continue;
-            tableModel.addRow(new Object[]{
-                    s.getId(),
-                    s.getPlace().getNumero(),
-                    s.getPlace().getType(),
-                    s.getVehicule().getMatricule(),
-                    s.getVehicule().getMarque(),
-                    s.getDateEntree().format(FMT),
-                    s.getDateSortie() != null ? s.getDateSortie().format(FMT) : "—",
-                    s.getMontant() != null ? String.format("%.2f", s.getMontant()) : "—",
-                    s.isEnCours() ? "En cours" : "Terminé"
-            });
-        }
+        tableModel.setFilter(StationnementFilter.AUCUN, this);
     }
 }
@@ -0,0 +1,158 @@
+package parking.ui;
+
+import parking.dao.PageCursor;
+import parking.dao.StationnementDAO;
+import parking.dao.StationnementFilter;
+import parking.model.Stationnement;
+
+import parking.service.AsyncDao;
+import parking.util.Money;
+
+import javax.swing.table.AbstractTableModel;
+import java.awt.Component;
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Modèle de table virtuel pour l'historique des stationnements.
+ * Seul le nombre de lignes est connu d'avance ; les pages sont chargées à la demande
+ * (pagination par clé sur dateEntree, id) quand la JTable les affiche, et seules les
+ * dernières pages consultées sont gardées en mémoire.
+ * Comptage et pages sont chargés hors EDT ; une cellule non encore chargée vaut null.
+ */
+public class StationnementTableModel extends AbstractTableModel {
+
+    private static final Logger LOG = Logger.getLogger(StationnementTableModel.class.getName());
+
+    static final String[] COLUMNS = {"ID", "Place", "Type Place", "Véhicule", "Marque", "Entrée", "Sortie", "Montant (€)", "Statut"};
+
+    private static final int PAGE_SIZE    = 200;
+    private static final int MAX_PAGES    = 8;
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private final StationnementDAO dao;
+    private final AsyncDao         async = AsyncDao.getInstance();
+
+    // État modifié sur l'EDT uniquement (sauf boundaries, alimenté aussi par les chargements)
+    private StationnementFilter filter = StationnementFilter.AUCUN;
+    private int rowCount;
+    /** Incrémenté à chaque changement de filtre : les pages d'un ancien filtre sont ignorées. */
+    private int generation;
+    private final Set<Integer> pending = new HashSet<>();
+
+    /** Page -> curseur de la dernière ligne de la page précédente (absent de la page 0 : début). */
+    private volatile ConcurrentSkipListMap<Integer, PageCursor> boundaries = new ConcurrentSkipListMap<>();
+
+    /** Pages chargées, en ordre LRU. */
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> e) { return size() > MAX_PAGES; }
+    };
+
+    public StationnementTableModel(StationnementDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Applique un nouveau filtre : seul le comptage est exécuté (hors EDT),
+     * les lignes viendront à l'affichage. Les erreurs sont affichées par rapport à parent.
+     */
+    public void setFilter(StationnementFilter filter, Component parent) {
+        SwingAsync.onEdt(async.supply("stationnements.count", () -> dao.countFiltered(filter)), parent, count -> {
+            this.filter = filter;
+            this.rowCount = count;
+            generation++;
+            boundaries = new ConcurrentSkipListMap<>();
+            pages.clear();
+            pending.clear();
+            fireTableDataChanged();
+        });
+    }
+
+    /** Recharge avec le filtre courant. */
+    public void refresh(Component parent) {
+        setFilter(filter, parent);
+    }
+
+    @Override public int     getRowCount()                { return rowCount; }
+    @Override public int     getColumnCount()             { return COLUMNS.length; }
+    @Override public String  getColumnName(int c)         { return COLUMNS[c]; }
+    @Override public boolean isCellEditable(int r, int c) { return false; }
+
+    /** Valeur affichée, ou null si la page est en cours de chargement. */
+    @Override
+    public Object getValueAt(int row, int col) {
+        Object[][] page = page(row / PAGE_SIZE);
+        int offset = row % PAGE_SIZE;
+        if (page == null || offset >= page.length) return null;
+        return page[offset][col];
+    }
+
+    // ---- Chargement des pages ----
+
+    private Object[][] page(int index) {
+        Object[][] page = pages.get(index);
+        if (page == null && pending.add(index)) {
+            int gen = generation;
+            StationnementFilter f = filter;
+            ConcurrentSkipListMap<Integer, PageCursor> b = boundaries;
+            SwingAsync.onEdt(async.supply(() -> load(f, b, index)), rows -> {
+                if (gen != generation) return;
+                pending.remove(index);
+                pages.put(index, rows);
+                int first = index * PAGE_SIZE;
+                int last  = Math.min(first + PAGE_SIZE, rowCount) - 1;
+                if (last >= first) fireTableRowsUpdated(first, last);
+            }, ex -> {
+                if (gen == generation) pending.remove(index);
+                LOG.log(Level.WARNING, "Chargement de la page " + index + " impossible", ex);
+            });
+        }
+        return page;
+    }
+
+    private Object[][] load(StationnementFilter filter, ConcurrentSkipListMap<Integer, PageCursor> boundaries,
+                            int index) throws SQLException {
+        PageCursor after = null;
+        if (index > 0) {
+            after = boundaries.get(index);
+            if (after == null) {
+                // Saut direct : repartir de la page connue la plus proche et avancer sur l'index seul
+                Map.Entry<Integer, PageCursor> known = boundaries.floorEntry(index);
+                int from = known != null ? known.getKey() : 0;
+                after = dao.seek(filter, known != null ? known.getValue() : null, (index - from) * PAGE_SIZE);
+                if (after == null) return new Object[0][];
+                boundaries.put(index, after);
+            }
+        }
+        List<Stationnement> list = dao.findPage(filter, after, PAGE_SIZE);
+        if (!list.isEmpty()) {
+            Stationnement last = list.get(list.size() - 1);
+            boundaries.put(index + 1, new PageCursor(last.getDateEntree(), last.getId()));
+        }
+        Object[][] rows = new Object[list.size()][];
+        for (int i = 0; i < rows.length; i++) rows[i] = toRow(list.get(i));
+        return rows;
+    }
+
+    static Object[] toRow(Stationnement s) {
+        return new Object[]{
+                s.getId(),
+                s.getPlace().getNumero(),
+                s.getPlace().getType(),
+                s.getVehicule().getMatricule(),
+                s.getVehicule().getMarque(),
+                s.getDateEntree().format(FMT),
+                s.getDateSortie() != null ? s.getDateSortie().format(FMT) : "—",
+                s.hasMontant() ? Money.format(s.getMontant()) : "—",
+                s.isEnCours() ? "En cours" : "Terminé"
+        };
+    }
+}
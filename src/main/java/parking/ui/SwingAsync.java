@@ -0,0 +1,37 @@
+package parking.ui;
+
+import parking.service.AsyncDao;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Retour sur l'EDT des résultats d'appels {@link AsyncDao} :
+ * les composants Swing ne sont touchés qu'à l'arrivée du résultat.
+ * Un appel annulé (remplacé par un plus récent) ne livre rien.
+ */
+final class SwingAsync {
+
+    private SwingAsync() {}
+
+    /** Livre le résultat sur l'EDT ; en cas d'erreur, l'affiche dans une boîte de dialogue. */
+    static <T> void onEdt(CompletableFuture<T> future, Component parent, Consumer<T> onSuccess) {
+        onEdt(future, onSuccess, ex -> JOptionPane.showMessageDialog(parent, ex.getMessage(), "Erreur",
+                JOptionPane.ERROR_MESSAGE));
+    }
+
+    static <T> void onEdt(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((result, ex) -> {
+            if (future.isCancelled()) return;
+            Throwable cause = ex != null ? AsyncDao.unwrap(ex) : null;
+            if (cause instanceof CancellationException) return;
+            SwingUtilities.invokeLater(() -> {
+                if (cause == null) onSuccess.accept(result);
+                else onError.accept(cause);
+            });
+        });
+    }
+}
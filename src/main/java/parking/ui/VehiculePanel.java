@@ -2,19 +2,20 @@ package parking.ui;
 
 import parking.dao.VehiculeDAO;
 import parking.model.Vehicule;
+import parking.service.AsyncDao;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.util.List;
 
 /**
  * Onglet CRUD Gestion des Véhicules.
  */
 public class VehiculePanel extends JPanel {
 
-    private final VehiculeDAO dao = new VehiculeDAO();
+    private final VehiculeDAO dao   = new VehiculeDAO();
+    private final AsyncDao    async = AsyncDao.getInstance();
 
     private DefaultTableModel tableModel;
     private JTable            table;
@@ -120,9 +121,10 @@ public class VehiculePanel extends JPanel {
             Vehicule v = new Vehicule(0, tfMatricule.getText().trim().toUpperCase(),
                     tfMarque.getText().trim(),
                     Vehicule.Categorie.valueOf((String) cbCategorie.getSelectedItem()));
-            dao.create(v);
-            clearForm(); loadTable();
-            JOptionPane.showMessageDialog(this, "Véhicule ajouté !", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            SwingAsync.onEdt(async.run(() -> dao.create(v)), this, r -> {
+                clearForm(); loadTable();
+                JOptionPane.showMessageDialog(this, "Véhicule ajouté !", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            });
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
         }
@@ -137,9 +139,10 @@ public class VehiculePanel extends JPanel {
             Vehicule v = new Vehicule(id, tfMatricule.getText().trim().toUpperCase(),
                     tfMarque.getText().trim(),
                     Vehicule.Categorie.valueOf((String) cbCategorie.getSelectedItem()));
-            dao.update(v);
-            loadTable();
-            JOptionPane.showMessageDialog(this, "Véhicule modifié.", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            SwingAsync.onEdt(async.run(() -> dao.update(v)), this, r -> {
+                loadTable();
+                JOptionPane.showMessageDialog(this, "Véhicule modifié.", "Succès", JOptionPane.INFORMATION_MESSAGE);
+            });
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
         }
@@ -150,25 +153,17 @@ public class VehiculePanel extends JPanel {
         if (row < 0) { JOptionPane.showMessageDialog(this, "Sélectionnez un véhicule."); return; }
         if (JOptionPane.showConfirmDialog(this, "Supprimer ce véhicule ?", "Confirmation",
                 JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
-        try {
-            int id = (int) tableModel.getValueAt(table.convertRowIndexToModel(row), 0);
-            dao.delete(id);
-            clearForm(); loadTable();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
-        }
+        int id = (int) tableModel.getValueAt(table.convertRowIndexToModel(row), 0);
+        SwingAsync.onEdt(async.run(() -> dao.delete(id)), this, r -> { clearForm(); loadTable(); });
     }
 
     private void loadTable() {
-        try {
-            List<Vehicule> list = dao.findAll();
+        SwingAsync.onEdt(async.supply("vehicules.table", dao::findAll), this, list -> {
             tableModel.setRowCount(0);
             for (Vehicule v : list) {
                 tableModel.addRow(new Object[]{v.getId(), v.getMatricule(), v.getMarque(), v.getCategorie()});
             }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erreur DB", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
     private void populateForm() {
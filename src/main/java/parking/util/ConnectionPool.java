@@ -0,0 +1,349 @@
+package parking.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool de connexions JDBC borné.
+ *  - Taille minimale / maximale configurable
+ *  - Validation à l'emprunt (Connection.isValid) si la connexion est restée inactive
+ *  - Délai d'attente maximal par emprunt
+ *  - Détection des fuites (connexion empruntée depuis trop longtemps)
+ *  - Éviction des connexions inactives au-delà de la taille minimale
+ *
+ * Les connexions retournées par {@link #borrow()} sont des proxys : {@code close()} les rend au pool.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+
+    /** Paramètres du pool (valeurs par défaut raisonnables pour un poste de caisse). */
+    public static class Config {
+        private String url;
+        private String user;
+        private String password;
+        private int    minSize            = 2;
+        private int    maxSize            = 10;
+        private long   borrowTimeoutMs    = 5_000;
+        private int    validationTimeoutS = 2;
+        private long   validationIdleMs   = 500;
+        private long   idleTimeoutMs      = 5 * 60_000;
+        private long   leakThresholdMs    = 30_000;
+        private boolean leakTraces;
+        private long   housekeepingMs     = 10_000;
+
+        public Config() {}
+
+        public Config(String url, String user, String password) {
+            this.url      = url;
+            this.user     = user;
+            this.password = password;
+        }
+
+        public String getUrl()                         { return url; }
+        public void   setUrl(String url)               { this.url = url; }
+
+        public String getUser()                        { return user; }
+        public void   setUser(String user)             { this.user = user; }
+
+        public String getPassword()                    { return password; }
+        public void   setPassword(String password)     { this.password = password; }
+
+        public int    getMinSize()                     { return minSize; }
+        public void   setMinSize(int n)                { this.minSize = n; }
+
+        public int    getMaxSize()                     { return maxSize; }
+        public void   setMaxSize(int n)                { this.maxSize = n; }
+
+        public long   getBorrowTimeoutMs()             { return borrowTimeoutMs; }
+        public void   setBorrowTimeoutMs(long ms)      { this.borrowTimeoutMs = ms; }
+
+        public int    getValidationTimeoutS()          { return validationTimeoutS; }
+        public void   setValidationTimeoutS(int s)     { this.validationTimeoutS = s; }
+
+        /** Une connexion utilisée il y a moins de ce délai n'est pas revalidée à l'emprunt. */
+        public long   getValidationIdleMs()            { return validationIdleMs; }
+        public void   setValidationIdleMs(long ms)     { this.validationIdleMs = ms; }
+
+        public long   getIdleTimeoutMs()               { return idleTimeoutMs; }
+        public void   setIdleTimeoutMs(long ms)        { this.idleTimeoutMs = ms; }
+
+        /** 0 = détection des fuites désactivée. */
+        public long   getLeakThresholdMs()             { return leakThresholdMs; }
+        public void   setLeakThresholdMs(long ms)      { this.leakThresholdMs = ms; }
+
+        /**
+         * Mémorise la pile de chaque emprunt pour la joindre à l'alerte de fuite (une Throwable par emprunt) :
+         * désactivé par défaut, à activer le temps de localiser une fuite signalée.
+         */
+        public boolean isLeakTraces()                  { return leakTraces; }
+        public void   setLeakTraces(boolean b)         { this.leakTraces = b; }
+
+        public long   getHousekeepingMs()              { return housekeepingMs; }
+        public void   setHousekeepingMs(long ms)       { this.housekeepingMs = ms; }
+    }
+
+    private final Config config;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> leased = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(Config config) {
+        if (config.getMaxSize() < 1 || config.getMinSize() < 0 || config.getMinSize() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Tailles de pool invalides : min=" + config.getMinSize()
+                    + ", max=" + config.getMaxSize());
+        }
+        this.config  = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parking-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                config.getHousekeepingMs(), config.getHousekeepingMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Emprunte une connexion. Bloque au plus {@code borrowTimeoutMs} si toutes sont prises.
+     * @throws SQLTransientConnectionException si aucune connexion ne se libère à temps
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Le pool de connexions est fermé.");
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Aucune connexion disponible après "
+                        + config.getBorrowTimeoutMs() + " ms (max=" + config.getMaxSize() + ")", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Attente d'une connexion interrompue.", "08001", e);
+        }
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) break;
+                destroy(pc);
+            }
+            if (pc == null) pc = open();
+            pc.lease(config.getLeakThresholdMs() > 0 && config.isLeakTraces());
+            leased.add(pc);
+            return pc.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Nombre de connexions physiques ouvertes (inactives + empruntées). */
+    public int getTotalCount()  { return total.get(); }
+    public int getIdleCount()   { return idle.size(); }
+    public int getActiveCount() { return leased.size(); }
+
+    public Config getConfig()   { return config; }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) destroy(pc);
+        // Les connexions encore empruntées seront fermées à leur restitution.
+    }
+
+    // ---- Cycle de vie interne ----
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        total.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.nanoTime() - pc.lastUsedNanos < TimeUnit.MILLISECONDS.toNanos(config.getValidationIdleMs())) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(config.getValidationTimeoutS());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        leased.remove(pc);
+        try {
+            if (pc.broken || closed || total.get() > config.getMaxSize()) {
+                destroy(pc);
+                return;
+            }
+            try {
+                if (!pc.physical.getAutoCommit()) {
+                    pc.physical.rollback();
+                    pc.physical.setAutoCommit(true);
+                }
+                // isReadOnly() interrogerait le serveur : l'état est suivi par le proxy
+                if (pc.readOnly) {
+                    pc.physical.setReadOnly(false);
+                    pc.readOnly = false;
+                }
+                pc.physical.clearWarnings();
+            } catch (SQLException e) {
+                destroy(pc);
+                return;
+            }
+            pc.lastUsedNanos = System.nanoTime();
+            idle.offerFirst(pc); // LIFO : les connexions chaudes restent en tête
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        total.decrementAndGet();
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {}
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+
+            // Fuites : connexions empruntées depuis trop longtemps
+            long leakNanos = TimeUnit.MILLISECONDS.toNanos(config.getLeakThresholdMs());
+            if (leakNanos > 0) {
+                for (PooledConnection pc : leased) {
+                    if (!pc.leakReported && now - pc.borrowedNanos > leakNanos) {
+                        pc.leakReported = true;
+                        LOG.log(Level.WARNING, "Fuite probable : connexion empruntée depuis plus de "
+                                + config.getLeakThresholdMs() + " ms"
+                                + (pc.borrowSite == null ? " (parking.pool.leakTraces=true pour la pile de l'emprunt)" : ""),
+                                pc.borrowSite);
+                    }
+                }
+            }
+
+            // Éviction des connexions inactives au-delà du minimum
+            long idleNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMs());
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() > config.getMinSize()) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsedNanos > idleNanos && idle.remove(pc)) destroy(pc);
+            }
+
+            // Remplissage jusqu'au minimum
+            while (!closed && total.get() < config.getMinSize()) {
+                idle.offerLast(open());
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "Impossible de remplir le pool jusqu'au minimum", e);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Erreur pendant la maintenance du pool", e);
+        }
+    }
+
+    // ---- Connexion physique + proxy rendu à l'appelant ----
+
+    private final class PooledConnection {
+        final Connection physical;
+        Connection proxy;
+        volatile long      lastUsedNanos = System.nanoTime();
+        volatile long      borrowedNanos;
+        volatile Throwable borrowSite;
+        volatile boolean   leakReported;
+        volatile boolean   broken;
+        /** setReadOnly(true) appelé pendant l'emprunt : à remettre à false au retour. */
+        volatile boolean   readOnly;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        void lease(boolean trackSite) {
+            borrowedNanos = System.nanoTime();
+            borrowSite    = trackSite ? new Throwable("Site de l'emprunt") : null;
+            leakReported  = false;
+            proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+    }
+
+    /** Un emprunt : une fois rendu, le proxy correspondant devient inutilisable. */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned;
+
+        Lease(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public synchronized Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "toString":
+                    return "PooledConnection[" + pc.physical + "]";
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "equals":
+                    return p == args[0];
+                case "abort":
+                    if (returned) throw new SQLException("Connexion déjà rendue au pool.");
+                    // Connexion coupée : elle ne reviendra pas dans le pool
+                    pc.broken = true;
+                    pc.physical.abort((Executor) args[0]);
+                    return null;
+                case "setReadOnly":
+                    if (returned) throw new SQLException("Connexion déjà rendue au pool.");
+                    call(method, args);
+                    pc.readOnly = (Boolean) args[0];
+                    return null;
+                default:
+                    if (returned) throw new SQLException("Connexion déjà rendue au pool.");
+            }
+            return call(method, args);
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    if (state != null && state.startsWith("08")) pc.broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package parking.util;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Registre des statistiques DAO ({@link MethodStats}), une entrée par méthode ("Classe.méthode",
+ * ou "Classe.méthode.étape" pour les étapes d'une transaction).
+ * Les caches DAO ({@link LruCache}) y sont aussi enregistrés.
+ * Chaque entrée est publiée en JMX ; un vidage périodique vers un fichier peut être démarré
+ * par {@link #startDump()} (propriétés parking.metrics.file, parking.metrics.periodSec).
+ */
+public final class DaoMetrics {
+
+    private static final Logger LOG  = Logger.getLogger(DaoMetrics.class.getName());
+    /** Logger du fichier de métriques (ne remonte pas vers la console). */
+    private static final Logger DUMP = Logger.getLogger("parking.metrics");
+
+    private static final String DEFAULT_FILE   = "parking-metrics.log";
+    private static final long   DEFAULT_PERIOD = 60;
+
+    private static final ConcurrentSkipListMap<String, MethodStats> STATS = new ConcurrentSkipListMap<>();
+    private static final List<LruCache<?, ?>> CACHES = new CopyOnWriteArrayList<>();
+
+    private static ScheduledExecutorService dumper;
+    private static FileHandler              dumpHandler;
+
+    private DaoMetrics() {}
+
+    /** Statistiques d'une méthode (créées et publiées en JMX au premier appel). */
+    public static MethodStats stats(String name) {
+        return STATS.computeIfAbsent(name, n -> {
+            MethodStats s = new MethodStats(n);
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(s, new ObjectName("parking:type=DaoMetrics,name=" + n));
+            } catch (JMException | RuntimeException e) {
+                LOG.log(Level.FINE, "Publication JMX impossible pour " + n, e);
+            }
+            return s;
+        });
+    }
+
+    /** Publie un cache DAO (JMX, onglet Diagnostics, fichier de métriques). */
+    public static <C extends LruCache<?, ?>> C register(C cache) {
+        CACHES.add(cache);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(cache, new ObjectName("parking:type=Cache,name=" + cache.getName()));
+        } catch (JMException | RuntimeException e) {
+            LOG.log(Level.FINE, "Publication JMX impossible pour le cache " + cache.getName(), e);
+        }
+        return cache;
+    }
+
+    public static List<LruCache<?, ?>> caches() {
+        return new ArrayList<>(CACHES);
+    }
+
+    /** Toutes les statistiques, triées par nom. */
+    public static List<MethodStats> all() {
+        return new ArrayList<>(STATS.values());
+    }
+
+    public static void resetAll() {
+        for (MethodStats s : STATS.values()) s.reset();
+        for (LruCache<?, ?> c : CACHES) c.resetStats();
+    }
+
+    /** Tableau texte des méthodes appelées au moins une fois. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder(String.format("%-42s %9s %7s %10s %9s %9s %9s %9s%n",
+                "Méthode", "Appels", "Erreurs", "Lignes", "Moy(ms)", "p50(ms)", "p99(ms)", "Max(ms)"));
+        for (MethodStats s : STATS.values()) {
+            if (s.getCalls() == 0) continue;
+            sb.append(String.format("%-42s %9d %7d %10d %9.2f %9.2f %9.2f %9.2f%n",
+                    s.getName(), s.getCalls(), s.getErrors(), s.getRows(),
+                    s.getMeanMs(), s.getP50Ms(), s.getP99Ms(), s.getMaxMs()));
+        }
+        for (LruCache<?, ?> c : CACHES) sb.append(describe(c)).append(String.format("%n"));
+        return sb.toString();
+    }
+
+    /** Résumé d'une ligne de l'état d'un cache. */
+    public static String describe(LruCache<?, ?> c) {
+        return String.format("Cache %s : %d/%d entrées, %d succès, %d échecs (%.1f %%), %d évictions",
+                c.getName(), c.getSize(), c.getMaxSize(), c.getHits(), c.getMisses(),
+                c.getHitRate() * 100, c.getEvictions());
+    }
+
+    // ---- Vidage périodique ----
+
+    /** Démarre le vidage périodique vers le fichier de métriques (période <= 0 : désactivé). */
+    public static synchronized void startDump() {
+        long period = Long.getLong("parking.metrics.periodSec", DEFAULT_PERIOD);
+        if (dumper != null || period <= 0) return;
+        try {
+            dumpHandler = new FileHandler(System.getProperty("parking.metrics.file", DEFAULT_FILE), true);
+            dumpHandler.setFormatter(new SimpleFormatter());
+            DUMP.setUseParentHandlers(false);
+            DUMP.addHandler(dumpHandler);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Fichier de métriques inaccessible : " + e.getMessage());
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "parking-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(DaoMetrics::dump, period, period, TimeUnit.SECONDS);
+    }
+
+    /** Arrête le vidage périodique après un dernier vidage. */
+    public static synchronized void stopDump() {
+        if (dumper == null) return;
+        dumper.shutdownNow();
+        dumper = null;
+        dump();
+        DUMP.removeHandler(dumpHandler);
+        dumpHandler.close();
+        dumpHandler = null;
+    }
+
+    private static void dump() {
+        DUMP.info("Métriques DAO\n" + report());
+    }
+}
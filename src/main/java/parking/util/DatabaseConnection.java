@@ -1,39 +1,220 @@
 package parking.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Utilitaire de connexion JDBC (Singleton).
+ * Point d'accès JDBC de l'application, adossé à un {@link ConnectionPool}.
+ * Chaque appel à {@link #getConnection()} emprunte une connexion qu'il faut fermer
+ * (try-with-resources) pour la rendre au pool.
+ *
+ * Les paramètres peuvent être surchargés par propriétés système :
+ * parking.db.url, parking.db.user, parking.db.password,
+ * parking.pool.min, parking.pool.max, parking.pool.timeoutMs,
+ * parking.pool.idleTimeoutMs, parking.pool.leakThresholdMs, parking.pool.leakTraces.
+ *
+ * Plusieurs parkings : chaque site a son pool, choisi par {@link #getConnection(String)}.
+ * Le site de cette instance (parking.site, "local" par défaut) utilise parking.db.* ;
+ * les autres sites sont listés dans parking.sites (séparés par des virgules) et configurés par
+ * parking.site.&lt;id&gt;.url, .user, .password (sinon ceux du site local). Les tailles de pool sont communes.
+ *
+ * Réplique en lecture : les lectures qui tolèrent un retard ({@link #getConnectionLecture(String)} :
+ * rapports, historique) vont sur parking.db.replica.url (parking.site.&lt;id&gt;.replica.url pour un autre
+ * site ; .user et .password comme ci-dessus) tant que son retard ne dépasse pas
+ * parking.db.replica.retardMaxSec (5 s par défaut). Un serveur sans réplication configurée n'est utilisé
+ * que si replica.sansReplication=true (même préfixe que replica.url). Après une écriture du même {@link Client} sur le site
+ * ({@link #ecritureValidee(String)}), ses lectures restent sur le primaire le temps que la réplique la
+ * rattrape (retard mesuré + 1 s) ; les autres clients (bornes, autres écrans) continuent sur la réplique. Les écritures et les lectures qui doivent voir le dernier état (bornes,
+ * stationnements en cours) utilisent toujours {@link #getConnection(String)}.
  */
 public class DatabaseConnection {
 
-    private static final String URL      = "jdbc:mysql://localhost:3306/parking_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
+    private static final String URL      = "jdbc:mysql://localhost:3306/parking_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
     private static final String USER     = "root";
     private static final String PASSWORD = "";
 
-    private static Connection instance;
+    private static final MethodStats STATS_LECTURE_REPLIQUE  = DaoMetrics.stats("Lecture.replique");
+    private static final MethodStats STATS_LECTURE_PRIMAIRE  = DaoMetrics.stats("Lecture.primaire");
+
+    private static ConnectionPool pool;
+    /** Pools des autres sites, créés au premier appel. */
+    private static final Map<String, ConnectionPool> distants = new HashMap<>();
+    /** Réplique de chaque site (null si le site n'en a pas), créée au premier appel. */
+    private static final Map<String, Replique> repliques = new HashMap<>();
+
+    /**
+     * Client qui lit ses propres écritures : chaque thread est son propre client, et un appel
+     * {@link parking.service.AsyncDao} s'exécute pour le client du thread qui l'a soumis (l'EDT pour les écrans).
+     */
+    public static final class Client {
+        /** Dernière écriture validée, par site (System.nanoTime()). */
+        private final Map<String, Long> ecritures = new ConcurrentHashMap<>();
+    }
+
+    private static final ThreadLocal<Client> CLIENT = ThreadLocal.withInitial(Client::new);
 
     private DatabaseConnection() {}
 
-    public static Connection getInstance() throws SQLException {
-        if (instance == null || instance.isClosed()) {
-            try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("Driver MySQL introuvable : " + e.getMessage());
+    /** Emprunte une connexion au pool du site local (à fermer après usage). */
+    public static Connection getConnection() throws SQLException {
+        return getPool().borrow();
+    }
+
+    /** Emprunte une connexion au pool d'un site (à fermer après usage). */
+    public static Connection getConnection(String site) throws SQLException {
+        return isLocal(site) ? getPool().borrow() : getPool(site).borrow();
+    }
+
+    /**
+     * Emprunte une connexion pour une lecture qui tolère un léger retard : réplique du site si elle est
+     * configurée, joignable, assez à jour et si ce poste n'y a pas écrit récemment ; sinon primaire.
+     */
+    public static Connection getConnectionLecture(String site) throws SQLException {
+        long t0 = System.nanoTime();
+        Replique r = getReplique(site);
+        if (r != null) {
+            long retard = r.retard();
+            Long ecrit = CLIENT.get().ecritures.get(site);
+            if (retard >= 0 && (ecrit == null || t0 - ecrit > TimeUnit.MILLISECONDS.toNanos(retard + 1000))) {
+                try {
+                    Connection c = r.getPool().borrow();
+                    STATS_LECTURE_REPLIQUE.record(t0, 1);
+                    return c;
+                } catch (SQLException e) {
+                    r.indisponible();
+                }
             }
-            instance = DriverManager.getConnection(URL, USER, PASSWORD);
         }
-        return instance;
+        Connection c = getConnection(site);
+        STATS_LECTURE_PRIMAIRE.record(t0, 1);
+        return c;
+    }
+
+    /** Signale une écriture validée sur le site : les lectures du client courant restent sur le primaire un moment. */
+    public static void ecritureValidee(String site) {
+        CLIENT.get().ecritures.put(site, System.nanoTime());
+    }
+
+    /** Client du thread courant. */
+    public static Client getClient() {
+        return CLIENT.get();
+    }
+
+    /** Fait agir le thread courant pour {@code client} ; rend le client précédent, à restaurer ensuite. */
+    public static Client setClient(Client client) {
+        Client avant = CLIENT.get();
+        CLIENT.set(client);
+        return avant;
+    }
+
+    /** Pool de la réplique du site, null s'il n'en a pas. */
+    public static ConnectionPool getPoolReplique(String site) throws SQLException {
+        Replique r = getReplique(site);
+        return r == null ? null : r.getPool();
+    }
+
+    public static synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null) {
+            chargerDriver();
+            pool = new ConnectionPool(loadConfig(
+                    System.getProperty("parking.db.url", URL),
+                    System.getProperty("parking.db.user", USER),
+                    System.getProperty("parking.db.password", PASSWORD)));
+        }
+        return pool;
     }
 
-    public static void close() {
+    /** Pool d'un site ; le site doit être déclaré dans parking.sites. */
+    public static synchronized ConnectionPool getPool(String site) throws SQLException {
+        if (isLocal(site)) return getPool();
+        ConnectionPool p = distants.get(site);
+        if (p == null) {
+            if (!getSites().contains(site)) throw new SQLException("Site inconnu : " + site);
+            String url = System.getProperty("parking.site." + site + ".url");
+            if (url == null) throw new SQLException("Site " + site + " : parking.site." + site + ".url manquant");
+            chargerDriver();
+            p = new ConnectionPool(loadConfig(url,
+                    System.getProperty("parking.site." + site + ".user", System.getProperty("parking.db.user", USER)),
+                    System.getProperty("parking.site." + site + ".password", System.getProperty("parking.db.password", PASSWORD))));
+            distants.put(site, p);
+        }
+        return p;
+    }
+
+    private static synchronized Replique getReplique(String site) throws SQLException {
+        if (repliques.containsKey(site)) return repliques.get(site);
+        String prefixe = isLocal(site) ? "parking.db." : "parking.site." + site + ".";
+        if (!isLocal(site) && !getSites().contains(site)) throw new SQLException("Site inconnu : " + site);
+        String url = System.getProperty(prefixe + "replica.url");
+        Replique r = null;
+        if (url != null && !url.isEmpty()) {
+            chargerDriver();
+            r = new Replique(site, new ConnectionPool(loadConfig(url,
+                    System.getProperty(prefixe + "replica.user", System.getProperty(prefixe + "user",
+                            System.getProperty("parking.db.user", USER))),
+                    System.getProperty(prefixe + "replica.password", System.getProperty(prefixe + "password",
+                            System.getProperty("parking.db.password", PASSWORD))))),
+                    TimeUnit.SECONDS.toMillis(Long.getLong("parking.db.replica.retardMaxSec", 5)),
+                    Boolean.getBoolean(prefixe + "replica.sansReplication"));
+        }
+        repliques.put(site, r);
+        return r;
+    }
+
+    /** Identifiant du site de cette instance. */
+    public static String getSiteLocal() {
+        return System.getProperty("parking.site", "local");
+    }
+
+    public static boolean isLocal(String site) {
+        return site.equals(getSiteLocal());
+    }
+
+    /** Sites connus : le site local d'abord, puis ceux de parking.sites dans l'ordre. */
+    public static List<String> getSites() {
+        List<String> sites = new ArrayList<>();
+        sites.add(getSiteLocal());
+        for (String s : System.getProperty("parking.sites", "").split(",")) {
+            String id = s.trim();
+            if (!id.isEmpty() && !sites.contains(id)) sites.add(id);
+        }
+        return sites;
+    }
+
+    /** Ferme les pools de tous les sites. */
+    public static synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        for (ConnectionPool p : distants.values()) p.close();
+        distants.clear();
+        for (Replique r : repliques.values()) if (r != null) r.getPool().close();
+        repliques.clear();
+    }
+
+    private static void chargerDriver() throws SQLException {
         try {
-            if (instance != null && !instance.isClosed()) {
-                instance.close();
-            }
-        } catch (SQLException ignored) {}
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Driver MySQL introuvable : " + e.getMessage());
+        }
+    }
+
+    private static ConnectionPool.Config loadConfig(String url, String user, String password) {
+        ConnectionPool.Config c = new ConnectionPool.Config(url, user, password);
+        c.setMinSize(Integer.getInteger("parking.pool.min", c.getMinSize()));
+        c.setMaxSize(Integer.getInteger("parking.pool.max", c.getMaxSize()));
+        c.setBorrowTimeoutMs(Long.getLong("parking.pool.timeoutMs", c.getBorrowTimeoutMs()));
+        c.setIdleTimeoutMs(Long.getLong("parking.pool.idleTimeoutMs", c.getIdleTimeoutMs()));
+        c.setLeakThresholdMs(Long.getLong("parking.pool.leakThresholdMs", c.getLeakThresholdMs()));
+        c.setLeakTraces(Boolean.getBoolean("parking.pool.leakTraces"));
+        return c;
     }
 }
@@ -0,0 +1,79 @@
+package parking.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table d'identité id -> instance de référence d'une entité.
+ * Les instances sont tenues par références faibles : une entité qu'aucun résultat ne retient
+ * plus est libérée par le GC, et son entrée retirée au passage suivant.
+ */
+public final class IdentityMap<T> {
+
+    private static final class Ref<T> extends WeakReference<T> {
+        final int id;
+
+        Ref(int id, T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+            this.id = id;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Ref<T>> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+    /** Instance de référence, ou null si absente (ou déjà libérée). */
+    public T get(int id) {
+        Ref<T> ref = map.get(id);
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * Enregistre {@code entity} comme instance de référence, sauf si une autre instance vivante
+     * est déjà enregistrée pour cet id.
+     * @return l'instance qui fait foi
+     */
+    public T putIfAbsent(int id, T entity) {
+        expunge();
+        Ref<T> fresh = new Ref<>(id, entity, queue);
+        while (true) {
+            Ref<T> previous = map.putIfAbsent(id, fresh);
+            if (previous == null) return entity;
+            T existing = previous.get();
+            if (existing != null) return existing;
+            if (map.replace(id, previous, fresh)) return entity;
+        }
+    }
+
+    /** Remplace l'instance de référence (l'ancienne, si elle est encore tenue ailleurs, n'est pas modifiée). */
+    public T put(int id, T entity) {
+        expunge();
+        map.put(id, new Ref<>(id, entity, queue));
+        return entity;
+    }
+
+    /** Oublie l'instance de référence : la prochaine lecture en créera une nouvelle. */
+    public void invalidate(int id) {
+        map.remove(id);
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public int size() {
+        expunge();
+        return map.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        Reference<? extends T> ref;
+        while ((ref = queue.poll()) != null) {
+            Ref<T> r = (Ref<T>) ref;
+            map.remove(r.id, r);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package parking.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache borné à éviction LRU, sûr en accès concurrent (verrou unique : les sections
+ * critiques ne font qu'une opération de LinkedHashMap).
+ * Une entrée peut avoir une durée de vie ; elle est alors ignorée et retirée une fois expirée.
+ *
+ * Pour éviter de remettre en cache une valeur lue avant une invalidation concurrente, l'appelant
+ * prend un {@link #stamp()} avant sa lecture en base et range le résultat par {@link #put(Object, Object, long, long)} :
+ * l'écriture est ignorée si une invalidation a eu lieu entre-temps.
+ */
+public class LruCache<K, V> implements LruCacheMXBean {
+
+    private static final class Entry<V> {
+        final V    value;
+        final long expiresAt; // System.nanoTime(), Long.MAX_VALUE = pas d'expiration
+
+        Entry(V value, long expiresAt) {
+            this.value     = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String name;
+    private final int    maxSize;
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    private long invalidations;
+    private long hits, misses, evictions;
+
+    public LruCache(String name, int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize doit être >= 1");
+        this.name    = name;
+        this.maxSize = maxSize;
+        this.map     = new LinkedHashMap<K, Entry<V>>(Math.min(maxSize, 1024) * 4 / 3 + 1, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> e) {
+                if (size() <= LruCache.this.maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /** Valeur en cache, ou null si absente ou expirée (compte un succès ou un échec). */
+    public synchronized V get(K key) {
+        Entry<V> e = map.get(key);
+        if (e != null && e.expiresAt != Long.MAX_VALUE && System.nanoTime() - e.expiresAt >= 0) {
+            map.remove(key);
+            e = null;
+        }
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.value;
+    }
+
+    /** Compteur d'invalidations, à relever avant une lecture en base. */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Range une valeur lue en base, sauf si une invalidation a eu lieu depuis {@code stamp}.
+     * @param ttlNanos durée de vie, 0 = jusqu'à éviction ou invalidation
+     */
+    public synchronized void put(K key, V value, long ttlNanos, long stamp) {
+        if (stamp != invalidations) return;
+        map.put(key, new Entry<>(value, ttlNanos > 0 ? System.nanoTime() + ttlNanos : Long.MAX_VALUE));
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        map.remove(key);
+    }
+
+    /** Retire toutes les entrées dont la valeur satisfait le prédicat. */
+    public synchronized void invalidateValues(Predicate<? super V> predicate) {
+        invalidations++;
+        for (Iterator<Entry<V>> it = map.values().iterator(); it.hasNext(); ) {
+            if (predicate.test(it.next().value)) it.remove();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        invalidations++;
+        map.clear();
+    }
+
+    // ---- Statistiques ----
+
+    @Override public String getName()             { return name; }
+    @Override public int    getMaxSize()          { return maxSize; }
+    @Override public synchronized int  getSize()      { return map.size(); }
+    @Override public synchronized long getHits()      { return hits; }
+    @Override public synchronized long getMisses()    { return misses; }
+    @Override public synchronized long getEvictions() { return evictions; }
+
+    @Override
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    @Override
+    public synchronized void resetStats() {
+        hits = misses = evictions = 0;
+    }
+}
@@ -0,0 +1,20 @@
+package parking.util;
+
+/**
+ * Vue JMX d'un {@link LruCache} (ObjectName parking:type=Cache,name=&lt;nom&gt;).
+ */
+public interface LruCacheMXBean {
+
+    String getName();
+    int    getMaxSize();
+    int    getSize();
+    long   getHits();
+    long   getMisses();
+    long   getEvictions();
+    double getHitRate();
+
+    void resetStats();
+
+    /** Vide le cache. */
+    void clear();
+}
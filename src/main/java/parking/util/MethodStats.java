@@ -0,0 +1,164 @@
+package parking.util;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compteurs et histogramme de latence d'une méthode DAO.
+ * L'enregistrement n'alloue rien : compteurs LongAdder et histogramme à seaux fixes
+ * (8 sous-seaux par puissance de 2, soit ~12 % de précision) dans un AtomicLongArray.
+ *
+ * Une méthode mesurée passe son corps à {@link #liste}, {@link #ligne}, {@link #compter} ou {@link #mesurer},
+ * qui enregistrent la durée et le nombre de lignes, ou une erreur si le corps lève une exception :
+ * <pre>
+ *   return STATS.liste(() -> { ...; return list; });
+ * </pre>
+ */
+public class MethodStats implements MethodStatsMXBean {
+
+    private static final int SUB_BITS    = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS     = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final LongAdder       calls      = new LongAdder();
+    private final LongAdder       errors     = new LongAdder();
+    private final LongAdder       rows       = new LongAdder();
+    private final LongAdder       totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos   = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram  = new AtomicLongArray(BUCKETS);
+
+    MethodStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Enregistre un appel commencé à {@code t0} (System.nanoTime()).
+     * @param rowCount lignes lues ou modifiées ; négatif = l'appel a échoué
+     */
+    public void record(long t0, int rowCount) {
+        long nanos = System.nanoTime() - t0;
+        calls.increment();
+        if (rowCount < 0) errors.increment();
+        else rows.add(rowCount);
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram.incrementAndGet(bucket(nanos));
+    }
+
+    // ---- Appels mesurés ----
+
+    /** Corps d'un appel mesuré ; peut lever deux types d'exception contrôlée (SQLException et IOException). */
+    @FunctionalInterface
+    public interface Appel<T, E extends Exception, F extends Exception> {
+        T executer() throws E, F;
+    }
+
+    /** Corps d'un appel mesuré qui retourne lui-même son nombre de lignes (executeUpdate, lecture en flux). */
+    @FunctionalInterface
+    public interface Compte {
+        int executer() throws SQLException;
+    }
+
+    /** Mesure un appel ; {@code lignes} donne le nombre de lignes de son résultat. */
+    public <T, E extends Exception, F extends Exception> T mesurer(ToIntFunction<? super T> lignes,
+                                                                  Appel<T, E, F> appel) throws E, F {
+        long t0 = System.nanoTime();
+        int rowCount = -1;
+        try {
+            T r = appel.executer();
+            rowCount = lignes.applyAsInt(r);
+            return r;
+        } finally {
+            record(t0, rowCount);
+        }
+    }
+
+    /** Mesure une lecture de liste : une ligne par élément. */
+    public <T extends Collection<?>, E extends Exception, F extends Exception> T liste(Appel<T, E, F> appel) throws E, F {
+        return mesurer(Collection::size, appel);
+    }
+
+    /** Mesure une lecture d'une entité : une ligne, aucune si elle retourne null. */
+    public <T, E extends Exception, F extends Exception> T ligne(Appel<T, E, F> appel) throws E, F {
+        return mesurer(r -> r != null ? 1 : 0, appel);
+    }
+
+    /** Mesure un appel qui retourne son nombre de lignes, et le retourne. */
+    public int compter(Compte appel) throws SQLException {
+        long t0 = System.nanoTime();
+        int rowCount = -1;
+        try {
+            rowCount = appel.executer();
+            return rowCount;
+        } finally {
+            record(t0, rowCount);
+        }
+    }
+
+    // ---- Histogramme ----
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) Math.max(nanos, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Plus petite valeur (ns) du seau. */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+    }
+
+    /** Latence (ns) sous laquelle se trouvent {@code p} (0..1) des appels ; borne haute du seau. */
+    public long percentileNanos(double p) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) total += counts[i] = histogram.get(i);
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(p * total));
+        long cumul = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumul += counts[i];
+            if (cumul >= target) {
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    // ---- Lecture (JMX, onglet Diagnostics, fichier de métriques) ----
+
+    @Override public String getName()   { return name; }
+    @Override public long   getCalls()  { return calls.sum(); }
+    @Override public long   getErrors() { return errors.sum(); }
+    @Override public long   getRows()   { return rows.sum(); }
+
+    @Override
+    public double getMeanMs() {
+        long n = calls.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000.0;
+    }
+
+    @Override public double getP50Ms() { return percentileNanos(0.50) / 1_000_000.0; }
+    @Override public double getP99Ms() { return percentileNanos(0.99) / 1_000_000.0; }
+    @Override public double getMaxMs() { return maxNanos.get() / 1_000_000.0; }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        rows.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+    }
+}
@@ -0,0 +1,20 @@
+package parking.util;
+
+/**
+ * Vue JMX des statistiques d'une méthode DAO
+ * (ObjectName parking:type=DaoMetrics,name=&lt;Classe.méthode&gt;).
+ */
+public interface MethodStatsMXBean {
+
+    String getName();
+    long   getCalls();
+    long   getErrors();
+    long   getRows();
+    double getMeanMs();
+    double getP50Ms();
+    double getP99Ms();
+    double getMaxMs();
+
+    /** Remet compteurs et histogramme à zéro. */
+    void reset();
+}
@@ -0,0 +1,72 @@
+package parking.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Montants en centimes ({@code long}) : calculs et cumuls exacts, sans allocation.
+ * La conversion avec les colonnes DECIMAL(…,2) se fait uniquement ici, à la frontière JDBC ;
+ * l'affichage utilise un point décimal ("12.50"), comme l'export.
+ */
+public final class Money {
+
+    /** Montant absent (colonne NULL, stationnement en cours). */
+    public static final long AUCUN = Long.MIN_VALUE;
+
+    private Money() {}
+
+    /** Montant DECIMAL arrondi au centime (demi vers le haut). */
+    public static long centimes(BigDecimal euros) {
+        return euros.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal decimal(long centimes) {
+        return BigDecimal.valueOf(centimes, 2);
+    }
+
+    /** Euros en virgule flottante, pour les échelles de graphique uniquement. */
+    public static double euros(long centimes) {
+        return centimes / 100.0;
+    }
+
+    /**
+     * Quotient {@code num / den} arrondi à l'entier le plus proche (demi vers le haut), en entiers exacts.
+     * @param den strictement positif
+     */
+    public static long arrondi(long num, long den) {
+        return Math.floorDiv(num + den / 2, den);
+    }
+
+    /**
+     * Saisie utilisateur ("12", "12.5", "12,50") en centimes, arrondie au centime.
+     * @throws NumberFormatException si le texte n'est pas un nombre
+     */
+    public static long parse(String texte) {
+        return centimes(new BigDecimal(texte.trim().replace(',', '.')));
+    }
+
+    /** "12.50", "-0.05". */
+    public static String format(long centimes) {
+        long abs = Math.abs(centimes);
+        long cts = abs % 100;
+        return (centimes < 0 ? "-" : "") + abs / 100 + (cts < 10 ? ".0" : ".") + cts;
+    }
+
+    // ---- Frontière JDBC ----
+
+    /** Colonne DECIMAL de la ligne courante en centimes, {@link #AUCUN} si NULL. */
+    public static long lire(ResultSet rs, String colonne) throws SQLException {
+        BigDecimal d = rs.getBigDecimal(colonne);
+        return d == null ? AUCUN : centimes(d);
+    }
+
+    /** Paramètre DECIMAL ; {@link #AUCUN} est écrit NULL. */
+    public static void ecrire(PreparedStatement ps, int index, long centimes) throws SQLException {
+        if (centimes == AUCUN) ps.setNull(index, Types.DECIMAL);
+        else ps.setBigDecimal(index, decimal(centimes));
+    }
+}
@@ -0,0 +1,113 @@
+package parking.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Réplique en lecture d'un site, pour les lectures qui tolèrent un léger retard (rapports, historique).
+ *  - Pool de connexions dédié
+ *  - Retard mesuré au plus une fois par seconde (SHOW REPLICA STATUS) : au-delà du retard maximal,
+ *    réplication arrêtée ou réplique injoignable, les lectures restent sur le primaire
+ *  - Un serveur sans réplication configurée (SHOW REPLICA STATUS vide : RESET REPLICA ALL, bascule,
+ *    mauvaise URL) ne sert pas, sauf s'il est déclaré comme tel (copie restaurée, instance de test :
+ *    replica.sansReplication=true)
+ */
+final class Replique {
+
+    private static final Logger LOG = Logger.getLogger(Replique.class.getName());
+
+    private static final long MESURE_NS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String         site;
+    private final ConnectionPool pool;
+    private final long           retardMaxMs;
+    private final boolean        sansReplication;
+    private final AtomicBoolean  mesureEnCours = new AtomicBoolean();
+
+    /** Dernier retard mesuré en ms, -1 si inconnu (réplique injoignable, réplication arrêtée). */
+    private volatile long    retardMs = -1;
+    private volatile long    mesureA;
+    private volatile boolean mesuree;
+    private boolean          sansReplicationSignale;
+
+    /** @param sansReplication le serveur est une copie sans réplication, à considérer à jour */
+    Replique(String site, ConnectionPool pool, long retardMaxMs, boolean sansReplication) {
+        this.site            = site;
+        this.pool            = pool;
+        this.retardMaxMs     = retardMaxMs;
+        this.sansReplication = sansReplication;
+    }
+
+    ConnectionPool getPool() { return pool; }
+
+    /**
+     * Retard utilisable de la réplique, mesuré si la dernière mesure a plus d'une seconde.
+     * Un seul appelant mesure ; les autres gardent la mesure précédente.
+     * @return le retard en ms, ou -1 si la réplique ne doit pas servir (injoignable, arrêtée, trop en retard)
+     */
+    long retard() {
+        if ((!mesuree || System.nanoTime() - mesureA > MESURE_NS) && mesureEnCours.compareAndSet(false, true)) {
+            try {
+                retardMs = mesurer();
+            } finally {
+                mesureA = System.nanoTime();
+                mesuree = true;
+                mesureEnCours.set(false);
+            }
+        }
+        long r = retardMs;
+        return r > retardMaxMs ? -1 : r;
+    }
+
+    /** La réplique a refusé une connexion : plus de lectures jusqu'à la prochaine mesure. */
+    void indisponible() {
+        retardMs = -1;
+        mesureA = System.nanoTime();
+    }
+
+    private long mesurer() {
+        try (Connection c = pool.borrow();
+             Statement st = c.createStatement()) {
+            st.setQueryTimeout(2);
+            ResultSet rs;
+            try {
+                rs = st.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                rs = st.executeQuery("SHOW SLAVE STATUS"); // MySQL < 8.0.22, MariaDB < 10.5
+            }
+            try (ResultSet status = rs) {
+                if (!status.next()) {
+                    if (!sansReplicationSignale) {
+                        sansReplicationSignale = true;
+                        if (sansReplication) {
+                            LOG.info("Réplique du site " + site + " sans réplication configurée : considérée à jour");
+                        } else {
+                            LOG.warning("Réplique du site " + site + " sans réplication configurée : lectures sur le "
+                                    + "primaire (replica.sansReplication=true pour l'utiliser quand même)");
+                        }
+                    }
+                    return sansReplication ? 0 : -1;
+                }
+                sansReplicationSignale = false;
+                long secondes = secondesDeRetard(status);
+                return status.wasNull() ? -1 : TimeUnit.SECONDS.toMillis(secondes);
+            }
+        } catch (SQLException e) {
+            LOG.warning("Réplique du site " + site + " indisponible : " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static long secondesDeRetard(ResultSet status) throws SQLException {
+        try {
+            return status.getLong("Seconds_Behind_Source");
+        } catch (SQLException e) {
+            return status.getLong("Seconds_Behind_Master");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package parking.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Migrations de schéma versionnées.
+ * La version 1 correspond à sql/init.sql ; les suivantes sont des scripts
+ * {@code db/migration/V<n>__<description>.sql} du classpath, appliqués une seule fois
+ * et tracés dans la table schema_version.
+ * Toutes les stations migrent au démarrage : un verrou nommé (GET_LOCK) les sérialise, et chaque script
+ * vérifie information_schema avant ses DDL, si bien qu'un script interrompu peut être rejoué.
+ */
+public class SchemaMigrator {
+
+    private static final Logger LOG = Logger.getLogger(SchemaMigrator.class.getName());
+
+    /** Migrations dans l'ordre d'application. */
+    private static final String[] MIGRATIONS = {
+            "V2__index_stationnement.sql",
+            "V3__revenue_rollup.sql",
+            "V4__zones_places.sql",
+    };
+
+    /** Verrou nommé pris pendant les migrations, et attente maximale (s) d'une autre station. */
+    private static final String VERROU = "parking_migration";
+    private static final int    VERROU_ATTENTE_SEC = 120;
+
+    private SchemaMigrator() {}
+
+    /** Applique les migrations manquantes sur la base par défaut. */
+    public static int migrate() throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection()) {
+            return migrate(c);
+        }
+    }
+
+    /** @return le nombre de migrations appliquées */
+    public static int migrate(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, description VARCHAR(100) NOT NULL, " +
+                    "applied_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+        String derniere = MIGRATIONS[MIGRATIONS.length - 1];
+        if (currentVersion(c) >= Integer.parseInt(derniere.substring(1, derniere.indexOf("__")))) return 0;
+
+        verrouiller(c);
+        try {
+            // Relue sous le verrou : une autre station a pu migrer pendant l'attente
+            return appliquer(c, currentVersion(c));
+        } finally {
+            try (Statement st = c.createStatement()) {
+                st.execute("DO RELEASE_LOCK('" + VERROU + "')");
+            }
+        }
+    }
+
+    private static void verrouiller(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT GET_LOCK('" + VERROU + "', " + VERROU_ATTENTE_SEC + ")")) {
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("Migration du schéma en cours sur une autre station depuis plus de "
+                        + VERROU_ATTENTE_SEC + " s.");
+            }
+        }
+    }
+
+    private static int appliquer(Connection c, int current) throws SQLException {
+        int applied = 0;
+        for (String file : MIGRATIONS) {
+            int version = Integer.parseInt(file.substring(1, file.indexOf("__")));
+            if (version <= current) continue;
+            String description = file.substring(file.indexOf("__") + 2, file.length() - 4).replace('_', ' ');
+            LOG.info("Migration V" + version + " : " + description);
+            try (InputStream in = SchemaMigrator.class.getResourceAsStream("/db/migration/" + file)) {
+                if (in == null) throw new SQLException("Migration introuvable dans le classpath : " + file);
+                executeScript(c, new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new SQLException("Lecture de la migration " + file + " impossible : " + e.getMessage(), e);
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO schema_version (version, description) VALUES (?,?)")) {
+                ps.setInt(1, version);
+                ps.setString(2, description);
+                ps.executeUpdate();
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    public static int currentVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 1) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 1;
+        }
+    }
+
+    /**
+     * Exécute un script SQL simple : instructions terminées par ';' en fin de ligne,
+     * commentaires '--' ignorés.
+     */
+    public static void executeScript(Connection c, Reader script) throws SQLException, IOException {
+        BufferedReader reader = new BufferedReader(script);
+        StringBuilder current = new StringBuilder();
+        try (Statement st = c.createStatement()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String sql = current.toString().trim();
+                    st.execute(sql.substring(0, sql.length() - 1));
+                    current.setLength(0);
+                }
+            }
+            if (current.toString().trim().length() > 0) st.execute(current.toString());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+-- ============================================================
+-- V2 : index composites alignés sur les requêtes de StationnementDAO
+-- Chaque DDL n'est exécutée que si information_schema ne la montre pas déjà faite :
+-- le script peut être rejoué après une interruption.
+-- ============================================================
+
+-- Contrôle d'occupation (place_id + dateSortie IS NULL) et chargement de l'index d'occupation
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Stationnement' AND INDEX_NAME = 'idx_stat_place_sortie') = 0,
+                'CREATE INDEX idx_stat_place_sortie ON Stationnement(place_id, dateSortie)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- Stationnements en cours triés par entrée, revenus sur les stationnements terminés
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Stationnement' AND INDEX_NAME = 'idx_stat_sortie_entree') = 0,
+                'CREATE INDEX idx_stat_sortie_entree ON Stationnement(dateSortie, dateEntree)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- Pagination par clé (dateEntree DESC, id DESC) et filtres de période
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Stationnement' AND INDEX_NAME = 'idx_stat_entree') = 0,
+                'CREATE INDEX idx_stat_entree ON Stationnement(dateEntree, id)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- Historique d'un véhicule trié par date
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Stationnement' AND INDEX_NAME = 'idx_stat_vehicule_entree') = 0,
+                'CREATE INDEX idx_stat_vehicule_entree ON Stationnement(vehicule_id, dateEntree)', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- Index mono-colonne devenus redondants (préfixes des index ci-dessus, qui servent aussi les clés étrangères)
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Stationnement' AND INDEX_NAME = 'idx_stat_place') > 0,
+                'DROP INDEX idx_stat_place ON Stationnement', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Stationnement' AND INDEX_NAME = 'idx_stat_vehicle') > 0,
+                'DROP INDEX idx_stat_vehicle ON Stationnement', 'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
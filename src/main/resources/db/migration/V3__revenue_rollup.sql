@@ -0,0 +1,22 @@
+-- ============================================================
+-- V3 : agrégats de revenus par jour de sortie et par place
+-- Tenus à jour dans la transaction de sortie (StationnementDAO.enregistrerSortie)
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS RevenueRollup (
+    jour      DATE          NOT NULL,
+    place_id  INT           NOT NULL,
+    type      ENUM('Auto','Moto','PMR') NOT NULL,
+    total     DECIMAL(12,2) NOT NULL DEFAULT 0,
+    nb        INT           NOT NULL DEFAULT 0,
+    PRIMARY KEY (jour, place_id),
+    INDEX idx_rollup_type_jour (type, jour)
+);
+
+-- Initialisation à partir de l'historique existant ; rejouée, elle recalcule les lignes déjà présentes
+INSERT INTO RevenueRollup (jour, place_id, type, total, nb)
+SELECT DATE(s.dateSortie), s.place_id, p.type, SUM(s.montant), COUNT(*)
+FROM Stationnement s JOIN Place p ON p.id = s.place_id
+WHERE s.dateSortie IS NOT NULL AND s.montant IS NOT NULL
+GROUP BY DATE(s.dateSortie), s.place_id, p.type
+ON DUPLICATE KEY UPDATE type = VALUES(type), total = VALUES(total), nb = VALUES(nb);
@@ -0,0 +1,16 @@
+-- ============================================================
+-- V4 : zone, niveau et distance à la borne d'entrée des places
+-- Servent à l'attribution automatique (PlaceAllocator) : la place libre la plus proche
+-- ============================================================
+
+-- Un seul ALTER (atomique) : la présence de la colonne zone suffit à le savoir fait
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+                 WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'Place' AND COLUMN_NAME = 'zone') = 0,
+                'ALTER TABLE Place
+                     ADD COLUMN zone     VARCHAR(10) NOT NULL DEFAULT ''A'',
+                     ADD COLUMN niveau   SMALLINT    NOT NULL DEFAULT 0,
+                     ADD COLUMN distance INT         NOT NULL DEFAULT 0',
+                'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;